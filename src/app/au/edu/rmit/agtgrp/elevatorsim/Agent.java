@@ -0,0 +1,63 @@
+package au.edu.rmit.agtgrp.elevatorsim;
+
+import org.intranet.sim.event.Event;
+import org.json.JSONObject;
+
+import java.util.Collection;
+
+/**
+ * A client written in Java that controls the simulation from within the
+ * JVM. It receives the same events and sends the same actions as a client
+ * connected to the {@link NetworkWrapperController}, but as objects handed
+ * over by an {@link InProcessConnection} rather than as JSON over a socket.
+ * <p>
+ * List the class in the controllers section of the simulator parameters
+ * JSON file to run it. It needs a public constructor without arguments, and
+ * the same instance is used for every run of the simulation.
+ */
+public interface Agent {
+    /**
+     * Called on the agent's own thread for every processed event, in the
+     * order they were processed. The event counts as processed by the agent
+     * once this returns. The simulation goes on meanwhile, so the model must
+     * not be read here; everything the agent may know is in the description.
+     *
+     * @param event       The event. An "actionProcessed" event is the
+     *                    {@link au.edu.rmit.agtgrp.elevatorsim.action.Action}
+     *                    that was performed
+     * @param description What a network client receives as the description
+     *                    of the event, taken when the event was processed
+     * @param actions     Where to send actions to
+     */
+    void eventReceived(Event event, JSONObject description, Actions actions);
+
+    /**
+     * Asked once at the start of every run, like the subscribe message of a
+     * network client.
+     *
+     * @return The names of the types of event the agent wants, or null for
+     *         every event. simulationEnded is always sent
+     */
+    default Collection<String> getSubscriptions() {
+        return null;
+    }
+
+    /**
+     * The actions an agent can take. Each is performed as an event at the
+     * current time, and its result is reported by an "actionProcessed" event
+     * with the id returned.
+     */
+    interface Actions {
+        /**
+         * @param nextDirection The direction the car shows when it arrives
+         * @return The id of the action
+         */
+        long sendCar(int car, int floor, Direction nextDirection);
+
+        /**
+         * @param nextDirection The direction the car shows when it arrives
+         * @return The id of the action
+         */
+        long changeNextDirection(int car, Direction nextDirection);
+    }
+}
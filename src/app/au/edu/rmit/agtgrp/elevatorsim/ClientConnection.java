@@ -0,0 +1,38 @@
+package au.edu.rmit.agtgrp.elevatorsim;
+
+import au.edu.rmit.agtgrp.elevatorsim.ui.ControllerDialogCreator;
+import org.intranet.sim.event.Event;
+
+import java.io.IOException;
+
+/**
+ * The simulator's end of the connection to a client that controls the
+ * simulation. Processed events are sent to the client, which acknowledges
+ * each one with an eventProcessed message and sends actions back.
+ *
+ * @see NetworkHelper
+ * @see InProcessConnection
+ */
+public interface ClientConnection {
+    /**
+     * Sends a processed event to the client.
+     *
+     * @param event The event, whose description is taken before this returns
+     * @throws IOException If there is a connection problem
+     */
+    void send(Event event) throws IOException;
+
+    void close();
+
+    void setControllerDialogCreator(ControllerDialogCreator cdc);
+
+    void addListener(Listener l);
+
+    void removeListener(Listener l);
+
+    interface Listener {
+        public void onTimeout();
+
+        public void onConnectionClosed();
+    }
+}
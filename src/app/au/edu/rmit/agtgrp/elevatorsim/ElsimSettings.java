@@ -6,6 +6,9 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -22,11 +25,36 @@ public class ElsimSettings
 	public static final boolean DEFAULT_ENABLE_OLD_CONTROLLERS = false;
 	public static final int DEFAULT_PORT = 8081;
 	public static final boolean DEFAULT_ENABLE_HIDDEN_SIMULATORS = false;
+	public static final int DEFAULT_STATISTICS_REFRESH_INTERVAL = 1000;
+	public static final String DEFAULT_SWEEP_SPILL_DIRECTORY = "";
+	public static final String DEFAULT_SWEEP_STORE_DIRECTORY = "";
+	public static final int DEFAULT_SWEEP_WORKERS = 0;
+	public static final int DEFAULT_SWEEP_CELL_TIMEOUT = 600;
+	public static final String EVENT_STORE_SKIP_LIST = "skipList";
+	public static final String EVENT_STORE_TIMING_WHEEL = "timingWheel";
+	public static final String DEFAULT_EVENT_STORE = EVENT_STORE_SKIP_LIST;
+	public static final boolean DEFAULT_FINGERPRINT = false;
+	public static final boolean DEFAULT_SHARED_MEMORY = false;
+	public static final int DEFAULT_EVENT_WINDOW = 0;
+	public static final int DEFAULT_EVENT_WINDOW_LAG = 0;
+	public static final String COALESCE_RANGE = "range";
+	public static final String COALESCE_LAST = "last";
 	
 	private static final String KEY_TIMEOUT = "timeout";
 	private static final String KEY_ENABLE_OLD_CONTROLLERS = "enableOldControllers";
 	private static final String KEY_PORT = "port";
 	private static final String KEY_ENABLE_HIDDEN_SIMULATORS = "enableHiddenSimulators";
+	private static final String KEY_STATISTICS_REFRESH_INTERVAL = "statisticsRefreshInterval";
+	private static final String KEY_SWEEP_SPILL_DIRECTORY = "sweepSpillDirectory";
+	private static final String KEY_SWEEP_STORE_DIRECTORY = "sweepStoreDirectory";
+	private static final String KEY_SWEEP_WORKERS = "sweepWorkers";
+	private static final String KEY_SWEEP_CELL_TIMEOUT = "sweepCellTimeout";
+	private static final String KEY_EVENT_STORE = "eventStore";
+	private static final String KEY_FINGERPRINT = "fingerprint";
+	private static final String KEY_SHARED_MEMORY = "sharedMemory";
+	private static final String KEY_COALESCE = "coalesce";
+	private static final String KEY_EVENT_WINDOW = "eventWindow";
+	private static final String KEY_EVENT_WINDOW_LAG = "eventWindowLag";
 	
 	private static Logger logger = Logger.getLogger(
 			ElsimSettings.class.getSimpleName()
@@ -44,6 +72,18 @@ public class ElsimSettings
 	private boolean enableOldControllers = DEFAULT_ENABLE_OLD_CONTROLLERS;
 	private int port = DEFAULT_PORT;
 	private boolean enableHiddenSimulators = DEFAULT_ENABLE_HIDDEN_SIMULATORS;
+	private int statisticsRefreshInterval = DEFAULT_STATISTICS_REFRESH_INTERVAL;
+	private String sweepSpillDirectory = DEFAULT_SWEEP_SPILL_DIRECTORY;
+	private String sweepStoreDirectory = DEFAULT_SWEEP_STORE_DIRECTORY;
+	private int sweepWorkers = DEFAULT_SWEEP_WORKERS;
+	private int sweepCellTimeout = DEFAULT_SWEEP_CELL_TIMEOUT;
+	private String eventStore = DEFAULT_EVENT_STORE;
+	private boolean fingerprint = DEFAULT_FINGERPRINT;
+	private boolean sharedMemory = DEFAULT_SHARED_MEMORY;
+	// by default no type of event is coalesced
+	private Map<String, String> coalesce = new LinkedHashMap<>();
+	private int eventWindow = DEFAULT_EVENT_WINDOW;
+	private int eventWindowLag = DEFAULT_EVENT_WINDOW_LAG;
 	
 	public static ElsimSettings get()
 	{
@@ -94,6 +134,17 @@ public class ElsimSettings
 		toWrite.put(KEY_ENABLE_OLD_CONTROLLERS, enableOldControllers);
 		toWrite.put(KEY_PORT, port);
 		toWrite.put(KEY_ENABLE_HIDDEN_SIMULATORS, enableHiddenSimulators);
+		toWrite.put(KEY_STATISTICS_REFRESH_INTERVAL, statisticsRefreshInterval);
+		toWrite.put(KEY_SWEEP_SPILL_DIRECTORY, sweepSpillDirectory);
+		toWrite.put(KEY_SWEEP_STORE_DIRECTORY, sweepStoreDirectory);
+		toWrite.put(KEY_SWEEP_WORKERS, sweepWorkers);
+		toWrite.put(KEY_SWEEP_CELL_TIMEOUT, sweepCellTimeout);
+		toWrite.put(KEY_EVENT_STORE, eventStore);
+		toWrite.put(KEY_FINGERPRINT, fingerprint);
+		toWrite.put(KEY_SHARED_MEMORY, sharedMemory);
+		toWrite.put(KEY_COALESCE, coalesce);
+		toWrite.put(KEY_EVENT_WINDOW, eventWindow);
+		toWrite.put(KEY_EVENT_WINDOW_LAG, eventWindowLag);
 		
 		try
 		{
@@ -116,7 +167,7 @@ public class ElsimSettings
 	private void parseFromJson(JSONObject settingsJson)
 	{
 		int keysFound = 0;
-		int expectedKeys = 4;
+		int expectedKeys = 15;
 
 		if (settingsJson.has(KEY_TIMEOUT))
 		{
@@ -138,6 +189,73 @@ public class ElsimSettings
 			enableHiddenSimulators = settingsJson.getBoolean(KEY_ENABLE_HIDDEN_SIMULATORS);
 			keysFound++;
 		}
+		if (settingsJson.has(KEY_STATISTICS_REFRESH_INTERVAL))
+		{
+			statisticsRefreshInterval = settingsJson.getInt(KEY_STATISTICS_REFRESH_INTERVAL);
+			keysFound++;
+		}
+		if (settingsJson.has(KEY_SWEEP_SPILL_DIRECTORY))
+		{
+			sweepSpillDirectory = settingsJson.getString(KEY_SWEEP_SPILL_DIRECTORY);
+			keysFound++;
+		}
+		if (settingsJson.has(KEY_SWEEP_STORE_DIRECTORY))
+		{
+			sweepStoreDirectory = settingsJson.getString(KEY_SWEEP_STORE_DIRECTORY);
+			keysFound++;
+		}
+		if (settingsJson.has(KEY_SWEEP_WORKERS))
+		{
+			sweepWorkers = settingsJson.getInt(KEY_SWEEP_WORKERS);
+			keysFound++;
+		}
+		if (settingsJson.has(KEY_SWEEP_CELL_TIMEOUT))
+		{
+			sweepCellTimeout = settingsJson.getInt(KEY_SWEEP_CELL_TIMEOUT);
+			keysFound++;
+		}
+		if (settingsJson.has(KEY_EVENT_STORE))
+		{
+			eventStore = settingsJson.getString(KEY_EVENT_STORE);
+			keysFound++;
+		}
+		if (settingsJson.has(KEY_FINGERPRINT))
+		{
+			fingerprint = settingsJson.getBoolean(KEY_FINGERPRINT);
+			keysFound++;
+		}
+		if (settingsJson.has(KEY_SHARED_MEMORY))
+		{
+			sharedMemory = settingsJson.getBoolean(KEY_SHARED_MEMORY);
+			keysFound++;
+		}
+		if (settingsJson.has(KEY_COALESCE))
+		{
+			JSONObject coalesceJson = settingsJson.getJSONObject(KEY_COALESCE);
+			for (String type : coalesceJson.keySet())
+			{
+				String policy = coalesceJson.getString(type);
+				if (policy.equals(COALESCE_RANGE) || policy.equals(COALESCE_LAST))
+				{
+					coalesce.put(type, policy);
+				}
+				else
+				{
+					logger.log(Level.WARNING, "Unknown way to coalesce " + type + ": " + policy);
+				}
+			}
+			keysFound++;
+		}
+		if (settingsJson.has(KEY_EVENT_WINDOW))
+		{
+			eventWindow = settingsJson.getInt(KEY_EVENT_WINDOW);
+			keysFound++;
+		}
+		if (settingsJson.has(KEY_EVENT_WINDOW_LAG))
+		{
+			eventWindowLag = settingsJson.getInt(KEY_EVENT_WINDOW_LAG);
+			keysFound++;
+		}
 		
 		if (keysFound != expectedKeys)
 		{
@@ -164,4 +282,102 @@ public class ElsimSettings
 	{
 		return enableHiddenSimulators;
 	}
+
+	/**
+	 * @return Minimum time in ms between refreshes of the statistics panel
+	 *         while a simulation runs, 0 to only refresh when it is paused
+	 */
+	public int getStatisticsRefreshInterval()
+	{
+		return statisticsRefreshInterval;
+	}
+
+	/**
+	 * @return Directory the full statistics tables of each run of a multiple
+	 *         simulation are written to, empty to drop them once summarized
+	 */
+	public String getSweepSpillDirectory()
+	{
+		return sweepSpillDirectory;
+	}
+
+	/**
+	 * @return Directory of the store of past multiple simulation runs, empty
+	 *         to always rerun every run
+	 */
+	public String getSweepStoreDirectory()
+	{
+		return sweepStoreDirectory;
+	}
+
+	/**
+	 * @return Number of worker JVMs a multiple simulation runs in, 0 to run
+	 *         every run in this JVM
+	 */
+	public int getSweepWorkers()
+	{
+		return sweepWorkers;
+	}
+
+	/**
+	 * @return Time in seconds a worker JVM may take to run one run of a
+	 *         multiple simulation before it is killed, 0 for no limit
+	 */
+	public int getSweepCellTimeout()
+	{
+		return sweepCellTimeout;
+	}
+
+	/**
+	 * @return How simulations keep their pending events, either
+	 *         EVENT_STORE_SKIP_LIST or EVENT_STORE_TIMING_WHEEL
+	 */
+	public String getEventStore()
+	{
+		return eventStore;
+	}
+
+	/**
+	 * @return True if every simulation fingerprints the events it processes
+	 */
+	public boolean getFingerprint()
+	{
+		return fingerprint;
+	}
+
+	/**
+	 * @return True if the network connection offers a client to exchange
+	 *         messages through shared memory instead of TCP
+	 */
+	public boolean getSharedMemory()
+	{
+		return sharedMemory;
+	}
+
+	/**
+	 * @return How each type of event that is coalesced before it is sent to
+	 *         the client is coalesced, either COALESCE_RANGE or COALESCE_LAST
+	 */
+	public Map<String, String> getCoalesce()
+	{
+		return Collections.unmodifiableMap(coalesce);
+	}
+
+	/**
+	 * @return Number of events a client may have left unprocessed before
+	 *         simulation time stops, 0 to never stop it
+	 */
+	public int getEventWindow()
+	{
+		return eventWindow;
+	}
+
+	/**
+	 * @return Simulated time in ms the simulation may run past the oldest
+	 *         event a client has left unprocessed, 0 for no limit
+	 */
+	public int getEventWindowLag()
+	{
+		return eventWindowLag;
+	}
 }
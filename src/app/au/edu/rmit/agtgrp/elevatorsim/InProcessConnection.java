@@ -0,0 +1,158 @@
+package au.edu.rmit.agtgrp.elevatorsim;
+
+import au.edu.rmit.agtgrp.elevatorsim.action.ChangeNextDirectionAction;
+import au.edu.rmit.agtgrp.elevatorsim.action.SendCarAction;
+import au.edu.rmit.agtgrp.elevatorsim.ui.ControllerDialogCreator;
+import org.intranet.sim.event.Event;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Connects an {@link Agent} to the simulation within the JVM. Processed
+ * events are put on a queue for the agent's thread along with their
+ * descriptions, and actions are added straight to the EventQueue, so nothing
+ * is written out as JSON or sent through a socket. The messages mean the same
+ * as over a {@link NetworkHelper}: an event is reported processed by the
+ * client once the agent has returned from it, and the connection is closed if
+ * the agent throws.
+ */
+public class InProcessConnection implements ClientConnection {
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+
+    private final Agent agent;
+    private final WrapperModel model;
+    private final BlockingQueue<Message> messages = new LinkedBlockingQueue<>();
+    private final Thread agentThread;
+    private LongConsumer eventProcessed;
+
+    private final AtomicLong lastActionId = new AtomicLong();
+    private final Agent.Actions actions = new Agent.Actions() {
+        @Override
+        public long sendCar(int car, int floor, Direction nextDirection) {
+            long actionId = lastActionId.incrementAndGet();
+            LOG.debug("Incoming Action [{}:sendCar]", actionId);
+            model.getEventQueue().addEvent(
+                    new SendCarAction(actionId, model, car, floor, orNone(nextDirection)));
+            return actionId;
+        }
+
+        @Override
+        public long changeNextDirection(int car, Direction nextDirection) {
+            long actionId = lastActionId.incrementAndGet();
+            LOG.debug("Incoming Action [{}:changeNextDirection]", actionId);
+            model.getEventQueue().addEvent(
+                    new ChangeNextDirectionAction(actionId, model, car, orNone(nextDirection)));
+            return actionId;
+        }
+    };
+
+    private List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private ControllerDialogCreator cdc;
+
+    private volatile boolean closed = false;
+
+    private static class Message {
+        private final Event event;
+        private final JSONObject description;
+
+        private Message(Event event, JSONObject description) {
+            this.event = event;
+            this.description = description;
+        }
+    }
+
+    public InProcessConnection(Agent agent, WrapperModel model) {
+        this.agent = agent;
+        this.model = model;
+        agentThread = new Thread(this::run, "agent " + agent.getClass().getSimpleName());
+        agentThread.setDaemon(true);
+    }
+
+    /**
+     * Starts handing events to the agent.
+     *
+     * @param eventProcessed Called with the id of each event the agent has processed
+     */
+    public void start(LongConsumer eventProcessed) {
+        this.eventProcessed = eventProcessed;
+        agentThread.start();
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                Message message = messages.take();
+                agent.eventReceived(message.event, message.description, actions);
+                eventProcessed.accept(message.event.getId());
+            }
+        } catch (InterruptedException e) {
+            // closed
+        } catch (RuntimeException e) {
+            if (!closed) {
+                LOG.error("Agent failed", e);
+                handleConnectionClose("Agent failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Queues the event for the agent. The description is taken now, while
+     * the model is as the event left it.
+     */
+    @Override
+    public void send(Event event) {
+        if (closed) {
+            // there is no agent left to report the event processed
+            LOG.debug("Event {} processed after the agent was closed", event.getName());
+            return;
+        }
+        messages.add(new Message(event, event.getDescription()));
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        messages.clear();
+        if (Thread.currentThread() != agentThread) {
+            agentThread.interrupt();
+        }
+    }
+
+    private void handleConnectionClose(String message) {
+        if (cdc != null) {
+            cdc.showErrorDialog(message);
+        }
+        close();
+        for (Listener l : listeners) {
+            l.onConnectionClosed();
+        }
+    }
+
+    private static Direction orNone(Direction direction) {
+        return direction != null ? direction : Direction.NONE;
+    }
+
+    @Override
+    public void setControllerDialogCreator(ControllerDialogCreator cdc) {
+        this.cdc = cdc;
+    }
+
+    @Override
+    public void addListener(Listener l) {
+        listeners.add(l);
+    }
+
+    @Override
+    public void removeListener(Listener l) {
+        listeners.remove(l);
+    }
+}
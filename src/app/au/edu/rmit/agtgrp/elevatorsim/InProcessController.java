@@ -0,0 +1,104 @@
+package au.edu.rmit.agtgrp.elevatorsim;
+
+import au.edu.rmit.agtgrp.elevatorsim.event.EventTransmitter;
+import au.edu.rmit.agtgrp.elevatorsim.ui.ControllerDialogCreator;
+import org.intranet.elevator.model.Car;
+import org.intranet.elevator.model.Floor;
+import org.intranet.elevator.model.operate.Building;
+import org.intranet.elevator.model.operate.controller.Controller;
+import org.intranet.sim.event.EventQueue;
+
+/**
+ * Lets an {@link Agent} control the simulation from within the JVM, the way
+ * the {@link NetworkWrapperController} lets a client do so over a network.
+ */
+public class InProcessController implements Controller, EventTransmitter.Listener {
+
+    private final String name;
+    private final Agent agent;
+    private WrapperModel model;
+    private InProcessConnection connection;
+    private EventTransmitter eventTransmitter;
+    private ControllerDialogCreator cdc;
+
+    /**
+     * @param name The name of the controller, as given in the simulator parameters JSON file
+     */
+    public InProcessController(String name, Agent agent) {
+        this.name = name;
+        this.agent = agent;
+    }
+
+    @Override
+    public void initialize(EventQueue eQ, Building building) {
+        onEnd();
+        eQ.waitForEvents();
+        model = new WrapperModel(eQ, building);
+        connection = new InProcessConnection(agent, model);
+        connection.setControllerDialogCreator(cdc);
+
+        // hand events to the agent
+        eventTransmitter = new EventTransmitter(connection, model);
+        eventTransmitter.setSubscriptions(agent.getSubscriptions());
+        eventTransmitter.addListener(this);
+        eQ.addListener(eventTransmitter);
+        connection.addListener(eventTransmitter);
+        connection.start(eventTransmitter::onEventProcessedByClient);
+    }
+
+    @Override
+    public void onEnd() {
+        close();
+    }
+
+    @Override
+    public void close() {
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    @Override
+    public void requestCar(Floor newFloor, org.intranet.elevator.model.operate.controller.Direction d) {
+    }
+
+    @Override
+    public boolean arrive(Car car) {
+        Direction d = model.getNextDirection(car.getId());
+
+        if (d == Direction.NONE) {
+            throw new RuntimeException("arrive called for car that is not known to be moving. carId: " + car.getId());
+        }
+
+        return d == Direction.UP;
+    }
+
+    @Override
+    public void setNextDestination(Car car) {
+        // the agent sends the car on with a sendCar action
+    }
+
+    @Override
+    public boolean isDeterministic() {
+        // decisions depend on how fast the agent's thread runs
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    @Override
+    public void setControllerDialogCreator(ControllerDialogCreator cdc) {
+        this.cdc = cdc;
+        if (connection != null) {
+            connection.setControllerDialogCreator(cdc);
+        }
+    }
+
+    @Override
+    public String getInitMessage() {
+        return "Starting " + name;
+    }
+}
@@ -4,6 +4,8 @@ import org.apache.commons.cli.*;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -26,6 +28,11 @@ public class LaunchOptions {
     private static final String JSON_PARAM_OPTION_KEY_L = "json";
     private static final String HELP_OPTION_KEY         = "h";
     private static final String HELP_OPTION_KEY_L       = "help";
+    private static final String DAEMON_OPTION_KEY       = "d";
+    private static final String DAEMON_OPTION_KEY_L     = "daemon";
+    private static final String DAEMON_PORT_OPTION_KEY_L = "daemon-port";
+    private static final String WORKERS_OPTION_KEY      = "w";
+    private static final String WORKERS_OPTION_KEY_L    = "workers";
 
     private static LaunchOptions instance;
 
@@ -34,6 +41,10 @@ public class LaunchOptions {
     private Optional<Integer> speedFactor   = Optional.empty();
     private boolean           isHeadless    = false;
     private boolean           hasJsonParams = false;
+    private Optional<File>    jsonParamFile = Optional.empty();
+    private boolean           isDaemon      = false;
+    private Optional<Integer> daemonPort    = Optional.empty();
+    private Optional<Integer> workers       = Optional.empty();
 
     private Options           cliOptions = new Options();
     private CommandLineParser cliParser  = new DefaultParser();
@@ -77,12 +88,28 @@ public class LaunchOptions {
                 .hasArg(false)
                 .required(false).build();
 
+        Option daemonOpt = Option.builder(DAEMON_OPTION_KEY).longOpt(DAEMON_OPTION_KEY_L)
+                .desc("run headless simulation jobs read as JSON lines from stdin")
+                .hasArg(false)
+                .required(false).build();
+        Option daemonPortOpt = Option.builder().longOpt(DAEMON_PORT_OPTION_KEY_L)
+                .desc("with --daemon, read jobs from connections to this local port instead of stdin")
+                .hasArg().argName("PORT")
+                .required(false).build();
+        Option workersOpt = Option.builder(WORKERS_OPTION_KEY).longOpt(WORKERS_OPTION_KEY_L)
+                .desc("number of simulations the daemon runs at once (default: number of processors)")
+                .hasArg().argName("WORKERS")
+                .required(false).build();
+
         cliOptions.addOption(nameSimOpt);
         cliOptions.addOption(statFileOpt);
         cliOptions.addOption(speedOpt);
         cliOptions.addOption(guiOpt);
         cliOptions.addOption(jsonParamFileOpt);
         cliOptions.addOption(helpOpt);
+        cliOptions.addOption(daemonOpt);
+        cliOptions.addOption(daemonPortOpt);
+        cliOptions.addOption(workersOpt);
     }
 
     private void showHelp() {
@@ -129,6 +156,18 @@ public class LaunchOptions {
             if (cmd.hasOption(JSON_PARAM_OPTION_KEY)) {
                 initSimulatorParams(cmd.getOptionValue(JSON_PARAM_OPTION_KEY));
             }
+
+            if (cmd.hasOption(DAEMON_OPTION_KEY)) {
+                isDaemon = true;
+            }
+
+            if (cmd.hasOption(DAEMON_PORT_OPTION_KEY_L)) {
+                daemonPort = parsePositive(DAEMON_PORT_OPTION_KEY_L, cmd.getOptionValue(DAEMON_PORT_OPTION_KEY_L));
+            }
+
+            if (cmd.hasOption(WORKERS_OPTION_KEY)) {
+                workers = parsePositive(WORKERS_OPTION_KEY_L, cmd.getOptionValue(WORKERS_OPTION_KEY));
+            }
         } catch (ParseException e) {
             System.err.println(e.getMessage());
             showHelpAndExit();
@@ -163,11 +202,34 @@ public class LaunchOptions {
         speedFactor = Optional.of(factor);
     }
 
+    /**
+     * parses a positive integer option value, showing the help and exiting
+     * if it is not one
+     *
+     * @param name  long name of the option, for the error message
+     * @param value value given on the command line
+     * @return the value
+     */
+    private Optional<Integer> parsePositive(String name, String value) {
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed > 0) {
+                return Optional.of(parsed);
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        System.err.println("invalid value for " + name + ": " + value);
+        showHelpAndExit();
+        return Optional.empty();
+    }
+
     private void initSimulatorParams(String filename) {
         File file = new File(filename);
 
         if (file.exists() && !file.isDirectory() && file.canRead()) {
             hasJsonParams = SimulatorParams.instance().loadParamsJson(file);
+            jsonParamFile = Optional.of(file.getAbsoluteFile());
             if (!hasJsonParams) {
                 System.err.println("Cannot parse file '" + filename + "' as JSON");
                 showHelpAndExit();
@@ -197,4 +259,39 @@ public class LaunchOptions {
     public boolean hasJsonParams() {
         return hasJsonParams;
     }
+
+    public boolean isDaemon() {
+        return isDaemon;
+    }
+
+    public Optional<Integer> getDaemonPort() {
+        return daemonPort;
+    }
+
+    public Optional<Integer> getWorkers() {
+        return workers;
+    }
+
+    /**
+     * @return the options a worker JVM running sweep cells needs to set up
+     * its simulators as this instance does: the JSON parameter file, the
+     * name and the speed factor. The statistics file is left out, as every
+     * worker would overwrite it, and the daemon options are set by the sweep
+     */
+    public List<String> getWorkerArgs() {
+        List<String> args = new ArrayList<>();
+        jsonParamFile.ifPresent(file -> {
+            args.add("-" + JSON_PARAM_OPTION_KEY);
+            args.add(file.getPath());
+        });
+        nameSim.ifPresent(name -> {
+            args.add("-" + NAME_OPTION_KEY);
+            args.add(name);
+        });
+        speedFactor.ifPresent(factor -> {
+            args.add("-" + SPEED_OPTION_KEY);
+            args.add(factor.toString());
+        });
+        return args;
+    }
 }
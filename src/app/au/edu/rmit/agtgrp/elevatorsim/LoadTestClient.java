@@ -0,0 +1,495 @@
+package au.edu.rmit.agtgrp.elevatorsim;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A stand-in client for measuring the network path to the
+ * {@link NetworkWrapperController} on one machine, without a real agent.
+ * <p>
+ * It connects to the port in the settings file, accepts shared memory if it
+ * is offered, acknowledges every event as soon as it has read it, and sends
+ * cars with a trivial policy: an idle car serves the stops requested inside
+ * it, lowest first, and otherwise the oldest call from a floor. While the
+ * simulation runs it prints, every few seconds, the messages and bytes per
+ * second in each direction, how long it took from reading each event to
+ * having written its acknowledgement, and how long each sendCar took to come
+ * back as an actionProcessed event. A summary of the whole run is printed
+ * when the simulation ends.
+ * <p>
+ * Usage: {@code LoadTestClient [--host HOST] [--port PORT] [--tcp] [--interval SECONDS] [--subscribe TYPES]}
+ * <br>
+ * {@code --tcp} declines shared memory even when the server offers it.
+ * {@code --subscribe} takes a comma separated list of the event types to
+ * receive; the policy needs modelChanged, carRequested, floorRequested,
+ * carArrived and doorClosed, and the sendCar round trip actionProcessed.
+ */
+public final class LoadTestClient {
+    private static final long CONNECT_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long READ_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final long WRITE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final long intervalNanos;
+    private final boolean declineSharedMemory;
+    // null to receive every event
+    private final List<String> subscriptions;
+
+    private Socket socket;
+    private DataInputStream in;
+    private DataOutputStream out;
+    // null unless shared memory was accepted
+    private SharedMemoryRing toClient;
+    private SharedMemoryRing toServer;
+
+    private Traffic total;
+    private Traffic interval;
+    private final Histogram ackLatency = new Histogram();
+    private final Histogram actionLatency = new Histogram();
+    private final Map<Long, Long> pendingActions = new HashMap<>();
+    private long lastActionId;
+
+    // the state the policy works from
+    private final Map<Integer, TreeSet<Integer>> stops = new HashMap<>();
+    private final Map<Integer, Integer> carFloors = new HashMap<>();
+    private final Set<Integer> idleCars = new LinkedHashSet<>();
+    private final Deque<Call> calls = new ArrayDeque<>();
+    private int bottomFloor;
+    private int topFloor;
+
+    private static class Call {
+        private final int floor;
+        private final Direction direction;
+
+        private Call(int floor, Direction direction) {
+            this.floor = floor;
+            this.direction = direction;
+        }
+    }
+
+    private static class Traffic {
+        private final long start = System.nanoTime();
+        private long messagesIn;
+        private long bytesIn;
+        private long messagesOut;
+        private long bytesOut;
+        private long actions;
+        private long failedActions;
+
+        private void received(int bytes) {
+            messagesIn++;
+            bytesIn += bytes;
+        }
+
+        private void sent(int bytes) {
+            messagesOut++;
+            bytesOut += bytes;
+        }
+
+        private String describe(long now) {
+            double seconds = Math.max(now - start, 1) / 1e9;
+            return String.format("in %.0f msg/s %.0f B/s, out %.0f msg/s %.0f B/s, %d actions (%d failed)",
+                    messagesIn / seconds, bytesIn / seconds, messagesOut / seconds, bytesOut / seconds,
+                    actions, failedActions);
+        }
+    }
+
+    /**
+     * Counts nanosecond latencies in buckets 1/16 of a power of two wide, so
+     * percentiles are within about 6% and recording costs no allocation.
+     */
+    static class Histogram {
+        private static final int SUB_BUCKET_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        private final long[] counts = new long[64 * SUB_BUCKETS];
+        private long count;
+        private long max;
+
+        void record(long nanos) {
+            nanos = Math.max(nanos, 0);
+            counts[bucket(nanos)]++;
+            count++;
+            max = Math.max(max, nanos);
+        }
+
+        private static int bucket(long nanos) {
+            if (nanos < SUB_BUCKETS) {
+                return (int) nanos;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        private static long lowestValue(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+        }
+
+        /**
+         * @param fraction Between 0 and 1
+         * @return The lowest latency in the bucket holding the given fraction
+         *         of the latencies recorded, or 0 if none were
+         */
+        long percentile(double fraction) {
+            long rank = (long) Math.ceil(fraction * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && seen > 0) {
+                    return lowestValue(i);
+                }
+            }
+            return 0;
+        }
+
+        String describe() {
+            return String.format("p50 %.1f us, p99 %.1f us, max %.1f us (%d)",
+                    percentile(0.5) / 1e3, percentile(0.99) / 1e3, max / 1e3, count);
+        }
+    }
+
+    private LoadTestClient(long intervalNanos, boolean declineSharedMemory, List<String> subscriptions) {
+        this.intervalNanos = intervalNanos;
+        this.declineSharedMemory = declineSharedMemory;
+        this.subscriptions = subscriptions;
+    }
+
+    private void connect(String host, int port) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT_MILLIS;
+        while (true) {
+            try {
+                socket = new Socket(host, port);
+                break;
+            } catch (ConnectException e) {
+                // the simulator is not listening yet
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(100);
+            }
+        }
+        socket.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        System.out.println("Connected to " + host + ":" + port);
+        total = new Traffic();
+        interval = new Traffic();
+    }
+
+    private byte[] receive() throws IOException {
+        if (toClient != null) {
+            byte[] message = toClient.read(READ_TIMEOUT_NANOS);
+            if (message == null) {
+                throw new IOException("No message from the simulator in shared memory");
+            }
+            interval.received(4 + message.length);
+            return message;
+        }
+        byte[] message = new byte[in.readUnsignedShort()];
+        in.readFully(message);
+        interval.received(2 + message.length);
+        return message;
+    }
+
+    /**
+     * Writes a message the way {@code DataOutputStream.writeUTF} does, which
+     * is the same for the ASCII JSON sent here.
+     */
+    private void send(JSONObject message) throws IOException {
+        byte[] bytes = message.toString().getBytes(StandardCharsets.UTF_8);
+        if (toServer != null) {
+            toServer.write(bytes, WRITE_TIMEOUT_NANOS);
+            interval.sent(4 + bytes.length);
+            return;
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+        out.flush();
+        interval.sent(2 + bytes.length);
+    }
+
+    private void answerSharedMemoryOffer(JSONObject offer) throws IOException {
+        boolean accept = !declineSharedMemory;
+        JSONObject params = new JSONObject();
+        params.put("accept", accept);
+        JSONObject answer = new JSONObject();
+        answer.put("type", "sharedMemory");
+        answer.put("id", -1);
+        answer.put("params", params);
+        send(answer);
+        if (accept) {
+            JSONObject description = offer.getJSONObject("description");
+            toClient = SharedMemoryRing.open(Paths.get(description.getString("toClient")));
+            toServer = SharedMemoryRing.open(Paths.get(description.getString("toServer")));
+            System.out.println("Using shared memory");
+        }
+    }
+
+    private void subscribe() throws IOException {
+        JSONObject params = new JSONObject();
+        params.put("events", new JSONArray(subscriptions));
+        JSONObject message = new JSONObject();
+        message.put("type", "subscribe");
+        message.put("id", -1);
+        message.put("params", params);
+        send(message);
+    }
+
+    private void run() throws IOException {
+        long nextReport = System.nanoTime() + intervalNanos;
+        boolean subscribed = subscriptions == null;
+        while (true) {
+            byte[] bytes = receive();
+            long received = System.nanoTime();
+            JSONObject message = new JSONObject(new String(bytes, StandardCharsets.UTF_8));
+            String type = message.getString("type");
+            if (type.equals("sharedMemory")) {
+                answerSharedMemoryOffer(message);
+                continue;
+            }
+            if (!subscribed) {
+                // after the shared memory offer, which must be answered first
+                subscribe();
+                subscribed = true;
+            }
+
+            JSONObject ack = new JSONObject();
+            ack.put("type", "eventProcessed");
+            ack.put("id", message.getLong("id"));
+            send(ack);
+            ackLatency.record(System.nanoTime() - received);
+
+            if (type.equals("simulationEnded")) {
+                report("Total", merge(), System.nanoTime());
+                return;
+            }
+            eventReceived(type, message.getJSONObject("description"), received);
+
+            if (received >= nextReport) {
+                report("Last " + TimeUnit.NANOSECONDS.toSeconds(intervalNanos) + "s", interval, received);
+                merge();
+                nextReport = received + intervalNanos;
+            }
+        }
+    }
+
+    private void eventReceived(String type, JSONObject description, long received) throws IOException {
+        switch (type) {
+            case "modelChanged":
+                modelChanged(description);
+                dispatch();
+                break;
+            case "carRequested":
+                calls.add(new Call(description.getInt("floor"),
+                        description.getString("direction").equals("up") ? Direction.UP : Direction.DOWN));
+                dispatch();
+                break;
+            case "floorRequested":
+                stops.get(description.getInt("car")).add(description.getInt("floor"));
+                break;
+            case "carArrived":
+                carFloors.put(description.getInt("car"), description.getInt("floor"));
+                stops.get(description.getInt("car")).remove(description.getInt("floor"));
+                break;
+            case "doorClosed":
+                idleCars.add(description.getInt("car"));
+                dispatch();
+                break;
+            case "actionProcessed":
+                Long sent = pendingActions.remove(description.getLong("actionId"));
+                if (sent != null) {
+                    actionLatency.record(received - sent);
+                }
+                interval.actions++;
+                if (description.getString("status").equalsIgnoreCase("failed")) {
+                    interval.failedActions++;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void modelChanged(JSONObject description) {
+        stops.clear();
+        carFloors.clear();
+        idleCars.clear();
+        calls.clear();
+        Map<Integer, Integer> floorsByHeight = new HashMap<>();
+        JSONArray floors = description.getJSONArray("floors");
+        bottomFloor = Integer.MAX_VALUE;
+        topFloor = Integer.MIN_VALUE;
+        for (int i = 0; i < floors.length(); i++) {
+            JSONObject floor = floors.getJSONObject(i);
+            int id = floor.getInt("id");
+            floorsByHeight.put(floor.getInt("height"), id);
+            bottomFloor = Math.min(bottomFloor, id);
+            topFloor = Math.max(topFloor, id);
+        }
+        JSONArray cars = description.getJSONArray("cars");
+        for (int i = 0; i < cars.length(); i++) {
+            JSONObject car = cars.getJSONObject(i);
+            int id = car.getInt("id");
+            stops.put(id, new TreeSet<>());
+            Integer floor = floorsByHeight.get((int) car.getDouble("currentHeight"));
+            carFloors.put(id, floor != null ? floor : bottomFloor);
+            idleCars.add(id);
+        }
+    }
+
+    /**
+     * Sends every idle car that has somewhere to go.
+     */
+    private void dispatch() throws IOException {
+        for (Iterator<Integer> cars = idleCars.iterator(); cars.hasNext(); ) {
+            int car = cars.next();
+            int current = carFloors.get(car);
+            TreeSet<Integer> carStops = stops.get(car);
+            carStops.remove(current);
+
+            Call next = null;
+            if (!carStops.isEmpty()) {
+                int floor = carStops.first();
+                next = new Call(floor, floor > current ? Direction.UP : Direction.DOWN);
+            } else {
+                for (Iterator<Call> waiting = calls.iterator(); waiting.hasNext(); ) {
+                    Call call = waiting.next();
+                    if (call.floor != current) {
+                        next = call;
+                        waiting.remove();
+                        break;
+                    }
+                }
+            }
+            if (next == null) {
+                continue;
+            }
+            Direction direction = next.direction;
+            if (next.floor == bottomFloor) {
+                direction = Direction.UP;
+            } else if (next.floor == topFloor) {
+                direction = Direction.DOWN;
+            }
+            sendCar(car, next.floor, direction);
+            cars.remove();
+        }
+    }
+
+    private void sendCar(int car, int floor, Direction nextDirection) throws IOException {
+        JSONObject params = new JSONObject();
+        params.put("car", car);
+        params.put("floor", floor);
+        params.put("nextDirection", nextDirection == Direction.UP ? "up" : "down");
+        JSONObject action = new JSONObject();
+        action.put("id", ++lastActionId);
+        action.put("type", "sendCar");
+        action.put("params", params);
+        pendingActions.put(lastActionId, System.nanoTime());
+        send(action);
+    }
+
+    /**
+     * Adds the current interval to the total.
+     *
+     * @return The total
+     */
+    private Traffic merge() {
+        total.messagesIn += interval.messagesIn;
+        total.bytesIn += interval.bytesIn;
+        total.messagesOut += interval.messagesOut;
+        total.bytesOut += interval.bytesOut;
+        total.actions += interval.actions;
+        total.failedActions += interval.failedActions;
+        interval = new Traffic();
+        return total;
+    }
+
+    private void report(String label, Traffic traffic, long now) {
+        System.out.println(label + ": " + traffic.describe(now));
+        System.out.println("  ack latency since the start: " + ackLatency.describe());
+        System.out.println("  sendCar round trip since the start: " + actionLatency.describe());
+    }
+
+    private void close() {
+        if (toServer != null) {
+            toServer.markClosed();
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // exiting anyway
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = "localhost";
+        int port = ElsimSettings.get().getPort();
+        boolean tcp = false;
+        long intervalSeconds = 5;
+        List<String> subscriptions = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--host":
+                        host = args[++i];
+                        break;
+                    case "--port":
+                        port = Integer.parseInt(args[++i]);
+                        break;
+                    case "--tcp":
+                        tcp = true;
+                        break;
+                    case "--interval":
+                        intervalSeconds = Long.parseLong(args[++i]);
+                        break;
+                    case "--subscribe":
+                        subscriptions = Arrays.asList(args[++i].split(","));
+                        break;
+                    default:
+                        throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("Usage: LoadTestClient [--host HOST] [--port PORT] [--tcp] [--interval SECONDS]"
+                    + " [--subscribe TYPES]");
+            System.exit(1);
+        }
+
+        LoadTestClient client = new LoadTestClient(TimeUnit.SECONDS.toNanos(intervalSeconds), tcp, subscriptions);
+        client.connect(host, port);
+        try {
+            client.run();
+        } catch (EOFException e) {
+            System.out.println("Connection closed by the simulator");
+            client.report("Total", client.merge(), System.nanoTime());
+        } finally {
+            client.close();
+        }
+    }
+}
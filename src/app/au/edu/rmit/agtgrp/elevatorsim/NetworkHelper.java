@@ -1,31 +1,63 @@
 package au.edu.rmit.agtgrp.elevatorsim;
 
 import au.edu.rmit.agtgrp.elevatorsim.ui.ControllerDialogCreator;
+import org.intranet.sim.event.Event;
+import org.json.JSONException;
 import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
+import java.lang.invoke.MethodHandles;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Abstracts networking operations so other classes only need to work with JSON.
  * Read and write operations are synchronized on the input and output streams respectively
+ * <p>
+ * If the sharedMemory setting is on, a client on the same host may exchange
+ * messages through a pair of {@link SharedMemoryRing}s instead of the socket.
+ * As soon as it connects the client is sent
+ * <pre>
+ * {"type": "sharedMemory", "id": -1, "time": 0, "description":
+ *   {"version": 1, "capacity": 1048576, "toClient": "/dev/shm/...", "toServer": "/dev/shm/..."}}
+ * </pre>
+ * and answers over the socket with
+ * <pre>
+ * {"type": "sharedMemory", "id": -1, "params": {"accept": true}}
+ * </pre>
+ * after which every message goes through the rings, the server writing to
+ * toClient and reading from toServer. Any other answer, or none within the
+ * timeout, declines and the socket is used as usual.
  *
  * @author Joshua Richards
  */
-public class NetworkHelper {
+public class NetworkHelper implements ClientConnection {
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+    private static final int SHARED_MEMORY_CAPACITY = 1 << 20;
+
     private int port;
     private ServerSocket ss;
     private Socket socket;
     private DataInputStream in;
     private DataOutputStream out;
+    // null unless the client accepted shared memory
+    private SharedMemoryRing toClient;
+    private SharedMemoryRing toServer;
 
     private List<Listener> listeners = new ArrayList<>();
     private ControllerDialogCreator cdc;
@@ -59,6 +91,89 @@ public class NetworkHelper {
         } finally {
             ss.close();
         }
+        if (ElsimSettings.get().getSharedMemory()) {
+            offerSharedMemory();
+        }
+    }
+
+    /**
+     * Offers the client a pair of shared memory rings and switches to them
+     * if it accepts.
+     */
+    private void offerSharedMemory() throws IOException {
+        SharedMemoryRing offeredToClient;
+        SharedMemoryRing offeredToServer;
+        try {
+            Path directory = sharedMemoryDirectory();
+            offeredToClient = createRing(directory, "elsim-to-client-");
+            try {
+                offeredToServer = createRing(directory, "elsim-to-server-");
+            } catch (IOException e) {
+                offeredToClient.delete();
+                throw e;
+            }
+        } catch (IOException e) {
+            LOG.warn("Cannot create shared memory rings, using TCP: {}", e.getMessage());
+            return;
+        }
+
+        boolean accepted = false;
+        try {
+            JSONObject description = new JSONObject();
+            description.put("version", SharedMemoryRing.VERSION);
+            description.put("capacity", SHARED_MEMORY_CAPACITY);
+            description.put("toClient", offeredToClient.getFile().toAbsolutePath().toString());
+            description.put("toServer", offeredToServer.getFile().toAbsolutePath().toString());
+            JSONObject offer = new JSONObject();
+            offer.put("type", "sharedMemory");
+            offer.put("id", -1);
+            offer.put("time", 0);
+            offer.put("description", description);
+            transmit(offer);
+
+            try {
+                JSONObject answer = new JSONObject(in.readUTF());
+                JSONObject params = answer.optJSONObject("params");
+                accepted = "sharedMemory".equals(answer.optString("type")) && params != null
+                        && params.optBoolean("accept");
+            } catch (SocketTimeoutException e) {
+                LOG.info("No answer to the shared memory offer");
+            } catch (JSONException e) {
+                LOG.warn("Invalid answer to the shared memory offer: {}", e.getMessage());
+            }
+        } finally {
+            // also when the client disconnects or sends garbage mid-handshake
+            if (!accepted) {
+                offeredToClient.delete();
+                offeredToServer.delete();
+            }
+        }
+        if (accepted) {
+            LOG.info("Exchanging messages through {} and {}", offeredToClient.getFile(), offeredToServer.getFile());
+            toClient = offeredToClient;
+            toServer = offeredToServer;
+        } else {
+            LOG.info("Shared memory declined, using TCP");
+        }
+    }
+
+    /**
+     * @return /dev/shm where there is one, so the rings are never written to
+     *         a disk, otherwise the temporary directory
+     */
+    private static Path sharedMemoryDirectory() {
+        File shm = new File("/dev/shm");
+        if (shm.isDirectory() && shm.canWrite()) {
+            return shm.toPath();
+        }
+        return Paths.get(System.getProperty("java.io.tmpdir"));
+    }
+
+    private static SharedMemoryRing createRing(Path directory, String prefix) throws IOException {
+        Path file = Files.createTempFile(directory, prefix, ".ring");
+        // createTempFile makes it so the name cannot be taken meanwhile
+        Files.delete(file);
+        return SharedMemoryRing.create(file, SHARED_MEMORY_CAPACITY);
     }
 
     /**
@@ -70,6 +185,9 @@ public class NetworkHelper {
      * @throws IOException If there is a connection problem
      */
     public JSONObject receive() throws IOException {
+        if (toServer != null) {
+            return receiveShared();
+        }
         String messageStr;
         synchronized (in) {
             try {
@@ -99,6 +217,44 @@ public class NetworkHelper {
         return new JSONObject(messageStr);
     }
 
+    /**
+     * Same as reading from the socket in {@link #receive()}, with the
+     * timeout waiting for the ring to have a message.
+     */
+    private JSONObject receiveShared() throws IOException {
+        long timeoutNanos = TimeUnit.SECONDS.toNanos(ElsimSettings.get().getTimeout());
+        byte[] message;
+        synchronized (toServer) {
+            message = readShared(timeoutNanos);
+            if (message == null) {
+                for (Listener listener : listeners) {
+                    // call on litener(s) to send heartbeat
+                    listener.onTimeout();
+                }
+
+                // try to retrieve reply
+                message = readShared(timeoutNanos);
+                if (message == null) {
+                    handleConnectionClose("Connection lost");
+                    throw new SocketTimeoutException("No message from client in shared memory");
+                }
+            }
+        }
+        return new JSONObject(new String(message, StandardCharsets.UTF_8));
+    }
+
+    private byte[] readShared(long timeoutNanos) throws IOException {
+        try {
+            return toServer.read(timeoutNanos);
+        } catch (EOFException e) {
+            // the client closed its ring
+            if (!closed) {
+                handleConnectionClose("Connection closed by client");
+            }
+            throw e;
+        }
+    }
+
     /**
      * Sends a message to the client
      *
@@ -106,13 +262,45 @@ public class NetworkHelper {
      * @throws IOException If there is a connection problem
      */
     public void transmit(JSONObject message) throws IOException {
+        if (toClient != null) {
+            byte[] bytes = message.toString().getBytes(StandardCharsets.UTF_8);
+            synchronized (toClient) {
+                toClient.write(bytes, TimeUnit.SECONDS.toNanos(ElsimSettings.get().getTimeout()));
+            }
+            return;
+        }
         synchronized (out) {
             out.writeUTF(message.toString());
         }
     }
 
+    @Override
+    public void send(Event event) throws IOException {
+        transmit(makeEventJson(event));
+    }
+
+    /**
+     * Create a json message from an Event
+     *
+     * @param e
+     * @return A json message representing the given Event
+     */
+    private JSONObject makeEventJson(Event e) {
+        JSONObject ret = new JSONObject();
+        ret.put("type", e.getName());
+        ret.put("description", e.getDescription());
+        ret.put("time", e.getTime());
+        ret.put("id", e.getId());
+        return ret;
+    }
+
+    @Override
     public void close() {
         closed = true;
+        if (toClient != null) {
+            toClient.delete();
+            toServer.delete();
+        }
         try {
             socket.close();
             in.close();
@@ -130,21 +318,18 @@ public class NetworkHelper {
         }
     }
 
+    @Override
     public void setControllerDialogCreator(ControllerDialogCreator cdc) {
         this.cdc = cdc;
     }
 
+    @Override
     public void addListener(Listener l) {
         listeners.add(l);
     }
 
+    @Override
     public void removeListener(Listener l) {
         listeners.remove(l);
     }
-
-    public interface Listener {
-        public void onTimeout();
-
-        public void onConnectionClosed();
-    }
 }
@@ -9,12 +9,15 @@ import org.intranet.elevator.model.Floor;
 import org.intranet.elevator.model.operate.Building;
 import org.intranet.elevator.model.operate.controller.Controller;
 import org.intranet.sim.event.EventQueue;
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Entry point for controlling the simulation over a network.
@@ -55,6 +58,27 @@ public class NetworkWrapperController implements Controller, EventTransmitter.Li
         {
             eventTransmitter.onEventProcessedByClient(message.getLong("id"));
         });
+        listenerThread.setMessageHandler("subscribe", (JSONObject message) ->
+        {
+            JSONArray events = message.getJSONObject("params").optJSONArray("events");
+            List<String> eventTypes = null;
+            if (events != null) {
+                eventTypes = new ArrayList<>();
+                for (int i = 0; i < events.length(); i++) {
+                    eventTypes.add(events.getString(i));
+                }
+            }
+            LOG.info("Client subscribed to {}", eventTypes != null ? eventTypes : "every event");
+            eventTransmitter.setSubscriptions(eventTypes);
+        });
+        listenerThread.setMessageHandler("queryState", (JSONObject message) ->
+        {
+            JSONObject params = message.optJSONObject("params");
+            if (params != null && params.has("interval")) {
+                eventTransmitter.setStateInterval(params.getLong("interval"));
+            }
+            eventTransmitter.queryState(message.getLong("id"));
+        });
         listenerThread.setMessageHandler("heartbeat", (JSONObject message) ->
         {
             Action heartbeatAction = new Action(message.getLong("id"), eQ) {
@@ -109,6 +133,12 @@ public class NetworkWrapperController implements Controller, EventTransmitter.Li
         LOG.trace("Set next destination called for {} here? No action required", car, new Exception("stacktrace for this call"));
     }
 
+    @Override
+    public boolean isDeterministic() {
+        // decisions depend on the client and on how fast it answers
+        return false;
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName();
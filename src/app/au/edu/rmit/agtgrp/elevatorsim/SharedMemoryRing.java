@@ -0,0 +1,336 @@
+package au.edu.rmit.agtgrp.elevatorsim;
+
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One direction of a shared memory connection: a ring buffer in a
+ * memory-mapped file that one process writes messages to and another reads
+ * them from. See {@link NetworkHelper} for how a pair of them is set up.
+ * <p>
+ * The file starts with a 64 byte header. All integers are little-endian.
+ * <pre>
+ * offset  size      field
+ *      0  4         magic, 0x42524C45 ("ELRB")
+ *      4  4         version, 1
+ *      8  4         capacity of the data area in bytes, a power of two
+ *     12  4         closed, set to 1 by either side when it is done
+ *     16  8         write position: total bytes ever written, only changed by the writer
+ *     24  8         read position: total bytes ever read, only changed by the reader
+ *     32  32        reserved, 0
+ *     64  capacity  data area
+ * </pre>
+ * A message is a 4 byte length followed by that many bytes of UTF-8 JSON,
+ * the same JSON that is sent over TCP. Byte n of the stream is at offset
+ * 64 + n % capacity, so a message may wrap around the end of the data area,
+ * and a message may be at most capacity - 4 bytes long. The writer copies a
+ * whole message in before it moves the write position past it, and the
+ * reader copies a whole message out before it moves the read position past
+ * it, so neither side ever touches bytes the other is still using. The
+ * positions are 8 byte aligned and must be read and written atomically.
+ * <p>
+ * Both sides poll: they spin briefly, then yield, then sleep for short
+ * periods while there is nothing to read or no room to write.
+ */
+public class SharedMemoryRing {
+    public static final int MAGIC = 0x42524C45;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 64;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int CLOSED_OFFSET = 12;
+    private static final int WRITE_POSITION_OFFSET = 16;
+    private static final int READ_POSITION_OFFSET = 24;
+
+    // spinning only keeps the other side off a single processor
+    private static final long SPIN_NANOS = Runtime.getRuntime().availableProcessors() > 1
+            ? TimeUnit.MICROSECONDS.toNanos(20) : 0;
+    private static final long YIELD_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    // Unsafe's fences keep the copy of a message on the right side of the
+    // position that publishes it. A volatile field is not enough: a plain
+    // store after a volatile store may still be moved before it. They are
+    // looked up by reflection as Unsafe is not part of the Java API, and are
+    // null if it is missing.
+    private static final MethodHandle STORE_FENCE;
+    private static final MethodHandle LOAD_FENCE;
+
+    static {
+        MethodHandle storeFence = null;
+        MethodHandle loadFence = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Object unsafe = theUnsafe.get(null);
+            MethodType noArguments = MethodType.methodType(void.class);
+            storeFence = MethodHandles.lookup().findVirtual(unsafeClass, "storeFence", noArguments).bindTo(unsafe);
+            loadFence = MethodHandles.lookup().findVirtual(unsafeClass, "loadFence", noArguments).bindTo(unsafe);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LoggerFactory.getLogger(SharedMemoryRing.class.getSimpleName())
+                    .warn("No memory fences, shared memory rings are only safe on x86: {}", e.toString());
+        }
+        STORE_FENCE = storeFence;
+        LOAD_FENCE = loadFence;
+    }
+
+    // without Unsafe, volatile accesses keep the JIT from reordering around
+    // them, which is enough where the processor keeps stores in order and
+    // loads in order, as x86 does
+    private static volatile int fallbackFence;
+
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int mask;
+
+    private SharedMemoryRing(Path file, MappedByteBuffer buffer) {
+        this.file = file;
+        this.buffer = buffer;
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        capacity = buffer.getInt(CAPACITY_OFFSET);
+        mask = capacity - 1;
+    }
+
+    /**
+     * Creates a new, empty ring in a new file.
+     *
+     * @param file     The file, which must not exist yet
+     * @param capacity Size of the data area in bytes, a power of two
+     */
+    public static SharedMemoryRing create(Path file, int capacity) throws IOException {
+        if (capacity < 8 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity);
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(VERSION_OFFSET, VERSION);
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        // the magic number goes last so the header is complete when it is seen
+        storeFence();
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        return new SharedMemoryRing(file, buffer);
+    }
+
+    /**
+     * Opens a ring created by {@link #create} in this or another process.
+     */
+    public static SharedMemoryRing open(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        int magic = buffer.getInt(MAGIC_OFFSET);
+        loadFence();
+        if (magic != MAGIC || buffer.getInt(VERSION_OFFSET) != VERSION) {
+            throw new IOException(file + " is not a version " + VERSION + " shared memory ring");
+        }
+        return new SharedMemoryRing(file, buffer);
+    }
+
+    /**
+     * Writes a message, waiting for room if the ring is full.
+     *
+     * @param timeoutNanos How long to wait for room
+     * @throws IOException If the message can never fit, there is no room
+     *                     before the timeout, or the ring is closed
+     */
+    public void write(byte[] message, long timeoutNanos) throws IOException {
+        int length = 4 + message.length;
+        if (length > capacity) {
+            throw new IOException("Message of " + message.length + " bytes does not fit in a ring of "
+                    + capacity + " bytes");
+        }
+        long writePosition = buffer.getLong(WRITE_POSITION_OFFSET);
+        long start = System.nanoTime();
+        while (writePosition + length - readPosition() > capacity) {
+            if (isClosed()) {
+                throw new EOFException("Shared memory ring closed");
+            }
+            long now = System.nanoTime();
+            if (now - start >= timeoutNanos) {
+                throw new IOException("Timed out waiting for the reader of " + file);
+            }
+            pause(now - start);
+        }
+        if (isClosed()) {
+            throw new EOFException("Shared memory ring closed");
+        }
+        byte[] lengthBytes = {
+                (byte) message.length, (byte) (message.length >>> 8),
+                (byte) (message.length >>> 16), (byte) (message.length >>> 24)};
+        copyIn(writePosition, lengthBytes);
+        copyIn(writePosition + 4, message);
+        storeFence();
+        buffer.putLong(WRITE_POSITION_OFFSET, writePosition + length);
+    }
+
+    /**
+     * Reads the next message, waiting for one if there is none.
+     *
+     * @param timeoutNanos How long to wait for a message
+     * @return The message, or null if none came before the timeout
+     * @throws EOFException If the ring is closed and every message in it has
+     *                      been read
+     */
+    public byte[] read(long timeoutNanos) throws IOException {
+        long readPosition = buffer.getLong(READ_POSITION_OFFSET);
+        long start = System.nanoTime();
+        while (writePosition() == readPosition) {
+            // the last message may have been written just before closing
+            if (isClosed() && writePosition() == readPosition) {
+                throw new EOFException("Shared memory ring closed");
+            }
+            long now = System.nanoTime();
+            if (now - start >= timeoutNanos) {
+                return null;
+            }
+            pause(now - start);
+        }
+        byte[] lengthBytes = new byte[4];
+        copyOut(readPosition, lengthBytes);
+        int length = (lengthBytes[0] & 0xFF) | (lengthBytes[1] & 0xFF) << 8
+                | (lengthBytes[2] & 0xFF) << 16 | (lengthBytes[3] & 0xFF) << 24;
+        if (length < 0 || length > capacity - 4) {
+            throw new IOException("Corrupt message length " + length + " in " + file);
+        }
+        byte[] message = new byte[length];
+        copyOut(readPosition + 4, message);
+        // the copy is done before the writer may reuse its bytes
+        loadFence();
+        buffer.putLong(READ_POSITION_OFFSET, readPosition + 4 + length);
+        return message;
+    }
+
+    private long writePosition() {
+        long position = buffer.getLong(WRITE_POSITION_OFFSET);
+        loadFence();
+        return position;
+    }
+
+    private long readPosition() {
+        long position = buffer.getLong(READ_POSITION_OFFSET);
+        loadFence();
+        return position;
+    }
+
+    private void copyIn(long position, byte[] bytes) {
+        int offset = (int) (position & mask);
+        int first = Math.min(bytes.length, capacity - offset);
+        ByteBuffer data = buffer.duplicate();
+        data.position(HEADER_SIZE + offset);
+        data.put(bytes, 0, first);
+        data.position(HEADER_SIZE);
+        data.put(bytes, first, bytes.length - first);
+    }
+
+    private void copyOut(long position, byte[] bytes) {
+        int offset = (int) (position & mask);
+        int first = Math.min(bytes.length, capacity - offset);
+        ByteBuffer data = buffer.duplicate();
+        data.position(HEADER_SIZE + offset);
+        data.get(bytes, 0, first);
+        data.position(HEADER_SIZE);
+        data.get(bytes, first, bytes.length - first);
+    }
+
+    /**
+     * Keeps the stores before it from being reordered with the stores after
+     * it.
+     */
+    private static void storeFence() {
+        if (STORE_FENCE == null) {
+            fallbackFence = 0;
+            return;
+        }
+        try {
+            STORE_FENCE.invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Keeps the loads before it from being reordered with the loads and
+     * stores after it.
+     */
+    private static void loadFence() {
+        if (LOAD_FENCE == null) {
+            int ignored = fallbackFence;
+            return;
+        }
+        try {
+            LOAD_FENCE.invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void pause(long waitedNanos) {
+        if (waitedNanos < SPIN_NANOS) {
+            return;
+        }
+        if (waitedNanos < YIELD_NANOS) {
+            Thread.yield();
+            return;
+        }
+        LockSupport.parkNanos(PARK_NANOS);
+    }
+
+    /**
+     * Tells the other side this side is done. A reader still gets the
+     * messages written before, a writer cannot write any more.
+     */
+    public void markClosed() {
+        storeFence();
+        buffer.putInt(CLOSED_OFFSET, 1);
+    }
+
+    public boolean isClosed() {
+        return buffer.getInt(CLOSED_OFFSET) != 0;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Marks the ring closed and deletes its file. Either side may still
+     * have it mapped until it is garbage collected.
+     */
+    public void delete() {
+        markClosed();
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // left behind in the temporary directory
+        }
+    }
+}
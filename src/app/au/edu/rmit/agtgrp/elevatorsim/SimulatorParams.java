@@ -10,6 +10,9 @@ import java.io.File;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
 
 public class SimulatorParams {
     private static       SimulatorParams _instance        = new SimulatorParams();
@@ -97,6 +100,18 @@ public class SimulatorParams {
         return activeController.getString("name");
     }
 
+    /**
+     * @return The class of every controller in the JSON file by its name, in the order of their keys
+     */
+    public Map<String, String> getControllerClasses() {
+        Map<String, String> ret = new LinkedHashMap<>();
+        for (String key : new TreeSet<>(controllers.keySet())) {
+            JSONObject controller = controllers.getJSONObject(key);
+            ret.put(controller.getString("name"), controller.getString("class"));
+        }
+        return ret;
+    }
+
     public String getActiveSimulatorClass() {
         return activeSimulator.getString("class");
     }
@@ -137,6 +152,14 @@ public class SimulatorParams {
         }
     }
 
+    public String getParamValueString(String paramKey, String defaultValue) {
+        if (paramsLoaded) {
+            return activeSimulator.getJSONObject("params").optString(paramKey, defaultValue);
+        } else {
+            throw new IllegalStateException("JSON parameters haven't been loaded yet");
+        }
+    }
+
     public double getParamValueDouble(String paramKey) {
         if (paramsLoaded) {
             return activeSimulator.getJSONObject("params").getDouble(paramKey);
@@ -0,0 +1,85 @@
+package au.edu.rmit.agtgrp.elevatorsim;
+
+import org.intranet.sim.event.EventFingerprint;
+import org.intranet.statistics.Table;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * CSV file of simulation statistics, one row per run. A heading row with the
+ * column names is written when the file is first created. Each row holds the
+ * average of every column of every table, so this assumes the order of
+ * model.getStatistics is consistent. The same stats file should not be used
+ * across different versions of this software.
+ */
+public final class StatsFile {
+    private StatsFile() {
+    }
+
+    /**
+     * Appends one row to the file, creating it with a heading row if needed.
+     *
+     * @param file        CSV file to append to
+     * @param name        name of the simulation, written in the id column
+     * @param seed        random seed of the run
+     * @param speedFactor speed factor the run was made at
+     * @param fingerprint event fingerprint of the run, or null if it was not
+     *                    fingerprinted (written as an empty column)
+     * @param statistics  statistics of the finished run
+     */
+    public static void append(File file, String name, long seed, int speedFactor, EventFingerprint fingerprint,
+                              List<Table> statistics) throws IOException {
+        boolean newFile = file.createNewFile();
+
+        try (FileWriter csvWriter = new FileWriter(file, true)) {
+            if (newFile) {  // write the header of the csv
+                StringBuilder columnNamesStr = new StringBuilder();
+                columnNamesStr.append("id");
+                columnNamesStr.append(",");
+                columnNamesStr.append("timestamp");
+                columnNamesStr.append(",");
+                columnNamesStr.append("seed");
+                columnNamesStr.append(",");
+                columnNamesStr.append("speed_factor");
+                columnNamesStr.append(",");
+                columnNamesStr.append("fingerprint");
+                for (Table table : statistics) {
+                    for (int i = 0; i < table.getColumnCount(); i++) {
+                        columnNamesStr.append(",");
+                        String colName = String.format("avg_%s_%s", table.getName(),
+                                table.getColumn(i).getHeading());
+                        columnNamesStr.append(colName);
+                    }
+                }
+                csvWriter.write(columnNamesStr.toString());
+                csvWriter.write("\n");
+            }
+
+            StringBuilder statsRow = new StringBuilder();
+            statsRow.append(name);
+            statsRow.append(",");
+            statsRow.append(new SimpleDateFormat("dd-MM-yyyy HH:mm:ss").format(new Date()));
+            statsRow.append(",");
+            statsRow.append(seed);
+            statsRow.append(",");
+            statsRow.append(speedFactor);
+            statsRow.append(",");
+            if (fingerprint != null)
+                statsRow.append(fingerprint);
+            for (Table table : statistics) {
+                for (int i = 0; i < table.getColumnCount(); i++) {
+                    statsRow.append(",");
+                    statsRow.append(table.getColumn(i).getAverage());
+                }
+            }
+
+            csvWriter.write(statsRow.toString());
+            csvWriter.write("\n");
+        }
+    }
+}
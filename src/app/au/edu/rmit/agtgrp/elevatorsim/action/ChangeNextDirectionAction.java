@@ -19,23 +19,17 @@ public class ChangeNextDirectionAction extends Action
 	private Direction direction;
 
 	public ChangeNextDirectionAction(long actionId, WrapperModel model, JSONObject params)
+	{
+		this(actionId, model, params.getInt("car"),
+				SendCarAction.parseDirection(params.getString("nextDirection")));
+	}
+
+	public ChangeNextDirectionAction(long actionId, WrapperModel model, int carId, Direction direction)
 	{
 		super(actionId, model.getEventQueue());
-		this.carId = params.getInt("car");
-		String directionParam = params.getString("nextDirection");
-		
-		switch (directionParam)
-		{
-			case "up":
-				this.direction = Direction.UP;
-				break;
-			case "down":
-				this.direction = Direction.DOWN;
-				break;
-			default:
-				this.direction = Direction.NONE;
-				break;
-		}
+		this.model = model;
+		this.carId = carId;
+		this.direction = direction;
 	}
 
 	@Override
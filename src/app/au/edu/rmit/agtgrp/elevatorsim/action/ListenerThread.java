@@ -45,6 +45,8 @@ public class ListenerThread extends Thread {
                 if (!closed) {
                     throw new RuntimeException(e);
                 }
+                // every further receive would fail the same way
+                return;
             }
 
         }
@@ -25,27 +25,36 @@ public class SendCarAction extends Action {
     private Direction nextDirection;
 
     public SendCarAction(long actionId, WrapperModel model, JSONObject params) {
+        this(actionId, model, params.getInt("car"), params.getInt("floor"),
+                parseDirection(params.getString("nextDirection")));
+    }
+
+    /**
+     * @param nextDirection The direction the car shows when it arrives. NONE causes performAction to return FAILED
+     */
+    public SendCarAction(long actionId, WrapperModel model, int carId, int floorId, Direction nextDirection) {
         super(actionId, model.getEventQueue());
         this.model = model;
-        this.carId = params.getInt("car");
-        this.floorId = params.getInt("floor");
+        this.carId = carId;
+        this.floorId = floorId;
 
         this.floor = model.getFloor(floorId);
         this.car = model.getCar(carId);
+        this.nextDirection = nextDirection;
+    }
 
-        String nextDirectionParam = params.getString("nextDirection");
-
-        switch (nextDirectionParam) {
+    /**
+     * @param directionParam The 'nextDirection' parameter of an action
+     * @return UP or DOWN, or NONE if the parameter is neither 'up' nor 'down'
+     */
+    static Direction parseDirection(String directionParam) {
+        switch (directionParam) {
             case "up":
-                this.nextDirection = Direction.UP;
-                break;
+                return Direction.UP;
             case "down":
-                this.nextDirection = Direction.DOWN;
-                break;
+                return Direction.DOWN;
             default:
-                // this causes performAction to return FAILED
-                this.nextDirection = Direction.NONE;
-                break;
+                return Direction.NONE;
         }
     }
 
@@ -1,16 +1,20 @@
 package au.edu.rmit.agtgrp.elevatorsim.event;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.lang.invoke.MethodHandles;
 import java.net.SocketException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.intranet.sim.event.Event;
 import org.intranet.sim.event.EventQueue;
@@ -18,47 +22,197 @@ import org.intranet.statistics.Column;
 import org.intranet.statistics.Table;
 import org.json.JSONArray;
 import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import au.edu.rmit.agtgrp.elevatorsim.ClientConnection;
+import au.edu.rmit.agtgrp.elevatorsim.ElsimSettings;
 import au.edu.rmit.agtgrp.elevatorsim.LaunchOptions;
-import au.edu.rmit.agtgrp.elevatorsim.NetworkHelper;
+import au.edu.rmit.agtgrp.elevatorsim.StatsFile;
 import au.edu.rmit.agtgrp.elevatorsim.WrapperModel;
 
 /**
- * EventQueue listener that transmits json representations of Events
- * as they are processed
+ * EventQueue listener that sends Events to the client as they are
+ * processed and keeps the simulation waiting until the client has
+ * processed them too. The client may subscribe to only some types of
+ * event, in which case the others are neither sent nor waited for. It may
+ * also query the state of the model, and ask for the changes to it to be
+ * sent every so often.
+ * <p>
+ * Types of event set to be coalesced in the settings file are held back
+ * until the end of the clock step, or until an event of another type is
+ * sent, and those of the same car are sent as one. With
+ * {@link ElsimSettings#COALESCE_RANGE} the description of the last one is
+ * sent along with a "floors" array of the floor of every one of them, in
+ * order. With {@link ElsimSettings#COALESCE_LAST}, or for a type of event
+ * with no floor, only the last one is sent.
+ * <p>
+ * Normally the simulation does not skip ahead to the next event while the
+ * client has events left to process, but simulated time goes on. With an
+ * event window of N in the settings file, it skips ahead as long as fewer
+ * than N are left, and simulated time stops once N are left until the
+ * client catches up. It is checked between clock steps, so a step may go
+ * past N. With an event window lag of X ms, simulated time also stops X ms
+ * after the oldest event left to process.
  * @author Joshua Richards
  */
-public class EventTransmitter implements EventQueue.Listener, NetworkHelper.Listener
+public class EventTransmitter implements EventQueue.Listener, ClientConnection.Listener
 {
-	private NetworkHelper connection;
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+
+	// sent even to a client that has not subscribed to them
+	private static final Set<String> ALWAYS_SENT = new HashSet<>(
+			Arrays.asList("heartbeat", "simulationEnded", "state", "stateChanged"));
+
+	private ClientConnection connection;
 	private WrapperModel model;
 	
 	private List<Listener> listeners = new ArrayList<>();
 	
+	// in the order they were sent, so the first is the oldest
 	private Map<Long, Event> unprocessedEvents =
-			Collections.synchronizedMap(new ConcurrentHashMap<>());
+			Collections.synchronizedMap(new LinkedHashMap<>());
+	// the types of event the client wants, null for all of them
+	private volatile Set<String> subscriptions = null;
+	// simulated ms between sending the changes to the state, 0 for never
+	private volatile long stateInterval = 0;
+	// guarded by the EventQueue
+	private long nextStateTime;
+	private StateSnapshot lastState;
+	// how each type of event that is coalesced is coalesced
+	private final Map<String, String> coalesce = ElsimSettings.get().getCoalesce();
+	// guarded by the EventQueue, events held back to be coalesced by type
+	// and car in the order they were first held back
+	private final Map<String, HeldEvents> held = new LinkedHashMap<>();
+	// guarded by the EventQueue, types set to be coalesced as a range that
+	// have no floor, and so are coalesced by sending the last
+	private final Set<String> noFloorToRange = new HashSet<>();
+	private final int window = ElsimSettings.get().getEventWindow();
+	private final int windowLag = ElsimSettings.get().getEventWindowLag();
+	// guarded by the EventQueue, how full the window was
+	private long eventsSent;
+	private long unprocessedWhenSent;
+	private int maxUnprocessed;
+	private int timesFull;
+	private long fullSince;
+	private long fullNanos;
 
-	public EventTransmitter(NetworkHelper connection, WrapperModel model)
+	public EventTransmitter(ClientConnection connection, WrapperModel model)
 	{
 		this.connection = connection;
 		this.model = model;
+		model.getEventQueue().setRunAheadWhileWaiting(window > 0);
+	}
+
+	/**
+	 * Only sends the client events of the given types from now on. The
+	 * simulation does not wait for the client to process other events.
+	 * Heartbeats and the end of the simulation are always sent.
+	 * @param eventTypes the names of the types of event to send, or null to
+	 * send every event
+	 */
+	public void setSubscriptions(Collection<String> eventTypes)
+	{
+		subscriptions = eventTypes == null ? null
+				: Collections.unmodifiableSet(new HashSet<>(eventTypes));
+	}
+
+	private boolean isSubscribed(Event e)
+	{
+		Set<String> wanted = subscriptions;
+		return wanted == null || wanted.contains(e.getName())
+				|| ALWAYS_SENT.contains(e.getName());
 	}
 
 	@Override
 	public void eventProcessed(Event e)
 	{
-		// create the message
-		JSONObject toTransmit = makeEventJson(e);
+		if (isSubscribed(e))
+		{
+			String policy = coalesce.get(e.getName());
+			if (policy != null)
+			{
+				hold(e, policy);
+			}
+			else
+			{
+				sendHeld();
+				transmit(e);
+			}
+		}
+		sendStateChanges(e.getTime());
+	}
 
-		unprocessedEvents.put(e.getId(), e);
+	@Override
+	public void eventsProcessedUpTo(long time)
+	{
+		sendHeld();
+	}
+
+	private void hold(Event e, String policy)
+	{
+		synchronized (model.getEventQueue())
+		{
+			JSONObject description = e.getDescription();
+			String key = e.getName() + " " + description.opt("car");
+			HeldEvents events = held.get(key);
+			if (events == null)
+			{
+				if (policy.equals(ElsimSettings.COALESCE_RANGE) && !description.has("floor"))
+				{
+					if (noFloorToRange.add(e.getName()))
+					{
+						LOG.warn("{} events have no floor to coalesce as a range, only the last is sent", e.getName());
+					}
+					policy = ElsimSettings.COALESCE_LAST;
+				}
+				held.put(key, new HeldEvents(e, description, policy));
+			}
+			else
+			{
+				events.add(e, description);
+			}
+		}
+	}
+
+	/**
+	 * Sends every event held back to be coalesced
+	 */
+	private void sendHeld()
+	{
+		synchronized (model.getEventQueue())
+		{
+			for (Iterator<HeldEvents> it = held.values().iterator(); it.hasNext(); )
+			{
+				Event e = it.next().toEvent();
+				it.remove();
+				transmit(e);
+			}
+		}
+	}
+
+	private void transmit(Event e)
+	{
+		synchronized (model.getEventQueue())
+		{
+			unprocessedEvents.put(e.getId(), e);
+			// before sending, as the client may report the event processed
+			// before send returns
+			model.getEventQueue().waitForEvents();
+			int unprocessed = unprocessedEvents.size();
+			eventsSent++;
+			unprocessedWhenSent += unprocessed;
+			maxUnprocessed = Math.max(maxUnprocessed, unprocessed);
+			updateWindow();
+		}
 		try
 		{
 			// send message
-			connection.transmit(toTransmit);
+			connection.send(e);
 		}
 		catch (SocketException e1)
 		{
-			System.err.println("event processed after simulation end: " + toTransmit.toString(4));
+			System.err.println("event processed after simulation end: " + e.getName() + " " + e.getId());
 			throw new RuntimeException(e1);
 		}
 		catch (IOException e1)
@@ -66,8 +220,66 @@ public class EventTransmitter implements EventQueue.Listener, NetworkHelper.List
 			// TODO: handle this gracefully
 			throw new RuntimeException(e1);
 		}
-		
-		model.getEventQueue().waitForEvents();
+	}
+
+	/**
+	 * Sends the client the current state of every car and floor as a
+	 * "state" event. See {@link StateSnapshot}.
+	 * @param queryId the id of the client's queryState message
+	 */
+	public void queryState(long queryId)
+	{
+		synchronized (model.getEventQueue())
+		{
+			sendHeld();
+			StateSnapshot state = new StateSnapshot(model);
+			JSONObject description = state.toJson();
+			description.put("queryId", queryId);
+			lastState = state;
+			transmit(new StatePercept("state", description));
+		}
+	}
+
+	/**
+	 * Sends the client a "stateChanged" event with the cars and floors that
+	 * changed since the state it was last sent, at most once every interval
+	 * of simulated time. It is sent after the first event processed once the
+	 * interval has passed, and not at all if nothing changed.
+	 * @param interval the simulated milliseconds between changes, or 0 to
+	 * stop sending them
+	 */
+	public void setStateInterval(long interval)
+	{
+		synchronized (model.getEventQueue())
+		{
+			stateInterval = Math.max(interval, 0);
+			nextStateTime = 0;
+		}
+	}
+
+	private void sendStateChanges(long time)
+	{
+		if (stateInterval == 0)
+		{
+			return;
+		}
+		synchronized (model.getEventQueue())
+		{
+			if (stateInterval == 0 || time < nextStateTime)
+			{
+				return;
+			}
+			nextStateTime = time + stateInterval;
+			StateSnapshot state = new StateSnapshot(model);
+			JSONObject changes = state.changesSince(lastState);
+			lastState = state;
+			if (changes.getJSONArray("cars").length() > 0
+					|| changes.getJSONArray("floors").length() > 0)
+			{
+				sendHeld();
+				transmit(new StatePercept("stateChanged", changes));
+			}
+		}
 	}
 	
 	@Override
@@ -75,22 +287,56 @@ public class EventTransmitter implements EventQueue.Listener, NetworkHelper.List
 	{
 		Event e = new SimulationEndedEvent();
 		e.perform();
-		eventProcessed(e);
+		sendHeld();
+		logWindow();
+		transmit(e);
 	}
-	
+
 	/**
-	 * Create a json message from an Event
-	 * @param e
-	 * @return A json message representing the given Event
+	 * Holds simulation time back while the window of events left for the
+	 * client to process is full, or the oldest of them is too old. Must be
+	 * called with the lock on the EventQueue.
 	 */
-	private JSONObject makeEventJson(Event e)
+	private void updateWindow()
 	{
-		JSONObject ret = new JSONObject();
-		ret.put("type", e.getName());
-		ret.put("description", e.getDescription());
-		ret.put("time", e.getTime());
-		ret.put("id", e.getId());
-		return ret;
+		if (window == 0 && windowLag == 0)
+		{
+			return;
+		}
+		EventQueue eQ = model.getEventQueue();
+		boolean full = window > 0 && unprocessedEvents.size() >= window;
+		long holdTime = full ? eQ.getCurrentTime() : Long.MAX_VALUE;
+		if (windowLag > 0 && !unprocessedEvents.isEmpty())
+		{
+			synchronized (unprocessedEvents)
+			{
+				long oldest = unprocessedEvents.values().iterator().next().getTime();
+				holdTime = Math.min(holdTime, oldest + windowLag);
+			}
+		}
+		eQ.setHoldTime(holdTime);
+
+		if (full && fullSince == 0)
+		{
+			timesFull++;
+			fullSince = System.nanoTime();
+		}
+		else if (!full && fullSince != 0)
+		{
+			fullNanos += System.nanoTime() - fullSince;
+			fullSince = 0;
+		}
+	}
+
+	private void logWindow()
+	{
+		synchronized (model.getEventQueue())
+		{
+			LOG.info("Sent {} events with on average {} and at most {} left for the client to process, "
+					+ "window of {} full {} times for {} ms",
+					eventsSent, String.format("%.1f", eventsSent == 0 ? 0.0 : (double) unprocessedWhenSent / eventsSent), maxUnprocessed,
+					window, timesFull, TimeUnit.NANOSECONDS.toMillis(fullNanos));
+		}
 	}
 	
 	/**
@@ -101,16 +347,20 @@ public class EventTransmitter implements EventQueue.Listener, NetworkHelper.List
 	public void onEventProcessedByClient(long id)
 	{
 		Event e;
-		e = unprocessedEvents.remove(id);
-		if (e == null)
-		{
-			System.err.println("Clients reports event " + id +
-					" processed but server has no record");
-			return;
-		}
-		if (unprocessedEvents.size() == 0)
+		synchronized (model.getEventQueue())
 		{
-			model.getEventQueue().stopWaitingForEvents();
+			e = unprocessedEvents.remove(id);
+			if (e == null)
+			{
+				System.err.println("Clients reports event " + id +
+						" processed but server has no record");
+				return;
+			}
+			if (unprocessedEvents.size() == 0)
+			{
+				model.getEventQueue().stopWaitingForEvents();
+			}
+			updateWindow();
 		}
 		if (e.getName().equals("simulationEnded"))
 		{
@@ -146,16 +396,118 @@ public class EventTransmitter implements EventQueue.Listener, NetworkHelper.List
 	{
 		// end the simulation
 		model.getEventQueue().stopWaitingForEvents();
-		for (Event e : new ArrayList<Event>(model.getEventQueue().getEventList()))
-		{
-			model.getEventQueue().removeEvent(e);
-		}
+		model.getEventQueue().setHoldTime(Long.MAX_VALUE);
+		model.getEventQueue().removeIf(e -> true);
 		for (Listener l : listeners)
 		{
 			l.onEnd();
 		}
 	}
 	
+	/**
+	 * Events of one type and car coalesced into one, sent at the time of
+	 * the last of them
+	 */
+	private static class CoalescedEvent extends Event
+	{
+		private final String name;
+		private final JSONObject description;
+
+		/**
+		 * @param floors the floor of every event coalesced, or null to only
+		 * send the last
+		 */
+		public CoalescedEvent(long time, String name, JSONObject description, JSONArray floors)
+		{
+			super(time);
+			this.name = name;
+			this.description = description;
+			if (floors != null)
+			{
+				description.put("floors", floors);
+			}
+		}
+
+		@Override
+		public String getName()
+		{
+			return name;
+		}
+
+		@Override
+		public JSONObject getDescription()
+		{
+			return description;
+		}
+
+		@Override
+		public void perform()
+		{
+		}
+	}
+
+	/**
+	 * Events of one type and car held back to be coalesced
+	 */
+	private static class HeldEvents
+	{
+		private final String name;
+		private long time;
+		private JSONObject description;
+		// null if only the last is sent
+		private final JSONArray floors;
+
+		public HeldEvents(Event e, JSONObject description, String policy)
+		{
+			name = e.getName();
+			floors = policy.equals(ElsimSettings.COALESCE_RANGE) ? new JSONArray() : null;
+			add(e, description);
+		}
+
+		public void add(Event e, JSONObject description)
+		{
+			time = e.getTime();
+			this.description = description;
+			if (floors != null)
+			{
+				floors.put(description.opt("floor"));
+			}
+		}
+
+		public Event toEvent()
+		{
+			return new CoalescedEvent(time, name, description, floors);
+		}
+	}
+
+	/**
+	 * The state of the model, or the changes to it, sent to the client
+	 */
+	private class StatePercept extends Percept
+	{
+		private final String name;
+		private final JSONObject description;
+
+		public StatePercept(String name, JSONObject description)
+		{
+			super(model.getEventQueue());
+			this.name = name;
+			this.description = description;
+		}
+
+		@Override
+		public String getName()
+		{
+			return name;
+		}
+
+		@Override
+		public JSONObject getDescription()
+		{
+			return description;
+		}
+	}
+
 	/**
 	 * Performed and transmitted when the simulation has ended.
 	 * The getDescription returns statistics in JSON format and
@@ -209,74 +561,20 @@ public class EventTransmitter implements EventQueue.Listener, NetworkHelper.List
 		}
 		
 		/**
-		 * Writes csv data to given file. If the file is empty, this method will
-		 * create a heading row with column names. The method will add one row to
-		 * the file with the average of every column of every table.
-		 * This method assumes the order of the return value of model.getStatistics
-		 * is consistent. The same stats file should not be used across different
-		 * versions of this software.
+		 * Appends a row with the average of every column of every table to the
+		 * given CSV file. See {@link StatsFile}.
 		 * @param file
 		 */
 		private void dumpStats(File file)
 		{
-			boolean newFile = false;	// is the stat file new?
-
-			List<Table> statistics = model.getStatistics();
-
-			if(!file.exists()) {
-				try {
-				   	file.createNewFile();
-					newFile = true;
-				} catch (Exception e) {
-					System.err.println("Cannot create CSV file: " + e.getMessage());
-					return;
-				}
-			 }
-
-			try (FileWriter csvWriter = new FileWriter(file, true))
+			try
 			{
-				if (newFile) {	// write the header of the csv
-					StringBuilder columnNamesStr = new StringBuilder();
-					columnNamesStr.append("id");
-					columnNamesStr.append(",");
-					columnNamesStr.append("timestamp");
-					columnNamesStr.append(",");
-					columnNamesStr.append("seed");
-					columnNamesStr.append(",");
-					columnNamesStr.append("speed_factor");
-					for (Table table : statistics) {
-						for (int i = 0; i < table.getColumnCount(); i++) {
-							columnNamesStr.append(",");
-							String colName = String.format("avg_%s_%s", table.getName(),
-									table.getColumn(i).getHeading());
-							columnNamesStr.append(colName);
-						}
-					}
-					// write the header, but up to the very last , added!
-					csvWriter.write(columnNamesStr.toString());
-					csvWriter.write("\n");
-
-				}
-
-				StringBuilder statsRow = new StringBuilder();
-				statsRow.append(LaunchOptions.get().getNameSimulation().orElse("none"));
-				statsRow.append(",");
-				statsRow.append(new SimpleDateFormat("dd-MM-yyyy HH:mm:ss").format(new Date()));
-				statsRow.append(",");
-				statsRow.append(model.getSeed());
-				statsRow.append(",");
-				statsRow.append(LaunchOptions.get().getSpeedFactor().orElse(0));
-				for (Table table : statistics)
-				{
-					for (int i = 0; i < table.getColumnCount(); i++)
-					{
-						statsRow.append(",");
-						statsRow.append(table.getColumn(i).getAverage());
-					}
-				}
-
-				csvWriter.write(statsRow.toString());
-				csvWriter.write("\n");
+				StatsFile.append(file,
+						LaunchOptions.get().getNameSimulation().orElse("none"),
+						model.getSeed(),
+						LaunchOptions.get().getSpeedFactor().orElse(0),
+						model.getEventQueue().getFingerprint(),
+						model.getStatistics());
 			}
 			catch (IOException e)
 			{
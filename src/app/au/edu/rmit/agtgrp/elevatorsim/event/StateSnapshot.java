@@ -0,0 +1,126 @@
+package au.edu.rmit.agtgrp.elevatorsim.event;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.intranet.elevator.model.Car;
+import org.intranet.elevator.model.CarEntrance;
+import org.intranet.elevator.model.Floor;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import au.edu.rmit.agtgrp.elevatorsim.WrapperModel;
+
+/**
+ * The state of every car and floor at one moment, as a client is sent it.
+ * Each car has its id, height, destination and the floor it is stopped at
+ * (null when there is none), occupants, door state ("opened", "opening", "closed"
+ * or "closing") and next direction ("up", "down" or "none"). Each floor has
+ * its id and the number of people waiting to go up and down.
+ * <p>
+ * Must be taken while the model is not changing, that is on the simulation
+ * thread or while holding the lock on the EventQueue.
+ */
+public class StateSnapshot
+{
+	private final Map<Integer, JSONObject> cars = new TreeMap<>();
+	private final Map<Integer, JSONObject> floors = new TreeMap<>();
+
+	public StateSnapshot(WrapperModel model)
+	{
+		for (Car car : model.getAllCars())
+		{
+			JSONObject carJson = new JSONObject();
+			carJson.put("id", car.getId());
+			// to the centimetre, which is plenty and keeps deltas short
+			carJson.put("height", Math.round(car.getHeight() * 100) / 100.0);
+			carJson.put("destination", floorNumber(car.getDestination()));
+			carJson.put("floor", floorNumber(car.getLocation() != null
+					? car.getLocation() : car.getFloorAt()));
+			carJson.put("occupants", car.getOccupants().size());
+			carJson.put("door", doorState(car));
+			carJson.put("nextDirection",
+					model.getNextDirection(car.getId()).toString().toLowerCase());
+			cars.put(car.getId(), carJson);
+		}
+		for (Floor floor : model.getAllFloors())
+		{
+			JSONObject floorJson = new JSONObject();
+			floorJson.put("id", floor.getFloorNumber());
+			floorJson.put("waitingUp", floor.getNumWaiting(true));
+			floorJson.put("waitingDown", floor.getNumWaiting(false));
+			floors.put(floor.getFloorNumber(), floorJson);
+		}
+	}
+
+	private static Object floorNumber(Floor floor)
+	{
+		return floor == null ? JSONObject.NULL : floor.getFloorNumber();
+	}
+
+	private static String doorState(Car car)
+	{
+		Floor floor = car.getLocation();
+		CarEntrance entrance = floor == null ? null : floor.getCarEntranceForCar(car);
+		if (entrance == null)
+		{
+			// the doors only open when docked
+			return "closed";
+		}
+		return entrance.getDoor().getState().toString().toLowerCase();
+	}
+
+	/**
+	 * @return Every car and floor in full
+	 */
+	public JSONObject toJson()
+	{
+		JSONObject ret = new JSONObject();
+		ret.put("cars", new JSONArray(cars.values()));
+		ret.put("floors", new JSONArray(floors.values()));
+		return ret;
+	}
+
+	/**
+	 * @param previous An earlier snapshot of the same model, or null
+	 * @return The cars and floors that differ from the previous snapshot,
+	 * each with its id and only the fields that changed, or everything if
+	 * there is no previous snapshot
+	 */
+	public JSONObject changesSince(StateSnapshot previous)
+	{
+		if (previous == null)
+		{
+			return toJson();
+		}
+		JSONObject ret = new JSONObject();
+		ret.put("cars", changes(cars, previous.cars));
+		ret.put("floors", changes(floors, previous.floors));
+		return ret;
+	}
+
+	private static JSONArray changes(Map<Integer, JSONObject> current,
+			Map<Integer, JSONObject> previous)
+	{
+		JSONArray ret = new JSONArray();
+		for (Map.Entry<Integer, JSONObject> entry : current.entrySet())
+		{
+			JSONObject now = entry.getValue();
+			JSONObject before = previous.get(entry.getKey());
+			JSONObject changed = new JSONObject();
+			for (String key : now.keySet())
+			{
+				if (before == null || !now.get(key).equals(before.opt(key)))
+				{
+					changed.put(key, now.get(key));
+				}
+			}
+			if (changed.length() > 0)
+			{
+				changed.put("id", entry.getKey());
+				ret.put(changed);
+			}
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,62 @@
+package org.intranet.elevator;
+
+/**
+ * A single rider arrival: the time the rider calls a car, the indexes of
+ * the floors the rider travels between, and the row of the rider in the
+ * statistics.
+ */
+public final class Arrival {
+    private final long time;
+    private final int  origin;
+    private final int  destination;
+    private final int  row;
+
+    public Arrival(long time, int origin, int destination) {
+        this(time, origin, destination, -1);
+    }
+
+    /**
+     * @param row Row of the rider in the statistics, reserved with
+     *            {@link org.intranet.elevator.model.operate.Building#reservePeople(int)}
+     */
+    public Arrival(long time, int origin, int destination, int row) {
+        this.time = time;
+        this.origin = origin;
+        this.destination = destination;
+        this.row = row;
+    }
+
+    /**
+     * @return Time (ms) at which the rider requests a car
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return Index of the floor the rider starts on
+     */
+    public int getOrigin() {
+        return origin;
+    }
+
+    /**
+     * @return Index of the floor the rider wants to go to
+     */
+    public int getDestination() {
+        return destination;
+    }
+
+    /**
+     * @return Row of the rider in the statistics, or -1 to add a row when the
+     *         rider is created
+     */
+    public int getRow() {
+        return row;
+    }
+
+    @Override
+    public String toString() {
+        return "Arrival@" + time + ":" + origin + "->" + destination;
+    }
+}
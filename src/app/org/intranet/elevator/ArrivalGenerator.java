@@ -0,0 +1,93 @@
+package org.intranet.elevator;
+
+import org.intranet.elevator.model.Floor;
+import org.intranet.elevator.model.operate.Building;
+import org.intranet.elevator.model.operate.Person;
+import org.intranet.sim.Simulator;
+import org.intranet.sim.event.Event;
+import org.intranet.sim.event.EventQueue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Lazily turns a time-ordered stream of arrivals into Persons and
+ * CarRequestEvents. Only a bounded window of pending requests is kept in the
+ * EventQueue: each time one of them is performed, the next arrival of the
+ * stream is materialized to take its place.
+ */
+public class ArrivalGenerator {
+    public static final int DEFAULT_WINDOW = 64;
+
+    private final Building          building;
+    private final EventQueue        eventQueue;
+    private final Iterator<Arrival> arrivals;
+    private final int               window;
+
+    /**
+     * @param building   Building the riders are created in
+     * @param eQ         Event queue receiving the car requests
+     * @param arrivals   Arrivals in non-decreasing time order
+     * @param window     Maximum number of car requests pending at any time
+     */
+    public ArrivalGenerator(Building building, EventQueue eQ, Iterator<Arrival> arrivals, int window) {
+        if (window < 1)
+            throw new IllegalArgumentException("Arrival window must be at least 1: " + window);
+        this.building = building;
+        this.eventQueue = eQ;
+        this.arrivals = arrivals;
+        this.window = window;
+    }
+
+    public ArrivalGenerator(Building building, EventQueue eQ, Iterator<Arrival> arrivals) {
+        this(building, eQ, arrivals, DEFAULT_WINDOW);
+    }
+
+    /**
+     * Fills the initial window of pending car requests.
+     */
+    public void start() {
+        List<Event> requests = new ArrayList<>(window);
+        for (int i = 0; i < window && arrivals.hasNext(); i++)
+            requests.add(createRequest(arrivals.next()));
+        eventQueue.addAll(requests);
+        readAhead();
+    }
+
+    private void materializeNext() {
+        if (arrivals.hasNext())
+            eventQueue.addEvent(createRequest(arrivals.next()));
+        readAhead();
+    }
+
+    /**
+     * Looks for the arrival after the last one queued, so a stream that reads
+     * a file finds its end, and closes it, as soon as the last arrival is
+     * queued rather than once it is performed.
+     */
+    private void readAhead() {
+        arrivals.hasNext();
+    }
+
+    private Event createRequest(Arrival arrival) {
+        Floor origin = building.getFloor(arrival.getOrigin());
+        Floor destination = building.getFloor(arrival.getDestination());
+        Person person = building.createPersonInRow(origin, arrival.getRow());
+        return new GeneratedCarRequestEvent(arrival.getTime(), person, origin, destination);
+    }
+
+    private final class GeneratedCarRequestEvent extends Simulator.CarRequestEvent {
+        private GeneratedCarRequestEvent(long time, Person person, Floor origin, Floor destination) {
+            super(time, person, origin, destination);
+        }
+
+        @Override
+        public void perform() {
+            // The next arrival is never earlier than this one, so it can be
+            // queued now without violating the EventQueue's time ordering.
+            materializeNext();
+            super.perform();
+        }
+    }
+}
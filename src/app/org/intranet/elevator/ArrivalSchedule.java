@@ -0,0 +1,115 @@
+package org.intranet.elevator;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Compact record of the arrivals drawn by a seeded arrival process.
+ * Arrivals are kept in primitive arrays (16 bytes per rider, 20 once sorted)
+ * in the order they were drawn, and are handed out in time order, ties
+ * broken by draw order, which is the order the original eager generators
+ * enqueued their CarRequestEvents in. Each arrival keeps its draw order as
+ * its row in the statistics, so the riders are listed as they were when
+ * every Person was created up front.
+ */
+public class ArrivalSchedule implements Iterable<Arrival> {
+    private long[] times;
+    private int[]  origins;
+    private int[]  destinations;
+    // the draw order of each arrival once sorted, null while it is its index
+    private int[]  rows;
+    private int    size;
+    private boolean sorted = true;
+
+    public ArrivalSchedule(int expectedSize) {
+        int capacity = Math.max(expectedSize, 1);
+        times = new long[capacity];
+        origins = new int[capacity];
+        destinations = new int[capacity];
+    }
+
+    /**
+     * Records an arrival. Arrivals may be added in any time order.
+     *
+     * @param time        Time of the car request
+     * @param origin      Index of the starting floor
+     * @param destination Index of the destination floor
+     */
+    public void add(long time, int origin, int destination) {
+        if (size == times.length) {
+            int capacity = size * 2;
+            times = Arrays.copyOf(times, capacity);
+            origins = Arrays.copyOf(origins, capacity);
+            destinations = Arrays.copyOf(destinations, capacity);
+            if (rows != null)
+                rows = Arrays.copyOf(rows, capacity);
+        }
+        if (size > 0 && time < times[size - 1])
+            sorted = false;
+        times[size] = time;
+        origins[size] = origin;
+        destinations[size] = destination;
+        if (rows != null)
+            rows[size] = size;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Reorders the arrivals by time. The sort is stable so riders requesting
+     * at the same time keep the order they were drawn in.
+     */
+    private void sortByTime() {
+        if (sorted)
+            return;
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++)
+            order[i] = i;
+        final long[] keys = times;
+        Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+
+        long[] sortedTimes = new long[size];
+        int[] sortedOrigins = new int[size];
+        int[] sortedDestinations = new int[size];
+        int[] sortedRows = new int[size];
+        for (int i = 0; i < size; i++) {
+            int from = order[i];
+            sortedTimes[i] = times[from];
+            sortedOrigins[i] = origins[from];
+            sortedDestinations[i] = destinations[from];
+            sortedRows[i] = rows == null ? from : rows[from];
+        }
+        times = sortedTimes;
+        origins = sortedOrigins;
+        destinations = sortedDestinations;
+        rows = sortedRows;
+        sorted = true;
+    }
+
+    @Override
+    public Iterator<Arrival> iterator() {
+        sortByTime();
+        return new Iterator<Arrival>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Arrival next() {
+                if (!hasNext())
+                    throw new NoSuchElementException("No more arrivals");
+                Arrival arrival = new Arrival(times[next], origins[next], destinations[next],
+                        rows == null ? next : rows[next]);
+                next++;
+                return arrival;
+            }
+        };
+    }
+}
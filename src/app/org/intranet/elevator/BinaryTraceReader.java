@@ -0,0 +1,72 @@
+package org.intranet.elevator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads fixed size records by memory-mapping the trace a window at a time,
+ * so arbitrarily large traces are read without holding more than one window
+ * of the file.
+ */
+class BinaryTraceReader extends TraceReader {
+    private static final int RECORDS_PER_WINDOW = 1 << 20;
+
+    private final FileChannel channel;
+    private final long        records;
+    private MappedByteBuffer  window;
+    private long              windowStart;
+    private long              record;
+
+    BinaryTraceReader(File file, int numFloors) throws IOException {
+        super(file, numFloors);
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, MAGIC))
+                throw new IOException("Not a binary trace: " + file);
+            int version = header.getInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported trace version " + version + " in " + file);
+            long body = channel.size() - HEADER_SIZE;
+            if (body % RECORD_SIZE != 0)
+                throw new IOException("Truncated trace " + file + ": " + body % RECORD_SIZE + " trailing bytes");
+            records = body / RECORD_SIZE;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    protected boolean readRecord(long[] into) throws IOException {
+        if (record == records)
+            return false;
+        if (window == null || record - windowStart == RECORDS_PER_WINDOW) {
+            windowStart = record;
+            long count = Math.min(RECORDS_PER_WINDOW, records - record);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + record * RECORD_SIZE, count * RECORD_SIZE);
+        }
+        into[0] = window.getLong();
+        into[1] = window.getInt();
+        into[2] = window.getInt();
+        record++;
+        return true;
+    }
+
+    @Override
+    protected String position() {
+        return "record " + record;
+    }
+
+    @Override
+    protected void closeSource() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,70 @@
+package org.intranet.elevator;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads {@code time,origin,destination} rows through a large buffer, one line
+ * at a time.
+ */
+class CsvTraceReader extends TraceReader {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final BufferedReader reader;
+    private long lineNumber;
+
+    CsvTraceReader(File file, int numFloors) throws IOException {
+        super(file, numFloors);
+        reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    @Override
+    protected boolean readRecord(long[] into) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            // a header row is the only one allowed not to start with a digit
+            if (lineNumber == 1 && !Character.isDigit(line.charAt(0)))
+                continue;
+            parse(line, into);
+            return true;
+        }
+        return false;
+    }
+
+    private void parse(String line, long[] into) {
+        int field = 0;
+        int start = 0;
+        for (int i = 0; i <= line.length(); i++) {
+            if (i < line.length() && line.charAt(i) != ',')
+                continue;
+            if (field == into.length)
+                throw new IllegalStateException("Expected 3 columns at " + position() + ": " + line);
+            try {
+                into[field++] = Long.parseLong(line.substring(start, i).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalStateException("Malformed value at " + position() + ": " + line);
+            }
+            start = i + 1;
+        }
+        if (field != into.length)
+            throw new IllegalStateException("Expected 3 columns at " + position() + ": " + line);
+    }
+
+    @Override
+    protected String position() {
+        return "line " + lineNumber;
+    }
+
+    @Override
+    protected void closeSource() throws IOException {
+        reader.close();
+    }
+}
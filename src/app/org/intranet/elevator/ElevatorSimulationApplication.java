@@ -14,6 +14,7 @@ import org.intranet.sim.Model;
 import org.intranet.sim.SimulationApplication;
 import org.intranet.sim.Simulator;
 import org.intranet.sim.clock.RealTimeClock;
+import org.intranet.sim.runner.SimulationDaemon;
 import org.intranet.sim.runner.SimulationHeadlessRunner;
 import org.intranet.sim.ui.ApplicationUI;
 import org.slf4j.Logger;
@@ -21,6 +22,8 @@ import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
 import java.awt.*;
+import java.io.IOException;
+import java.io.PrintStream;
 import java.lang.invoke.MethodHandles;
 import java.net.URL;
 import java.util.ArrayList;
@@ -44,8 +47,17 @@ public class ElevatorSimulationApplication
     public static void main(String[] args) {
         LaunchOptions.createFromCliArgs(args);
 
+        // a daemon reading jobs from stdin writes its results to stdout, so
+        // everything else printed, including logging, must go to stderr
+        PrintStream results = System.out;
+        if (LaunchOptions.get().isDaemon() && !LaunchOptions.get().getDaemonPort().isPresent()) {
+            System.setOut(System.err);
+        }
+
         LOG.debug("Starting Application {}", APPLICATION_NAME);
-        if (LaunchOptions.get().isHeadless()) { // headless mode selected
+        if (LaunchOptions.get().isDaemon()) {   // headless server running many jobs
+            runDaemon(results);
+        } else if (LaunchOptions.get().isHeadless()) { // headless mode selected
             Simulator loadedSimulator = null;
 
             if (LaunchOptions.get().hasJsonParams()) {
@@ -76,6 +88,22 @@ public class ElevatorSimulationApplication
         LOG.info("Started Application {}", APPLICATION_NAME);
     }
 
+    private static void runDaemon(PrintStream results) {
+        int workers = LaunchOptions.get().getWorkers().orElse(Runtime.getRuntime().availableProcessors());
+        SimulationDaemon daemon = new SimulationDaemon(workers);
+        try {
+            if (LaunchOptions.get().getDaemonPort().isPresent()) {
+                daemon.listen(LaunchOptions.get().getDaemonPort().get());
+            } else {
+                daemon.serve(System.in, results);
+            }
+        } catch (IOException e) {
+            LOG.error("Simulation daemon stopped: {}", e.getMessage());
+        } finally {
+            daemon.shutdown();
+        }
+    }
+
     public ElevatorSimulationApplication() {
         super();
     }
@@ -90,6 +118,7 @@ public class ElevatorSimulationApplication
         simulations.add(new RandomElevatorSimulator());
         simulations.add(new MorningTrafficElevatorSimulator());
         simulations.add(new EveningTrafficElevatorSimulator());
+        simulations.add(new TraceElevatorSimulator());
         if (ElsimSettings.get().getEnableHiddenSimulators()) {
             simulations.add(new ThreePersonBugSimulator());
             simulations.add(new ThreePersonElevatorSimulator());
@@ -5,13 +5,10 @@
 package org.intranet.elevator;
 
 import au.edu.rmit.agtgrp.elevatorsim.SimulatorParams;
-import org.intranet.elevator.model.Floor;
 import org.intranet.elevator.model.operate.Building;
-import org.intranet.elevator.model.operate.Person;
 import org.intranet.elevator.model.operate.controller.Controller;
 import org.intranet.sim.Model;
 import org.intranet.sim.Simulator;
-import org.intranet.sim.event.Event;
 import org.intranet.ui.FloatParameter;
 import org.intranet.ui.IntegerParameter;
 import org.intranet.ui.LongParameter;
@@ -74,29 +71,28 @@ public class EveningTrafficElevatorSimulator
         long seed = seedParameter.getLongValue();
 
         Controller controller = getController();
-        building = new Building(getEventQueue(), numFloors, numCars, controller, seedParameter.getLongValue());
+        building = Building.reuse(building, getEventQueue(), numFloors, numCars, controller, seedParameter.getLongValue());
         // destination floor is the ground floor
-        final Floor destFloor = building.getFloor(0);
-        destFloor.setCapacity(Integer.MAX_VALUE);
+        building.getFloor(0).setCapacity(Integer.MAX_VALUE);
 
         Random rand = new Random(seed);
+        ArrivalSchedule schedule = new ArrivalSchedule((numFloors - 1) * numRiders);
 
         for (int i = 1; i < numFloors; i++) {
-            Floor startingFloor = building.getFloor(i);
             for (int j = 0; j < numRiders; j++) {
-                final Person person = building.createPerson(startingFloor, j);
                 // time to insert
                 // Convert a gaussian[-1, 1] to a gaussian[0, 1]
                 float gaussian = (getGaussian(rand, stdDeviation) + 1) / 2;
                 // Apply gaussian value to the duration (in hours)
                 // and convert to milliseconds
                 long insertTime = (long) (gaussian * duration * 3600 * 1000);
-
-                // insertion event for destination at time
-                Event event = new CarRequestEvent(insertTime, person, startingFloor, destFloor);
-                getEventQueue().addEvent(event);
+                schedule.add(insertTime, i, 0);
             }
         }
+        // persons and their insertion events are created just before they are due,
+        // but every one of them has a row in the statistics from the start
+        building.reservePeople(schedule.size());
+        new ArrivalGenerator(building, getEventQueue(), schedule.iterator()).start();
     }
 
     public final Model getModel() {
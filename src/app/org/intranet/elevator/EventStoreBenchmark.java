@@ -0,0 +1,108 @@
+package org.intranet.elevator;
+
+import org.intranet.sim.event.Event;
+import org.intranet.sim.event.EventStore;
+import org.intranet.sim.event.SkipListEventStore;
+import org.intranet.sim.event.TimingWheelEventStore;
+import org.json.JSONObject;
+
+import java.util.Random;
+
+/**
+ * Compares the time the {@link TimingWheelEventStore} and the
+ * {@link SkipListEventStore} take to process events, with a few, a thousand
+ * and twenty thousand events pending. Each operation takes the earliest event
+ * out of the store, as the queue does before performing it, and adds a new
+ * one a little later, at the offsets from the current time that door,
+ * boarding and travel events have. The number of pending events stays the
+ * same throughout.
+ * <p>
+ * Each store is run a few times before it is timed so the JIT compiler has
+ * compiled it, and the best of the timed rounds is printed.
+ * <p>
+ * Usage: {@code EventStoreBenchmark [operations]}
+ */
+public final class EventStoreBenchmark {
+    public static final int DEFAULT_OPERATIONS = 1000000;
+
+    private static final int[]  PENDING       = {50, 1000, 20000};
+    // ms after the current time: percepts, door and boarding events, trips
+    private static final long[] OFFSETS       = {0, 0, 1500, 2000, 2000, 3000, 5000, 30000, 120000};
+    private static final int    WARMUP_ROUNDS = 3;
+    private static final int    TIMED_ROUNDS  = 5;
+
+    private EventStoreBenchmark() {
+    }
+
+    private static final class NoEvent extends Event {
+        NoEvent(long time) {
+            super(time);
+        }
+
+        @Override
+        public void perform() {
+        }
+
+        @Override
+        public String getName() {
+            return "noEvent";
+        }
+
+        @Override
+        public JSONObject getDescription() {
+            return new JSONObject();
+        }
+    }
+
+    /**
+     * @return The time taken by each operation, in nanoseconds
+     */
+    public static double measure(EventStore store, int pending, int operations, long seed) {
+        Random random = new Random(seed);
+        long now = 0;
+        for (int i = 0; i < pending; i++)
+            store.add(new NoEvent(now + nextOffset(random)));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < operations; i++) {
+            Event first = store.first();
+            store.remove(first);
+            now = first.getTime();
+            store.advanceTo(now);
+            store.add(new NoEvent(now + nextOffset(random)));
+        }
+        long elapsed = System.nanoTime() - start;
+        store.clear();
+        return elapsed / (double) operations;
+    }
+
+    private static long nextOffset(Random random) {
+        return OFFSETS[random.nextInt(OFFSETS.length)] + random.nextInt(4) * 1000;
+    }
+
+    private static double best(boolean wheel, int pending, int operations) {
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < WARMUP_ROUNDS + TIMED_ROUNDS; round++) {
+            EventStore store = wheel ? new TimingWheelEventStore() : new SkipListEventStore();
+            double ns = measure(store, pending, operations, round);
+            if (round >= WARMUP_ROUNDS)
+                best = Math.min(best, ns);
+        }
+        return best;
+    }
+
+    public static void main(String[] args) {
+        if (args.length > 1) {
+            System.err.println("Usage: EventStoreBenchmark [operations]");
+            System.exit(1);
+        }
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_OPERATIONS;
+
+        for (int pending : PENDING) {
+            double skipList = best(false, pending, operations);
+            double timingWheel = best(true, pending, operations);
+            System.out.printf("%6d pending: skipList %.0f ns/event, timingWheel %.0f ns/event (%.1fx)%n",
+                    pending, skipList, timingWheel, skipList / timingWheel);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package org.intranet.elevator;
+
+import au.edu.rmit.agtgrp.elevatorsim.ElsimSettings;
+import au.edu.rmit.agtgrp.elevatorsim.utils.ClassLoader;
+import org.intranet.sim.Simulator;
+import org.intranet.sim.event.EventFingerprint;
+import org.intranet.sim.runner.SimulationJob;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs every bundled simulator, except the Trace Replay which needs a trace
+ * file, with both in-process controllers and a few seeds, and compares the
+ * {@link EventFingerprint} of each run with the golden fingerprints in a
+ * file. Simulators without a seed are run once per controller. A change to
+ * the engine that is meant to be only faster must keep all of them. Needs
+ * {@code enableOldControllers} in {@code elsimsettings.json}.
+ * <p>
+ * The golden file has one {@code simulator controller seed events fingerprint}
+ * line per run, with - as the seed of simulators without one. Lines starting
+ * with # are ignored. With {@code --update} the file is rewritten from the
+ * current runs instead, which is only right when the behaviour of the
+ * simulation is meant to change.
+ * <p>
+ * Usage: {@code FingerprintCheck [--update] [golden file]}
+ */
+public final class FingerprintCheck {
+    public static final String DEFAULT_GOLDEN_FILE = "golden-fingerprints.txt";
+
+    private static final Class<?>[] SIMULATORS = {
+            RandomElevatorSimulator.class,
+            MorningTrafficElevatorSimulator.class,
+            EveningTrafficElevatorSimulator.class,
+            ThreePersonBugSimulator.class,
+            ThreePersonElevatorSimulator.class,
+            ThreePersonTwoElevatorSimulator.class,
+            UpToFourThenDownSimulator.class,
+            NoIdleElevatorCarSimulator.class,
+    };
+    private static final String[] CONTROLLERS = {"Default MetaController", "SimpleController"};
+    private static final long[]   SEEDS       = {1, 2, 3};
+
+    private FingerprintCheck() {
+    }
+
+    /**
+     * @return The "events fingerprint" of every run, keyed by
+     *         "simulator controller seed"
+     */
+    public static Map<String, String> run() throws IOException {
+        Map<String, String> fingerprints = new LinkedHashMap<>();
+        for (Class<?> simulator : SIMULATORS) {
+            boolean seeded = ClassLoader.instantiate(simulator.getName(), Simulator.class)
+                    .getParameter(SimulationJob.SEED_PARAMETER) != null;
+            for (String controller : CONTROLLERS) {
+                for (int i = 0; i < (seeded ? SEEDS.length : 1); i++) {
+                    JSONObject job = new JSONObject();
+                    job.put("simulator", simulator.getName());
+                    job.put("controller", controller);
+                    if (seeded)
+                        job.put("seed", SEEDS[i]);
+                    job.put("fingerprint", true);
+                    JSONObject result = new SimulationJob(job, "golden").run();
+                    // controller names have spaces, so they are written without
+                    String key = simulator.getSimpleName() + " " + controller.replace(" ", "") + " " +
+                            (seeded ? String.valueOf(SEEDS[i]) : "-");
+                    fingerprints.put(key, result.getLong("events") + " " + result.getString("fingerprint"));
+                }
+            }
+        }
+        return fingerprints;
+    }
+
+    static Map<String, String> read(File file) throws IOException {
+        Map<String, String> fingerprints = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            String[] fields = line.split("\\s+");
+            if (fields.length != 5)
+                throw new IOException("Malformed line in " + file + ": " + line);
+            fingerprints.put(fields[0] + " " + fields[1] + " " + fields[2], fields[3] + " " + fields[4]);
+        }
+        return fingerprints;
+    }
+
+    static void write(File file, Map<String, String> fingerprints) throws IOException {
+        try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+            out.println("# simulator controller seed events fingerprint");
+            out.println("# written by org.intranet.elevator.FingerprintCheck --update");
+            for (Map.Entry<String, String> entry : fingerprints.entrySet())
+                out.println(entry.getKey() + " " + entry.getValue());
+        }
+    }
+
+    /**
+     * @return A description of every run whose fingerprint differs from, or
+     *         is missing in, the golden fingerprints
+     */
+    static List<String> compare(Map<String, String> golden, Map<String, String> actual) {
+        List<String> differences = new ArrayList<>();
+        for (Map.Entry<String, String> entry : actual.entrySet()) {
+            String expected = golden.get(entry.getKey());
+            if (expected == null)
+                differences.add(entry.getKey() + ": no golden fingerprint, got " + entry.getValue());
+            else if (!expected.equals(entry.getValue()))
+                differences.add(entry.getKey() + ": expected " + expected + ", got " + entry.getValue());
+        }
+        for (String key : golden.keySet())
+            if (!actual.containsKey(key))
+                differences.add(key + ": golden fingerprint of a run that no longer exists");
+        return differences;
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean update = args.length > 0 && args[0].equals("--update");
+        int fileArg = update ? 1 : 0;
+        if (args.length > fileArg + 1) {
+            System.err.println("Usage: FingerprintCheck [--update] [golden file]");
+            System.exit(1);
+        }
+        if (!ElsimSettings.get().getEnableOldControllers()) {
+            System.err.println("FingerprintCheck needs enableOldControllers set to true in " +
+                    ElsimSettings.SETTINGS_FILENAME);
+            System.exit(1);
+        }
+        File file = new File(args.length > fileArg ? args[fileArg] : DEFAULT_GOLDEN_FILE);
+
+        Map<String, String> actual = run();
+        if (update) {
+            write(file, actual);
+            System.out.println("Wrote " + actual.size() + " fingerprints to " + file);
+            return;
+        }
+        List<String> differences = compare(read(file), actual);
+        for (String difference : differences)
+            System.out.println(difference);
+        if (!differences.isEmpty()) {
+            System.out.println(differences.size() + " of " + actual.size() + " runs differ from " + file);
+            System.exit(1);
+        }
+        System.out.println("All " + actual.size() + " runs match " + file);
+    }
+}
@@ -60,7 +60,7 @@ public class NoIdleElevatorCarSimulator
         final int downDest = downDestParameter.getIntegerValue() - 1;
 
         Controller controller = getController();
-        building = new Building(getEventQueue(), numFloors, numCars, controller, seedParameter.getLongValue());
+        building = Building.reuse(building, getEventQueue(), numFloors, numCars, controller, 0);
         final Person a = building.createPerson(building.getFloor(1), 1);
         Event eventA = new CarRequestEvent(0, a, building.getFloor(1), building.getFloor(upDest));
         getEventQueue().addEvent(eventA);
@@ -0,0 +1,71 @@
+package org.intranet.elevator;
+
+import org.intranet.elevator.model.Floor;
+import org.intranet.elevator.model.operate.Building;
+import org.intranet.elevator.model.operate.controller.MetaController;
+import org.intranet.sim.event.EventQueue;
+
+/**
+ * Measures the heap taken by each rider and checks it against
+ * {@link #MAX_BYTES_PER_PERSON}. It creates a large number of idle riders on
+ * one floor and compares the heap used before and after, so the figure
+ * includes the references to each rider held by the building and the floor.
+ * A change that makes a Person bigger must keep it within the target.
+ * <p>
+ * The target assumes compressed object references, the default for heaps
+ * under 32 GB.
+ * <p>
+ * Usage: {@code PersonFootprintCheck [riders]}
+ */
+public final class PersonFootprintCheck {
+    public static final int MAX_BYTES_PER_PERSON = 72;
+    public static final int DEFAULT_RIDERS       = 1000000;
+
+    private PersonFootprintCheck() {
+    }
+
+    /**
+     * @return The heap used by each of the riders created, in bytes
+     */
+    public static double measure(int riders) {
+        Building building = new Building(new EventQueue(), 2, 1, Building.DEFAULT_CAR_CAPACITY,
+                new MetaController(), 0);
+        Floor floor = building.getFloor(0);
+        floor.setCapacity(Integer.MAX_VALUE);
+
+        long before = usedHeap();
+        for (int i = 0; i < riders; i++)
+            building.createPerson(floor, i);
+        long after = usedHeap();
+        // keeps the riders reachable until they are measured
+        if (floor.getOccupants().size() != riders)
+            throw new IllegalStateException("Expected " + riders + " riders on the floor");
+        return (after - before) / (double) riders;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // the lowest of a few collections, as one may not free everything
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    public static void main(String[] args) {
+        if (args.length > 1) {
+            System.err.println("Usage: PersonFootprintCheck [riders]");
+            System.exit(1);
+        }
+        int riders = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_RIDERS;
+
+        double bytes = measure(riders);
+        System.out.printf("%.1f bytes per rider over %d riders, target %d%n", bytes, riders, MAX_BYTES_PER_PERSON);
+        if (bytes > MAX_BYTES_PER_PERSON) {
+            System.out.println("Each rider takes more than the target of " + MAX_BYTES_PER_PERSON + " bytes");
+            System.exit(1);
+        }
+    }
+}
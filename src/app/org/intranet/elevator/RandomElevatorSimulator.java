@@ -6,9 +6,7 @@ package org.intranet.elevator;
 
 import au.edu.rmit.agtgrp.elevatorsim.SimulatorParams;
 import au.edu.rmit.agtgrp.elevatorsim.event.SimulationTimeoutEvent;
-import org.intranet.elevator.model.Floor;
 import org.intranet.elevator.model.operate.Building;
-import org.intranet.elevator.model.operate.Person;
 import org.intranet.elevator.model.operate.controller.Controller;
 import org.intranet.sim.Model;
 import org.intranet.sim.Simulator;
@@ -78,7 +76,8 @@ public class RandomElevatorSimulator
         long seed = seedParameter.getLongValue();
         Controller controller = getController();
 
-        building = new Building(
+        building = Building.reuse(
+                building,
                 getEventQueue(),
                 numFloors,
                 numCars,
@@ -88,23 +87,24 @@ public class RandomElevatorSimulator
         );
 
         Random rand = new Random(seed);
+        ArrivalSchedule schedule = new ArrivalSchedule(numRiders);
 
         for (int i = 0; i < numRiders; i++) {
             // starting floor
-            Floor startingFloor = building.getFloor(rand.nextInt(numFloors));
-            final Person person = building.createPerson(startingFloor, i);
+            int startingFloor = rand.nextInt(numFloors);
             // destination floor
-            Floor floor = null;
+            int destFloor;
             do {
-                floor = building.getFloor(rand.nextInt(numFloors));
-            } while (floor == startingFloor);
-            final Floor destFloor = floor;
+                destFloor = rand.nextInt(numFloors);
+            } while (destFloor == startingFloor);
             // time to insert
             long insertTime = rand.nextInt((int) lastRequestTime);
-            // insertion event for destination at time
-            Event event = new CarRequestEvent(insertTime, person, startingFloor, destFloor);
-            getEventQueue().addEvent(event);
+            schedule.add(insertTime, startingFloor, destFloor);
         }
+        // persons and their insertion events are created just before they are due,
+        // but every one of them has a row in the statistics from the start
+        building.reservePeople(schedule.size());
+        new ArrivalGenerator(building, getEventQueue(), schedule.iterator()).start();
 
         Event simulationTimeout = new SimulationTimeoutEvent(duration);
         getEventQueue().addEvent(simulationTimeout);
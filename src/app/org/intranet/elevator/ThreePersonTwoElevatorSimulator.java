@@ -53,7 +53,7 @@ public class ThreePersonTwoElevatorSimulator
         EventQueue eQ = getEventQueue();
 
         Controller controller = getController();
-        building = new Building(getEventQueue(), numFloors, numCars, controller, seedParameter.getLongValue());
+        building = Building.reuse(building, getEventQueue(), numFloors, numCars, controller, 0);
 
         final Person c = building.createPerson(building.getFloor(3), 3);
         Event eventC = new CarRequestEvent(0, c, building.getFloor(3), building.getFloor(1));
@@ -0,0 +1,51 @@
+package org.intranet.elevator;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Converts a CSV passenger trace to the binary trace format read by
+ * {@link TraceReader}. The rows are validated against the given number of
+ * floors while converting, so the binary trace can be replayed in any
+ * building at least that tall.
+ * <p>
+ * Usage: {@code TraceConverter <trace.csv> <trace.bin> <floors>}
+ */
+public final class TraceConverter {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private TraceConverter() {
+    }
+
+    /**
+     * @return Number of arrivals written
+     */
+    public static long convert(File csv, File binary, int numFloors) throws IOException {
+        long count = 0;
+        try (TraceReader in = new CsvTraceReader(csv, numFloors);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(binary), BUFFER_SIZE))) {
+            out.write(TraceReader.MAGIC);
+            out.writeInt(TraceReader.VERSION);
+            while (in.hasNext()) {
+                Arrival arrival = in.next();
+                out.writeLong(arrival.getTime());
+                out.writeInt(arrival.getOrigin() + 1);
+                out.writeInt(arrival.getDestination() + 1);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: TraceConverter <trace.csv> <trace.bin> <floors>");
+            System.exit(1);
+        }
+        long count = convert(new File(args[0]), new File(args[1]), Integer.parseInt(args[2]));
+        System.out.println("Wrote " + count + " arrivals to " + args[1]);
+    }
+}
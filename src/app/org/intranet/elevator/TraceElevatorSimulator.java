@@ -0,0 +1,114 @@
+package org.intranet.elevator;
+
+import au.edu.rmit.agtgrp.elevatorsim.SimulatorParams;
+import au.edu.rmit.agtgrp.elevatorsim.event.SimulationTimeoutEvent;
+import org.intranet.elevator.model.operate.Building;
+import org.intranet.elevator.model.operate.controller.Controller;
+import org.intranet.sim.Model;
+import org.intranet.sim.Simulator;
+import org.intranet.ui.IntegerParameter;
+import org.intranet.ui.LongParameter;
+import org.intranet.ui.StringParameter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Replays recorded lobby traffic from a CSV or binary trace file (see
+ * {@link TraceReader}). Arrivals are streamed from the file as the simulation
+ * progresses, so the trace may be far larger than memory.
+ */
+public class TraceElevatorSimulator
+        extends Simulator {
+    private IntegerParameter floorsParameter;
+    private IntegerParameter carsParameter;
+    private IntegerParameter capacityParameter;
+    private StringParameter  traceParameter;
+    private LongParameter    durationParameter;
+
+    private Building    building;
+    private TraceReader trace;
+
+    public TraceElevatorSimulator() {
+        super();
+    }
+
+    @Override
+    protected void initialiseParameters() {
+        if (SimulatorParams.instance().isValid()) {
+            SimulatorParams params = SimulatorParams.instance();
+            floorsParameter = new IntegerParameter("Number of Floors", params.getParamValueInt("floors"));
+            carsParameter = new IntegerParameter("Number of Elevators", params.getParamValueInt("cars"));
+            capacityParameter = new IntegerParameter("Elevator Capacity", params.getParamValueInt("capacity"));
+            traceParameter = new StringParameter("Trace File", params.getParamValueString("trace", "trace.csv"));
+            durationParameter = new LongParameter("Simulation Duration (ms)", params.getParamValueLong("duration"));
+        } else {
+            floorsParameter = new IntegerParameter("Number of Floors", 10);
+            carsParameter = new IntegerParameter("Number of Elevators", 3);
+            capacityParameter = new IntegerParameter("Elevator Capacity", 8);
+            traceParameter = new StringParameter("Trace File", "trace.csv");
+            durationParameter = new LongParameter("Simulation Duration (ms)", 3600000);
+        }
+
+        parameters.add(floorsParameter);
+        parameters.add(carsParameter);
+        parameters.add(capacityParameter);
+        parameters.add(traceParameter);
+        parameters.add(durationParameter);
+        addControllerParameter();
+    }
+
+    @Override
+    public void initializeModel() {
+        int numFloors = floorsParameter.getIntegerValue();
+        int numCars = carsParameter.getIntegerValue();
+        int carCapacity = capacityParameter.getIntegerValue();
+        long duration = durationParameter.getLongValue();
+        Controller controller = getController();
+
+        building = Building.reuse(building, getEventQueue(), numFloors, numCars, carCapacity, controller, 0);
+
+        try {
+            trace = TraceReader.open(new File(traceParameter.getStringValue()), numFloors);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open trace " + traceParameter.getStringValue(), e);
+        }
+        new ArrivalGenerator(building, getEventQueue(), trace).start();
+
+        getEventQueue().addEvent(new SimulationTimeoutEvent(duration));
+    }
+
+    /**
+     * Closes the trace if the run ended before reaching the end of it.
+     */
+    @Override
+    public void dispose() {
+        if (trace == null)
+            return;
+        // the simulation thread may be reading it
+        synchronized (getEventQueue()) {
+            trace.close();
+        }
+        trace = null;
+    }
+
+    @Override
+    public List<File> getInputFiles() {
+        return Collections.singletonList(new File(traceParameter.getStringValue()));
+    }
+
+    public final Model getModel() {
+        return building;
+    }
+
+    public String getDescription() {
+        return "Trace Replay";
+    }
+
+    public Simulator duplicate() {
+        return new TraceElevatorSimulator();
+    }
+}
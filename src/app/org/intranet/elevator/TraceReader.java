@@ -0,0 +1,143 @@
+package org.intranet.elevator;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Streams the arrivals of a passenger trace file without loading it into
+ * memory. Two formats are understood, told apart by the first bytes of the
+ * file:
+ * <ul>
+ * <li>CSV: one {@code time,origin,destination} row per rider, where time is
+ * in ms from the start of the simulation and floors are floor numbers
+ * (starting at 1). Blank lines, lines starting with {@code #} and a header
+ * row are skipped.</li>
+ * <li>Binary: the {@link #MAGIC} bytes and a format {@link #VERSION} int,
+ * followed by fixed {@link #RECORD_SIZE} byte big-endian records of
+ * {@code long time, int origin, int destination}. See {@link TraceConverter}.</li>
+ * </ul>
+ * Rows must be in non-decreasing time order and refer to floors of the
+ * building; a violation is reported with the offending row when it is read.
+ * The reader closes its file once the last arrival has been read.
+ */
+public abstract class TraceReader implements Iterator<Arrival>, Closeable {
+    static final byte[] MAGIC       = {'E', 'L', 'T', 'R'};
+    static final int    VERSION     = 1;
+    static final int    HEADER_SIZE = MAGIC.length + 4;
+    static final int    RECORD_SIZE = 8 + 4 + 4;
+
+    private final String source;
+    private final int    numFloors;
+
+    private Arrival next;
+    private long    lastTime = Long.MIN_VALUE;
+    private boolean closed;
+
+    TraceReader(File file, int numFloors) {
+        this.source = file.getPath();
+        this.numFloors = numFloors;
+    }
+
+    /**
+     * Opens a trace file in whichever format it is written in.
+     *
+     * @param file      CSV or binary trace
+     * @param numFloors Number of floors of the building the trace is replayed in
+     */
+    public static TraceReader open(File file, int numFloors) throws IOException {
+        if (isBinary(file))
+            return new BinaryTraceReader(file, numFloors);
+        return new CsvTraceReader(file, numFloors);
+    }
+
+    static boolean isBinary(File file) throws IOException {
+        if (file.length() < MAGIC.length)
+            return false;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            byte[] start = new byte[MAGIC.length];
+            in.readFully(start);
+            for (int i = 0; i < MAGIC.length; i++)
+                if (start[i] != MAGIC[i])
+                    return false;
+            return true;
+        }
+    }
+
+    /**
+     * Reads the next record of the trace.
+     *
+     * @param into Receives time, origin floor number and destination floor
+     *             number of the record
+     * @return false at the end of the trace
+     */
+    protected abstract boolean readRecord(long[] into) throws IOException;
+
+    /**
+     * @return Position of the last record read, for error messages
+     */
+    protected abstract String position();
+
+    protected abstract void closeSource() throws IOException;
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !closed)
+            next = readNext();
+        return next != null;
+    }
+
+    @Override
+    public Arrival next() {
+        if (!hasNext())
+            throw new NoSuchElementException("End of trace " + source);
+        Arrival arrival = next;
+        next = null;
+        return arrival;
+    }
+
+    private Arrival readNext() {
+        long[] record = new long[3];
+        try {
+            if (!readRecord(record)) {
+                close();
+                return null;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed reading trace " + source + " at " + position(), e);
+        }
+        long time = record[0];
+        int origin = checkFloor(record[1]);
+        int destination = checkFloor(record[2]);
+        if (time < 0 || time < lastTime)
+            throw new IllegalStateException("Trace " + source + " is not in time order at " + position() + ": " + time);
+        if (origin == destination)
+            throw new IllegalStateException("Trace " + source + " has the same origin and destination at " + position());
+        lastTime = time;
+        return new Arrival(time, origin, destination);
+    }
+
+    private int checkFloor(long floorNumber) {
+        if (floorNumber < 1 || floorNumber > numFloors)
+            throw new IllegalStateException("Trace " + source + " refers to floor " + floorNumber + " at " + position() +
+                    " but the building has " + numFloors + " floors");
+        return (int) floorNumber - 1;
+    }
+
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            closeSource();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed closing trace " + source, e);
+        }
+    }
+}
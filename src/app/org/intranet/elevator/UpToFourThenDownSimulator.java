@@ -50,10 +50,12 @@ public class UpToFourThenDownSimulator
         int numCars = carsParameter.getIntegerValue();
 
         Controller controller = getController();
-        building = new Building(getEventQueue(), numFloors, numCars, controller, seedParameter.getLongValue());
+        building = Building.reuse(building, getEventQueue(), numFloors, numCars, controller, 0);
 
+        // the car waits on the ground floor, so it goes up to the fourth
+        // floor to serve a request going down
         final Person a = building.createPerson(building.getFloor(3), 3);
-        Event event = new CarRequestEvent(0, a, building.getFloor(3), building.getFloor(3));
+        Event event = new CarRequestEvent(0, a, building.getFloor(3), building.getFloor(0));
         getEventQueue().addEvent(event);
     }
 
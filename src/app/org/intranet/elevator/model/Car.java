@@ -6,6 +6,7 @@ package org.intranet.elevator.model;
 
 import au.edu.rmit.agtgrp.elevatorsim.Transmittable;
 import au.edu.rmit.agtgrp.elevatorsim.event.Percept;
+import org.intranet.elevator.model.operate.Person;
 import org.intranet.sim.event.EventQueue;
 import org.json.JSONObject;
 import org.slf4j.Logger;
@@ -83,6 +84,12 @@ public final class Car extends MovableLocation {
 
     public interface Listener {
         void docked();
+
+        /**
+         * Called after a person gets into or out of the car.
+         */
+        default void occupantsChanged(Person person) {
+        }
     }
 
     private class ArrivalMessage implements Transmittable {
@@ -189,6 +196,20 @@ public final class Car extends MovableLocation {
         this.stoppingDistance = stoppingDistance;
     }
 
+    /**
+     * Returns the car to its initial height, undocked and idle, with no
+     * floors requested and no occupants. All listeners are removed, so
+     * whoever wired up the car must add theirs again.
+     */
+    @Override
+    public void reset() {
+        super.reset();
+        location = null;
+        destination = null;
+        listeners.clear();
+        panel.reset();
+    }
+
     /**
      * Travel to specified destination floor
      *
@@ -317,6 +338,12 @@ public final class Car extends MovableLocation {
         fireDockedEvent();
     }
 
+    @Override
+    protected void occupantsChanged(Person person) {
+        for (Listener l : listeners)
+            l.occupantsChanged(person);
+    }
+
     /**
      * Notify Listeners that Car has docked to destination Location
      */
@@ -30,6 +30,8 @@ public final class CarEntrance
   private Door door;
   private DoorSensor sensor;
   private CarEntranceListener entranceListener;
+  private Door.Listener doorListener;
+  private DoorSensor.Listener sensorListener;
 
   CarEntrance(final EventQueue eQ, Floor fromLocation, Car toLocation,
               CarEntranceListener listener)
@@ -38,7 +40,7 @@ public final class CarEntrance
     door = new Door(eQ, fromLocation, toLocation);
     sensor = new DoorSensor(eQ, door);
     entranceListener = listener;
-    Door.Listener doorListener = new Door.Listener()
+    doorListener = new Door.Listener()
     {
       public void doorOpened()
       {
@@ -52,8 +54,7 @@ public final class CarEntrance
 
       public void doorClosed() {}
     };
-    door.addListener(doorListener, false);
-    sensor.addListener(new DoorSensor.Listener()
+    sensorListener = new DoorSensor.Listener()
     {
       public void sensorCleared()
       {
@@ -67,7 +68,26 @@ public final class CarEntrance
       }
 
       public void sensorUnobstructed() {}
-    });
+    };
+    door.addListener(doorListener, false);
+    sensor.addListener(sensorListener);
+  }
+
+  /**
+   * Returns the entrance to its initial state: lights off, door closed,
+   * sensor clear and nobody waiting to get out. Only the entrance's own
+   * listeners are left on the door and sensor, so the floor must add its
+   * listeners again.
+   */
+  void reset()
+  {
+    up = false;
+    down = false;
+    waiters.clear();
+    door.reset();
+    sensor.reset();
+    door.addListener(doorListener, false);
+    sensor.addListener(sensorListener);
   }
 
   private List<DoorWaitListener> waiters = new ArrayList<DoorWaitListener>();
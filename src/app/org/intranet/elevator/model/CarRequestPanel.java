@@ -32,6 +32,17 @@ public final class CarRequestPanel
     approver = a;
   }
   
+  /**
+   * Turns both lights off and removes all listeners.
+   */
+  void reset()
+  {
+    up = false;
+    down = false;
+    buttonListeners.clear();
+    arrivalListeners.clear();
+  }
+  
   public boolean isUp()
   {
     return up;
@@ -180,6 +180,19 @@ public class Door
     to = toLocation;
   }
 
+  /**
+   * Returns the door to closed and removes all listeners. Any pending open
+   * or close event must already have been dropped from the event queue.
+   */
+  void reset()
+  {
+    state = State.CLOSED;
+    percentClosed = 100;
+    event = null;
+    listeners.clear();
+    priorityListeners.clear();
+  }
+
   public State getState()
   {
     return state;
@@ -127,6 +127,17 @@ public class DoorSensor
     this.door = door;
   }
 
+  /**
+   * Returns the sensor to clear and removes all listeners. Any pending clear
+   * event must already have been dropped from the event queue.
+   */
+  void reset()
+  {
+    state = State.CLEAR;
+    clearEvent = null;
+    listeners.clear();
+  }
+
   public State getState()
   {
     return state;
@@ -4,13 +4,24 @@
 */
 package org.intranet.elevator.model;
 
+import org.intranet.sim.event.Event;
 import org.intranet.sim.event.EventQueue;
+import org.json.JSONObject;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 
 /**
  * Floor of Building with a CarRequestPanel and CarEntrance(s) leading to Car(s)
+ * <p>
+ * People waiting for a car queue up per direction of travel. Whenever an
+ * entrance going their way may be entered (the door is not closed, nobody is
+ * passing through it or waiting to get out, and the car is not full) the
+ * person at the head of the queue is admitted to it. If people are left
+ * behind when a door closes, the call button is pressed again once for
+ * their direction.
  * 
  * @author Neil McKellar and Chris Dailey
  * @author Joshua Beale
@@ -41,6 +52,10 @@ public final class Floor extends Location
 		}
 	});
 	private List<CarEntrance> carEntrances = new ArrayList<CarEntrance>();
+	private Deque<Boarder> upQueue = new ArrayDeque<Boarder>();
+	private Deque<Boarder> downQueue = new ArrayDeque<Boarder>();
+	private CallAgainEvent upCallAgain;
+	private CallAgainEvent downCallAgain;
 
 	// TODO: Make a sequence diagram with all the passing off of notification
 	private CarEntrance.CarEntranceListener carEntranceListener = new CarEntrance.CarEntranceListener()
@@ -48,14 +63,71 @@ public final class Floor extends Location
 		public void arrivedUp(CarEntrance entrance)
 		{
 			callPanel.arrivedUp(entrance);
+			admit(true);
 		}
 
 		public void arrivedDown(CarEntrance entrance)
 		{
 			callPanel.arrivedDown(entrance);
+			admit(false);
 		}
 	};
 
+	/**
+	 * A person waiting in one of the Floor's boarding queues.
+	 */
+	public interface Boarder
+	{
+		/**
+		 * Called when the boarder reaches an entrance it may enter. The
+		 * boarder must obstruct the entrance's door sensor before returning.
+		 * 
+		 * @param entrance
+		 *            Entrance to the car the boarder was admitted to
+		 */
+		void board(CarEntrance entrance);
+	}
+
+	/**
+	 * Presses the call button again for people left behind by a car that
+	 * closed its doors on them.
+	 */
+	private final class CallAgainEvent extends Event
+	{
+		private final boolean up;
+
+		private CallAgainEvent(long time, boolean up)
+		{
+			super(time);
+			this.up = up;
+		}
+
+		public void perform()
+		{
+			if (up)
+				upCallAgain = null;
+			else
+				downCallAgain = null;
+			if (admit(up))
+				pressCallButton(up);
+		}
+
+		@Override
+		public String getName()
+		{
+			return "carRequested";
+		}
+
+		@Override
+		public JSONObject getDescription()
+		{
+			JSONObject ret = new JSONObject();
+			ret.put("floor", number);
+			ret.put("direction", up ? "up" : "down");
+			return ret;
+		}
+	}
+
 	public Floor(EventQueue eQ, int number, float height, float ceiling)
 	{
 		super(eQ, height, 500);
@@ -103,7 +175,163 @@ public final class Floor extends Location
 	 */
 	public void createCarEntrance(Car car)
 	{
-		carEntrances.add(new CarEntrance(eventQueue, this, car, carEntranceListener));
+		CarEntrance entrance = new CarEntrance(eventQueue, this, car, carEntranceListener);
+		carEntrances.add(entrance);
+		addEntranceListeners(entrance);
+	}
+
+	private void addEntranceListeners(final CarEntrance entrance)
+	{
+		entrance.getDoorSensor().addListener(new DoorSensor.Listener()
+		{
+			public void sensorCleared() {}
+
+			public void sensorObstructed() {}
+
+			public void sensorUnobstructed()
+			{
+				// the previous person is through, let the next one in
+				if (entrance.isUp())
+					admit(true);
+				else if (entrance.isDown())
+					admit(false);
+			}
+		});
+		entrance.getDoor().addListener(new Door.Listener()
+		{
+			public void doorOpened() {}
+
+			public void doorClosed()
+			{
+				callAgainIfLeftBehind(true);
+				callAgainIfLeftBehind(false);
+			}
+		}, false);
+	}
+
+	/**
+	 * Returns the floor and its entrances to the state they were in when the
+	 * entrances were created: nobody waiting or queued, call lights off and
+	 * doors closed. Listeners added to the call panel are removed, so
+	 * whoever wired up the floor must add theirs again.
+	 */
+	@Override
+	public void reset()
+	{
+		super.reset();
+		upQueue.clear();
+		downQueue.clear();
+		upCallAgain = null;
+		downCallAgain = null;
+		callPanel.reset();
+		for (CarEntrance entrance : carEntrances)
+		{
+			entrance.reset();
+			addEntranceListeners(entrance);
+		}
+	}
+
+	/**
+	 * Queue up to board a car going in the given direction. The boarder
+	 * boards right away if an entrance is available, otherwise the call
+	 * button is pressed.
+	 * 
+	 * @param boarder
+	 *            Person waiting for a car
+	 * @param up
+	 *            Direction of travel
+	 */
+	public void waitToBoard(Boarder boarder, boolean up)
+	{
+		getBoardingQueue(up).addLast(boarder);
+		if (admit(up))
+			pressCallButton(up);
+	}
+
+	private void pressCallButton(boolean up)
+	{
+		if (up)
+			callPanel.pressUp();
+		else
+			callPanel.pressDown();
+	}
+
+	/**
+	 * @param up
+	 *            Direction of travel
+	 * @return Number of people queued to board a car going in that direction
+	 */
+	public int getNumWaiting(boolean up)
+	{
+		return getBoardingQueue(up).size();
+	}
+
+	private Deque<Boarder> getBoardingQueue(boolean up)
+	{
+		return up ? upQueue : downQueue;
+	}
+
+	/**
+	 * Admits people from the head of the queue to every entrance going their
+	 * way that is free to enter.
+	 * 
+	 * @return True if people are still waiting in the queue
+	 */
+	private boolean admit(boolean up)
+	{
+		Deque<Boarder> queue = getBoardingQueue(up);
+		for (int i = 0; i < carEntrances.size() && !queue.isEmpty(); i++)
+		{
+			CarEntrance entrance = carEntrances.get(i);
+			if (isBoardable(entrance, up))
+				queue.removeFirst().board(entrance);
+		}
+		return !queue.isEmpty();
+	}
+
+	private static boolean isBoardable(CarEntrance entrance, boolean up)
+	{
+		// Note that occasionally in real life people will accidentally not
+		// pay attention to the light and get on an elevator going the wrong
+		// direction.
+		// LATER: We may eventually want to simulate this.
+		boolean isCarGoingMyWay = up ? entrance.isUp() : entrance.isDown();
+		Door door = entrance.getDoor();
+		return isCarGoingMyWay && door.getState() != Door.State.CLOSED &&
+				!door.getTo().isAtCapacity() &&
+				entrance.getDoorSensor().getState() != DoorSensor.State.OBSTRUCTED &&
+				!entrance.arePeopleWaitingToGetOut();
+	}
+
+	/**
+	 * @return True if a car going in the given direction is still at one of
+	 *         the entrances, so the queue will be admitted to it
+	 */
+	private boolean isServed(boolean up)
+	{
+		for (CarEntrance entrance : carEntrances)
+			if (up ? entrance.isUp() : entrance.isDown())
+				return true;
+		return false;
+	}
+
+	/**
+	 * Schedules a single repeat of the call for a direction that people are
+	 * still queued for once its call light has gone out and no car is left
+	 * to take them. It is performed as a separate event so the car that
+	 * left them behind has been sent on its way first.
+	 */
+	private void callAgainIfLeftBehind(boolean up)
+	{
+		boolean isCalled = up ? callPanel.isUp() : callPanel.isDown();
+		if (getBoardingQueue(up).isEmpty() || isCalled || isServed(up) || (up ? upCallAgain : downCallAgain) != null)
+			return;
+		CallAgainEvent event = new CallAgainEvent(eventQueue.getCurrentTime(), up);
+		if (up)
+			upCallAgain = event;
+		else
+			downCallAgain = event;
+		eventQueue.addEvent(event);
 	}
 
 	/**
@@ -70,6 +70,16 @@ public class FloorRequestPanel
     return minFloor;
   }
 
+  /**
+   * Clears the requested floors and the listeners. The serviced floors are
+   * kept.
+   */
+  void reset()
+  {
+    requestedFloors.clear();
+    listeners.clear();
+  }
+
   // called by Person
   public final void requestFloor(Floor floor)
   {
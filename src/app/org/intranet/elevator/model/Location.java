@@ -4,7 +4,8 @@
 */
 package org.intranet.elevator.model;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.intranet.elevator.model.operate.Person;
@@ -19,15 +20,50 @@ import org.intranet.sim.event.EventQueue;
  */
 public class Location extends ModelElement
 {
+	private static final int INITIAL_OCCUPANTS = 4;
+
+	private final float initialHeight;
+	private final int initialCapacity;
 	private float height;
 	private int capacity;
-	private List<Person> occupants = new ArrayList<Person>();
+
+	// Occupants are kept unordered in the first numOccupants slots; each
+	// Person knows its slot so it can be swapped out in constant time.
+	private Person[] occupants = new Person[0];
+	private int numOccupants;
+	private final List<Person> occupantsView = new AbstractList<Person>()
+	{
+		public Person get(int index)
+		{
+			if (index < 0 || index >= numOccupants) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + numOccupants);
+			return occupants[index];
+		}
+
+		public int size()
+		{
+			return numOccupants;
+		}
+	};
 
 	Location(EventQueue eQ, float height, int capacity)
 	{
 		super(eQ);
 		this.height = height;
 		this.capacity = capacity;
+		initialHeight = height;
+		initialCapacity = capacity;
+	}
+
+	/**
+	 * Returns the location to the height and capacity it was created with
+	 * and removes all occupants.
+	 */
+	protected void reset()
+	{
+		height = initialHeight;
+		capacity = initialCapacity;
+		Arrays.fill(occupants, 0, numOccupants, null);
+		numOccupants = 0;
 	}
 
 	/**
@@ -54,15 +90,22 @@ public class Location extends ModelElement
 	public final void personEnters(Person person)
 	{
 		if (isAtCapacity()) throw new IllegalStateException("Location is at capacity: " + capacity);
-		occupants.add(person);
+		Occupant occupant = person;
+		if (occupant.slot != -1) throw new IllegalStateException("Person is already in a location.");
+		if (numOccupants == occupants.length)
+			occupants = Arrays.copyOf(occupants, Math.max(INITIAL_OCCUPANTS, 2 * numOccupants));
+		occupants[numOccupants] = person;
+		occupant.slot = numOccupants++;
+		occupantsChanged(person);
 	}
 
 	/**
-	 * @return List of all person objects contained in location
+	 * @return Read-only view of all person objects contained in location, in
+	 *         no particular order
 	 */
 	public final List<Person> getOccupants()
 	{
-		return occupants;
+		return occupantsView;
 	}
 
 	/**
@@ -71,7 +114,22 @@ public class Location extends ModelElement
 	 */
 	public final void personLeaves(Person person)
 	{
-		if (!occupants.remove(person)) { throw new IllegalStateException("Person is not in this location."); }
+		Occupant occupant = person;
+		int slot = occupant.slot;
+		if (slot < 0 || slot >= numOccupants || occupants[slot] != person) { throw new IllegalStateException("Person is not in this location."); }
+		Occupant last = occupants[--numOccupants];
+		occupants[slot] = occupants[numOccupants];
+		last.slot = slot;
+		occupants[numOccupants] = null;
+		occupant.slot = -1;
+		occupantsChanged(person);
+	}
+
+	/**
+	 * Called after a person enters or leaves the location.
+	 */
+	protected void occupantsChanged(Person person)
+	{
 	}
 
 	/**
@@ -79,7 +137,7 @@ public class Location extends ModelElement
 	 */
 	public final boolean isAtCapacity()
 	{
-		return (occupants.size() == capacity);
+		return (numOccupants == capacity);
 	}
 
 	/**
@@ -5,7 +5,6 @@
 package org.intranet.elevator.model;
 
 import au.edu.rmit.agtgrp.elevatorsim.Transmittable;
-import org.intranet.sim.event.Event;
 import org.intranet.sim.event.EventQueue;
 import org.intranet.sim.event.TrackingUpdateEvent;
 import org.json.JSONObject;
@@ -56,28 +55,6 @@ public abstract class MovableLocation extends Location {
     MovableLocation(EventQueue eQ, float height, int capacity) {
         super(eQ, height, capacity);
         destinationHeight = height;
-        eQ.addListener(new EventQueue.Listener() {
-            @Override
-            public void eventAdded(Event e) {
-            }
-
-            @Override
-            public void eventError(Exception ex) {
-            }
-
-            @Override
-            public void eventProcessed(Event e) {
-            }
-
-            @Override
-            public void eventRemoved(Event e) {
-                if (e == arrivalEvent) arrivalEvent = null;
-            }
-
-            @Override
-            public void simulationEnded() {
-            }
-        });
     }
 
     private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
@@ -85,9 +62,24 @@ public abstract class MovableLocation extends Location {
     private float destinationHeight;
     private float totalDistance = 0.0F;
     private int numTravels = 0;
-    private Event arrivalEvent;
+    private ArrivalEvent arrivalEvent;
     private List<Listener> listeners = new ArrayList<>();
 
+    /**
+     * Returns the location to its initial height, at rest, and clears the
+     * travel statistics and listeners. Any pending arrival must already have
+     * been dropped from the event queue.
+     */
+    @Override
+    protected void reset() {
+        super.reset();
+        destinationHeight = getHeight();
+        totalDistance = 0.0F;
+        numTravels = 0;
+        arrivalEvent = null;
+        listeners.clear();
+    }
+
     /**
      * @return Total distance travelled by MovableLocation
      */
@@ -126,23 +118,32 @@ public abstract class MovableLocation extends Location {
      * @param h Height to travel to
      */
     protected final void setDestinationHeight(float h) {
-        if (arrivalEvent != null) {
-            eventQueue.removeEvent(arrivalEvent);
-            arrivalEvent = null;
+        // Check if this assignment results in change in directions, which might throw an exception if not allowed.
+        // If it does, stop where we are.
+        try {
+            checkDirectionChange(h);
+        } catch (IllegalArgumentException iae) {
+            cancelArrival();
+            throw iae;
         }
-
-        // Check if this assignment results in change in directions, which might throw an exception if not allowed
-        checkDirectionChange(h);
         destinationHeight = h;
 
         // Trigger either arrive or travel based on current height
         if (getHeight() == h) {
+            cancelArrival();
             arrive();
         } else {
             travel();
         }
     }
 
+    private void cancelArrival() {
+        if (arrivalEvent != null) {
+            eventQueue.removeEvent(arrivalEvent);
+            arrivalEvent = null;
+        }
+    }
+
     /**
      * Arrive at destination height
      */
@@ -161,7 +162,18 @@ public abstract class MovableLocation extends Location {
             arrivalMessage = getArrivalMessage();
         }
 
+        /**
+         * Heads for the current destination height instead. The event must
+         * then be rescheduled to the new arrival time.
+         */
+        private void retarget(float departureHeight, long departureTime) {
+            track(departureTime, departureHeight, destinationHeight);
+            arrivalMessage = getArrivalMessage();
+        }
+
         public void perform() {
+            // the queue has already removed this event
+            arrivalEvent = null;
             setHeight(destinationHeight);
             numTravels++;
             arrive();
@@ -215,10 +227,16 @@ public abstract class MovableLocation extends Location {
                 + (long) (Math.abs(getHeight() - destinationHeight) / ratePerMillisecond);
         long departureTime = eventQueue.getCurrentTime();
         float departureHeight = getHeight();
-        // create and remember IncrementalUpdateEvent(arrivalTime)
-        arrivalEvent = new ArrivalEvent(departureHeight, departureTime, arrivalTime);
         try {
-            eventQueue.addEvent(arrivalEvent);
+            if (arrivalEvent == null) {
+                // create and remember IncrementalUpdateEvent(arrivalTime)
+                arrivalEvent = new ArrivalEvent(departureHeight, departureTime, arrivalTime);
+                eventQueue.addEvent(arrivalEvent);
+            } else {
+                // already on our way, so the pending arrival is moved instead
+                arrivalEvent.retarget(departureHeight, departureTime);
+                eventQueue.reschedule(arrivalEvent, arrivalTime);
+            }
         } catch (IllegalArgumentException iae) {
             LOG.error("Couldn't add arrival event to queue in travel()");
             LOG.error("eventQueue.getCurrentTime()={}, departureTime={}, arrivalTime={}", eventQueue.getCurrentTime(), departureTime, arrivalTime);
@@ -0,0 +1,19 @@
+package org.intranet.elevator.model;
+
+import org.intranet.sim.ModelElement;
+import org.intranet.sim.event.EventQueue;
+
+/**
+ * Something that occupies a Location. The Location it is in records its
+ * position in its occupant array here, so that leaving is constant time.
+ */
+public abstract class Occupant extends ModelElement
+{
+	// index in the current location's occupants, -1 when not in a location
+	int slot = -1;
+
+	protected Occupant(EventQueue eQ)
+	{
+		super(eQ);
+	}
+}
@@ -5,7 +5,11 @@
 package org.intranet.elevator.model.operate;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.intranet.elevator.model.Car;
 import org.intranet.elevator.model.CarEntrance;
@@ -17,6 +21,7 @@ import org.intranet.sim.Model;
 import org.intranet.sim.event.EventQueue;
 import org.intranet.statistics.FloatColumn;
 import org.intranet.statistics.IntColumn;
+import org.intranet.statistics.LiveTable;
 import org.intranet.statistics.LongColumn;
 import org.intranet.statistics.Table;
 
@@ -29,6 +34,8 @@ import org.intranet.statistics.Table;
 public class Building
   extends Model
 {
+  public static final int DEFAULT_CAR_CAPACITY = 8;
+
   private float height;  // external height of building
   private List<Floor> floors = new ArrayList<Floor>();
   private List<Car> cars = new ArrayList<Car>();
@@ -36,6 +43,20 @@ public class Building
   private long seed;
   
   private List<Person> people = new ArrayList<Person>();
+  // created when first asked for, as only a display needs them
+  private PersonTable personTable;
+  private CarTable carTable;
+  private volatile BuildingSnapshot snapshot;
+  private List<SnapshotListener> snapshotListeners =
+    new CopyOnWriteArrayList<SnapshotListener>();
+
+  /**
+   * Notified on the simulation thread each time a snapshot is published.
+   */
+  public interface SnapshotListener
+  {
+    void snapshotPublished(BuildingSnapshot snapshot);
+  }
   
   private Building()
   {
@@ -61,7 +82,70 @@ public class Building
   public Building(EventQueue eQ, int numFloors, int numCars,
       Controller controller, long seed)
   {
-    this(eQ, numFloors, numCars, 8, controller, seed);
+    this(eQ, numFloors, numCars, DEFAULT_CAR_CAPACITY, controller, seed);
+  }
+
+  /**
+   * Returns a building in its initial state with the given floors and cars.
+   * The previous building is reset and returned when it was created on the
+   * same event queue with the same floors and cars, so runs of the same
+   * scenario share one set of floors, cars, entrances and doors. Otherwise a
+   * new building is created.
+   * 
+   * @param previous Building of the previous run, or null
+   * @param eQ Event queue, reset since the previous run
+   */
+  public static Building reuse(Building previous, EventQueue eQ,
+      int numFloors, int numCars, int carCapacity, Controller controller,
+      long seed)
+  {
+    if (previous == null || previous.eventQueue != eQ ||
+        !previous.hasLayout(numFloors, numCars, carCapacity))
+      return new Building(eQ, numFloors, numCars, carCapacity, controller, seed);
+    previous.reset(controller, seed);
+    return previous;
+  }
+
+  public static Building reuse(Building previous, EventQueue eQ,
+      int numFloors, int numCars, Controller controller, long seed)
+  {
+    return reuse(previous, eQ, numFloors, numCars, DEFAULT_CAR_CAPACITY,
+      controller, seed);
+  }
+
+  private boolean hasLayout(int numFloors, int numCars, int carCapacity)
+  {
+    if (floors.size() != numFloors || cars.size() != numCars)
+      return false;
+    for (Car car : cars)
+      if (car.getCapacity() != carCapacity)
+        return false;
+    return true;
+  }
+
+  /**
+   * Returns every floor and car to its initial state, forgets all people and
+   * initializes the controller again. The event queue must have been reset
+   * first, as pending events of the previous run are not removed from it.
+   */
+  private void reset(Controller controller, long seed)
+  {
+    metaController = controller;
+    this.seed = seed;
+    people.clear();
+    if (personTable != null)
+      personTable.clear();
+    for (Floor floor : floors)
+    {
+      floor.reset();
+      addCarRequest(floor);
+    }
+    for (Car car : cars)
+    {
+      car.reset();
+      addDockingListener(car);
+    }
+    initialize();
   }
   
   private void initialize()
@@ -77,12 +161,16 @@ public class Building
       final Floor newFloor = new Floor(eventQueue, i+1, 10*i, 9);
       floors.add(newFloor);
       height = 10 * (i + 1);
-      
-      CarRequest carRequest = new CarRequest(metaController, newFloor);
-      newFloor.getCallPanel().addButtonListener(carRequest);
+      addCarRequest(newFloor);
     }
   }
 
+  private void addCarRequest(Floor floor)
+  {
+    CarRequest carRequest = new CarRequest(metaController, floor);
+    floor.getCallPanel().addButtonListener(carRequest);
+  }
+
   public void createCars(int x, int capacity)
   {
     for (int i = 0; i < x; i++)
@@ -90,49 +178,7 @@ public class Building
       //default stopping distance is 3.0
       final Car car = new Car(eventQueue, Integer.toString(i), 0.0f, capacity, i, 3.0f);
       cars.add(car);
-
-      // SOON: Move this to Floor or maybe CarEntrance or elsewhere
-      car.addListener(new Car.Listener()
-      {
-        public void docked()
-        {
-          Floor location = car.getLocation();
-          final CarEntrance entrance = location.getCarEntranceForCar(car);
-          final Door door = entrance.getDoor();
-          if (door.getState() != Door.State.CLOSED)
-            throw new IllegalStateException("How could the door not be closed if we're only now docking with it?");
-          door.open();
-          // LATER : This relies on the door state not changing directly to CLOSED
-          // because we add the listener after the call to open
-
-          final boolean isUp = metaController.arrive(car);
-
-          // set the up/down light on the car entrance
-          if (isUp)
-            entrance.setUp(true);
-          else
-            entrance.setDown(true);
-
-          Door.Listener doorListener = new Door.Listener()
-          {
-            public void doorOpened() {}
-
-            public void doorClosed()
-            {
-              door.removeListener(this);
-              if (isUp)
-                entrance.setUp(false);
-              else
-                entrance.setDown(false);
-
-              metaController.setNextDestination(car);
-              car.undock();
-            }
-          };
-          door.addListener(doorListener, true);
-        }
-      });
-
+      addDockingListener(car);
 
       for (Floor floor : floors)
       {
@@ -141,6 +187,59 @@ public class Building
       }
     }
   }
+
+  private void addDockingListener(final Car car)
+  {
+    // SOON: Move this to Floor or maybe CarEntrance or elsewhere
+    car.addListener(new Car.Listener()
+    {
+      public void occupantsChanged(Person person)
+      {
+        // a person's waiting time ends as they get in, and the update after
+        // they get out is the last to see their travel time change
+        if (personTable != null)
+          personTable.personChanged(person);
+      }
+
+      public void docked()
+      {
+        Floor location = car.getLocation();
+        final CarEntrance entrance = location.getCarEntranceForCar(car);
+        final Door door = entrance.getDoor();
+        if (door.getState() != Door.State.CLOSED)
+          throw new IllegalStateException("How could the door not be closed if we're only now docking with it?");
+        door.open();
+        // LATER : This relies on the door state not changing directly to CLOSED
+        // because we add the listener after the call to open
+
+        final boolean isUp = metaController.arrive(car);
+
+        // set the up/down light on the car entrance
+        if (isUp)
+          entrance.setUp(true);
+        else
+          entrance.setDown(true);
+
+        Door.Listener doorListener = new Door.Listener()
+        {
+          public void doorOpened() {}
+
+          public void doorClosed()
+          {
+            door.removeListener(this);
+            if (isUp)
+              entrance.setUp(false);
+            else
+              entrance.setDown(false);
+
+            metaController.setNextDestination(car);
+            car.undock();
+          }
+        };
+        door.addListener(doorListener, true);
+      }
+    });
+  }
   
   public float getHeight()
   {
@@ -179,11 +278,65 @@ public class Building
   
   public Person createPerson(Location startLocation, long id)
   {
-    Person person = new Person(eventQueue, startLocation, id);
-    people.add(person);
+    return createPersonInRow(startLocation, -1);
+  }
+
+  /**
+   * @param row The row reserved for the person with {@link #reservePeople},
+   *        or -1 to add a row
+   */
+  public Person createPersonInRow(Location startLocation, int row)
+  {
+    Person person = new Person(eventQueue, startLocation);
+    if (row < 0)
+    {
+      row = people.size();
+      people.add(person);
+    }
+    else
+      people.set(row, person);
+    if (personTable != null)
+      personTable.personAdded(person, row);
     return person;
   }
+
+  /**
+   * Reserves rows in the statistics for people that are created later, so
+   * that they are listed, with no waiting or travel time, before they are.
+   */
+  public void reservePeople(int count)
+  {
+    for (int i = 0; i < count; i++)
+      people.add(null);
+  }
   
+  public void publishSnapshot()
+  {
+    BuildingSnapshot published = new BuildingSnapshot(this, eventQueue.getCurrentTime());
+    snapshot = published;
+    for (SnapshotListener l : snapshotListeners)
+      l.snapshotPublished(published);
+  }
+
+  public void addSnapshotListener(SnapshotListener l)
+  {
+    snapshotListeners.add(l);
+  }
+
+  public void removeSnapshotListener(SnapshotListener l)
+  {
+    snapshotListeners.remove(l);
+  }
+
+  /**
+   * @return The latest published snapshot, or null if none has been
+   *         published yet
+   */
+  public BuildingSnapshot getSnapshot()
+  {
+    return snapshot;
+  }
+
   public List<Table> getStatistics()
   {
     // TODO : Update existing tables instead of creating new ones.
@@ -194,6 +347,137 @@ public class Building
     return tables;
   }
 
+  public List<LiveTable> getLiveStatistics()
+  {
+    if (personTable == null)
+    {
+      personTable = new PersonTable();
+      carTable = new CarTable();
+    }
+    return Arrays.<LiveTable>asList(personTable, carTable);
+  }
+
+  /**
+   * The Person table of {@link #generatePersonTable()}, where a row changes
+   * when its person gets into or out of a car. A rider's travel time ends
+   * when the doors open at the destination, before the rider steps out, so
+   * the riders still in the cars are taken with every update as well.
+   */
+  private final class PersonTable
+    extends LiveTable
+  {
+    // the row of each person created, kept here rather than in every Person
+    private final Map<Person, Integer> rows = new IdentityHashMap<Person, Integer>();
+
+    PersonTable()
+    {
+      super("Person", "Waiting Time", "Travel Time", "Total Time");
+      for (int row = 0; row < people.size(); row++)
+        if (people.get(row) != null)
+          rows.put(people.get(row), row);
+    }
+
+    void personAdded(Person person, int row)
+    {
+      rows.put(person, row);
+    }
+
+    void personChanged(Person person)
+    {
+      Integer row = rows.get(person);
+      if (row != null)
+        rowChanged(row);
+    }
+
+    void clear()
+    {
+      rows.clear();
+    }
+
+    protected void findChanges()
+    {
+      for (Car car : cars)
+        for (Person person : car.getOccupants())
+          personChanged(person);
+    }
+
+    public int getRowCount()
+    {
+      return people.size();
+    }
+
+    public String getRowName(int row)
+    {
+      return "Person " + (row + 1);
+    }
+
+    public Number getValue(int row, int column)
+    {
+      Person person = people.get(row);
+      // not created yet
+      if (person == null)
+        return Long.valueOf(0);
+      if (column == 0)
+        return Long.valueOf(person.getTotalWaitingTime());
+      if (column == 1)
+        return Long.valueOf(person.getTotalTravelTime());
+      return Long.valueOf(person.getTotalTime());
+    }
+  }
+
+  /**
+   * The Car table of {@link #generateCarTable()}. There are few cars, so
+   * each update compares them with the values last taken.
+   */
+  private final class CarTable
+    extends LiveTable
+  {
+    private float[] distances = new float[0];
+    private int[] stops = new int[0];
+
+    CarTable()
+    {
+      super("Car", "Travel Distance", "Number of Stops");
+    }
+
+    protected void findChanges()
+    {
+      if (distances.length != cars.size())
+      {
+        distances = new float[cars.size()];
+        stops = new int[cars.size()];
+      }
+      for (int row = 0; row < cars.size(); row++)
+      {
+        Car car = cars.get(row);
+        if (car.getTotalDistance() != distances[row] || car.getNumTravels() != stops[row])
+        {
+          distances[row] = car.getTotalDistance();
+          stops[row] = car.getNumTravels();
+          rowChanged(row);
+        }
+      }
+    }
+
+    public int getRowCount()
+    {
+      return cars.size();
+    }
+
+    public String getRowName(int row)
+    {
+      return "Car " + (row + 1);
+    }
+
+    public Number getValue(int row, int column)
+    {
+      Car car = cars.get(row);
+      if (column == 0)
+        return Float.valueOf(car.getTotalDistance());
+      return Integer.valueOf(car.getNumTravels());
+    }
+  }
+
   private Table generateCarTable()
   {
     float[] travelDistances = new float[cars.size()];
@@ -226,9 +510,13 @@ public class Building
     for (Person person : people)
     {
       peopleRows[personNum] = "Person " + (personNum + 1);
-      waitingTimes[personNum] = person.getTotalWaitingTime();
-      travelTimes[personNum] = person.getTotalTravelTime();
-      totalTimes[personNum] = person.getTotalTime();
+      // not created yet
+      if (person != null)
+      {
+        waitingTimes[personNum] = person.getTotalWaitingTime();
+        travelTimes[personNum] = person.getTotalTravelTime();
+        totalTimes[personNum] = person.getTotalTime();
+      }
       personNum++;
     }
     Table personTable = new Table(peopleRows, "Person");
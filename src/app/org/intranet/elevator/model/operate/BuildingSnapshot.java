@@ -0,0 +1,316 @@
+package org.intranet.elevator.model.operate;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.intranet.elevator.model.Car;
+import org.intranet.elevator.model.CarEntrance;
+import org.intranet.elevator.model.Floor;
+import org.intranet.elevator.model.Location;
+
+/**
+ * Immutable copy of everything needed to draw a Building at one point in
+ * simulation time. Snapshots are taken by the simulation thread while it owns
+ * the model, so views can paint from the latest one without locking.
+ * <p>
+ * Floors and cars are addressed by index. The entrance from floor f to car c
+ * is entrance (f, c). Only the first {@link #MAX_DRAWN_OCCUPANTS} people of a
+ * floor or car are recorded individually; the full count is always kept.
+ */
+public final class BuildingSnapshot
+{
+  public static final int MAX_DRAWN_OCCUPANTS = 64;
+
+  private final long time;
+  private final float height;
+
+  private final float[] floorHeights;
+  private final float[] floorCeilings;
+  private final int[] floorNumbers;
+  private final boolean[] calledUp;
+  private final boolean[] calledDown;
+  private final int[] floorOccupantCounts;
+  private final int[][] floorOccupants;
+
+  // per entrance, indexed by floor * numCars + car
+  private final byte[] doorPercentClosed;
+  private final boolean[] entranceUp;
+  private final boolean[] entranceDown;
+
+  private final float[] carHeights;
+  private final int[][] carRequests;
+  private final int[] carOccupantCounts;
+  private final int[][] carOccupants;
+
+  BuildingSnapshot(Building building, long time)
+  {
+    super();
+    this.time = time;
+    height = building.getHeight();
+
+    List<Floor> floors = building.getFloors();
+    List<Car> cars = building.getCars();
+    int numFloors = floors.size();
+    int numCars = cars.size();
+
+    floorHeights = new float[numFloors];
+    floorCeilings = new float[numFloors];
+    floorNumbers = new int[numFloors];
+    calledUp = new boolean[numFloors];
+    calledDown = new boolean[numFloors];
+    floorOccupantCounts = new int[numFloors];
+    floorOccupants = new int[numFloors][];
+    doorPercentClosed = new byte[numFloors * numCars];
+    entranceUp = new boolean[numFloors * numCars];
+    entranceDown = new boolean[numFloors * numCars];
+    for (int f = 0; f < numFloors; f++)
+    {
+      Floor floor = floors.get(f);
+      floorHeights[f] = floor.getHeight();
+      floorCeilings[f] = floor.getCeiling();
+      floorNumbers[f] = floor.getFloorNumber();
+      calledUp[f] = floor.getCallPanel().isUp();
+      calledDown[f] = floor.getCallPanel().isDown();
+      floorOccupantCounts[f] = floor.getOccupants().size();
+      floorOccupants[f] = captureOccupants(floor);
+
+      List<CarEntrance> entrances = floor.getCarEntrances();
+      for (int c = 0; c < entrances.size(); c++)
+      {
+        CarEntrance entrance = entrances.get(c);
+        int e = f * numCars + c;
+        doorPercentClosed[e] = (byte)entrance.getDoor().getPercentClosed();
+        entranceUp[e] = entrance.isUp();
+        entranceDown[e] = entrance.isDown();
+      }
+    }
+
+    carHeights = new float[numCars];
+    carRequests = new int[numCars][];
+    carOccupantCounts = new int[numCars];
+    carOccupants = new int[numCars][];
+    for (int c = 0; c < numCars; c++)
+    {
+      Car car = cars.get(c);
+      carHeights[c] = car.getHeight();
+      List<Floor> requested = car.getFloorRequestPanel().getRequestedFloors();
+      carRequests[c] = new int[requested.size()];
+      for (int r = 0; r < requested.size(); r++)
+        carRequests[c][r] = requested.get(r).getFloorNumber();
+      carOccupantCounts[c] = car.getOccupants().size();
+      carOccupants[c] = captureOccupants(car);
+    }
+  }
+
+  /**
+   * Packs each drawn person's destination floor number (0 for none) and
+   * percentage moved (-1 when standing still) into a single int.
+   */
+  private static int[] captureOccupants(Location location)
+  {
+    List<Person> occupants = location.getOccupants();
+    int[] packed = new int[Math.min(occupants.size(), MAX_DRAWN_OCCUPANTS)];
+    for (int i = 0; i < packed.length; i++)
+    {
+      Person person = occupants.get(i);
+      Floor destination = person.getDestination();
+      int destinationNumber = destination == null ? 0 : destination.getFloorNumber();
+      packed[i] = (destinationNumber << 8) | (person.getPercentMoved() & 0xff);
+    }
+    return packed;
+  }
+
+  private static int percentMoved(int packed)
+  {
+    return (byte)packed;
+  }
+
+  private static int destination(int packed)
+  {
+    return packed >>> 8;
+  }
+
+  /**
+   * @return True if other is a snapshot of a building of the same shape, so
+   *         floors and cars can be compared one by one
+   */
+  public boolean isSameShape(BuildingSnapshot other)
+  {
+    return other.height == height &&
+      Arrays.equals(other.floorHeights, floorHeights) &&
+      Arrays.equals(other.floorCeilings, floorCeilings) &&
+      other.carHeights.length == carHeights.length;
+  }
+
+  /**
+   * @return True if anything drawn on the floor, including its entrances,
+   *         differs in the other snapshot of the same shape
+   */
+  public boolean isFloorChanged(BuildingSnapshot other, int floor)
+  {
+    if (other.calledUp[floor] != calledUp[floor] ||
+        other.calledDown[floor] != calledDown[floor] ||
+        other.floorOccupantCounts[floor] != floorOccupantCounts[floor] ||
+        !Arrays.equals(other.floorOccupants[floor], floorOccupants[floor]))
+      return true;
+    int numCars = getNumCars();
+    for (int e = floor * numCars; e < (floor + 1) * numCars; e++)
+      if (other.doorPercentClosed[e] != doorPercentClosed[e] ||
+          other.entranceUp[e] != entranceUp[e] ||
+          other.entranceDown[e] != entranceDown[e])
+        return true;
+    return false;
+  }
+
+  /**
+   * @return True if anything drawn for the car, including the people
+   *         walking in and out of it, differs in the other snapshot of the
+   *         same shape
+   */
+  public boolean isCarChanged(BuildingSnapshot other, int car)
+  {
+    return other.carHeights[car] != carHeights[car] ||
+      other.carOccupantCounts[car] != carOccupantCounts[car] ||
+      !Arrays.equals(other.carRequests[car], carRequests[car]) ||
+      !Arrays.equals(other.carOccupants[car], carOccupants[car]);
+  }
+
+  /**
+   * @return Simulation time the snapshot was taken at
+   */
+  public long getTime()
+  {
+    return time;
+  }
+
+  public float getHeight()
+  {
+    return height;
+  }
+
+  public int getNumFloors()
+  {
+    return floorHeights.length;
+  }
+
+  public int getNumCars()
+  {
+    return carHeights.length;
+  }
+
+  public float getFloorHeight(int floor)
+  {
+    return floorHeights[floor];
+  }
+
+  /**
+   * @return Ceiling relative to the floor
+   */
+  public float getFloorCeiling(int floor)
+  {
+    return floorCeilings[floor];
+  }
+
+  public int getFloorNumber(int floor)
+  {
+    return floorNumbers[floor];
+  }
+
+  public boolean isCalledUp(int floor)
+  {
+    return calledUp[floor];
+  }
+
+  public boolean isCalledDown(int floor)
+  {
+    return calledDown[floor];
+  }
+
+  public int getDoorPercentClosed(int floor, int car)
+  {
+    return doorPercentClosed[floor * getNumCars() + car];
+  }
+
+  public boolean isEntranceUp(int floor, int car)
+  {
+    return entranceUp[floor * getNumCars() + car];
+  }
+
+  public boolean isEntranceDown(int floor, int car)
+  {
+    return entranceDown[floor * getNumCars() + car];
+  }
+
+  public float getCarHeight(int car)
+  {
+    return carHeights[car];
+  }
+
+  public int getNumRequests(int car)
+  {
+    return carRequests[car].length;
+  }
+
+  public int getRequestedFloorNumber(int car, int request)
+  {
+    return carRequests[car][request];
+  }
+
+  /**
+   * @return Number of people on the floor, drawn or not
+   */
+  public int getNumFloorOccupants(int floor)
+  {
+    return floorOccupantCounts[floor];
+  }
+
+  public int getNumDrawnFloorOccupants(int floor)
+  {
+    return floorOccupants[floor].length;
+  }
+
+  /**
+   * @return Percentage moved towards the car, or -1 if not moving
+   */
+  public int getFloorOccupantPercentMoved(int floor, int occupant)
+  {
+    return percentMoved(floorOccupants[floor][occupant]);
+  }
+
+  /**
+   * @return Destination floor number, or 0 if the person has none
+   */
+  public int getFloorOccupantDestination(int floor, int occupant)
+  {
+    return destination(floorOccupants[floor][occupant]);
+  }
+
+  /**
+   * @return Number of people in the car, drawn or not
+   */
+  public int getNumCarOccupants(int car)
+  {
+    return carOccupantCounts[car];
+  }
+
+  public int getNumDrawnCarOccupants(int car)
+  {
+    return carOccupants[car].length;
+  }
+
+  /**
+   * @return Percentage moved out of the car, or -1 if not moving
+   */
+  public int getCarOccupantPercentMoved(int car, int occupant)
+  {
+    return percentMoved(carOccupants[car][occupant]);
+  }
+
+  /**
+   * @return Destination floor number, or 0 if the person has none
+   */
+  public int getCarOccupantDestination(int car, int occupant)
+  {
+    return destination(carOccupants[car][occupant]);
+  }
+}
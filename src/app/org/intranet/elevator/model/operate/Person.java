@@ -4,20 +4,12 @@
 */
 package org.intranet.elevator.model.operate;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
 import org.intranet.elevator.model.Car;
 import org.intranet.elevator.model.CarEntrance;
-import org.intranet.elevator.model.CarRequestPanel;
 import org.intranet.elevator.model.Door;
-import org.intranet.elevator.model.DoorSensor;
 import org.intranet.elevator.model.Floor;
 import org.intranet.elevator.model.Location;
-import org.intranet.sim.ModelElement;
-import org.intranet.sim.Simulator;
+import org.intranet.elevator.model.Occupant;
 import org.intranet.sim.event.Event;
 import org.intranet.sim.event.EventQueue;
 import org.intranet.sim.event.TrackingUpdateEvent;
@@ -31,14 +23,13 @@ import org.json.JSONObject;
 *  <tr>
 *   <th rowspan="2">State</th>
 *   <th colspan="2">Variables</th>
-*   <th colspan="11">Transitions</th>
+*   <th colspan="5">Transitions</th>
 *  </tr>
 *  <tr>
 *   <th>destination</th>
 *   <th>currentLocation</th>
 *   <th>setDestination()</th>
-*   <th>CarRequestPanel<br/>[arrivedUp/Down]</th>
-*   <th>Door<br/>[doorClosed]</th>
+*   <th>Floor<br/>[board]</th>
 *   <th>Car<br/>[docked]</th>
 *   <th>Door<br/>[doorOpened]</th>
 *   <th>[leftCar]</th>
@@ -48,9 +39,7 @@ import org.json.JSONObject;
 *   <td>null</td>
 *   <td>Set</td>
 *   <td>Idle if destination is same<br/>
-*       pressButton(): Waiting if elevator is elsewhere<br/>
-*       enterCar(): Travelling if elevator is there</td>
-*   <td><i>Impossible</i></td>
+*       waitToBoard(): Waiting in the Floor's boarding queue</td>
 *   <td><i>Impossible</i></td>
 *   <td><i>Impossible</i></td>
 *   <td><i>Impossible</i></td>
@@ -61,20 +50,8 @@ import org.json.JSONObject;
 *   <td>Set</td>
 *   <td>Set to Floor</td>
 *   <td><i>Illegal?</i></td>
-*   <td>enterCar(): Travelling if success<br/>
-*       waitForDoorClose(): DoorClosing if car is full</td>
-*   <td><i>Impossible</i></td>
-*   <td><i>Impossible</i></td>
-*   <td><i>Impossible</i></td>
-*   <td><i>Impossible</i></td>
-*  </tr>
-*  <tr>
-*   <td>DoorClosing</td>
-*   <td>Set</td>
-*   <td>Set to Floor</td>
-*   <td><i>Illegal?</i></td>
-*   <td><i>Impossible</i></td>
-*   <td>doorClosed(): Waiting via pressedUp/Down()</td>
+*   <td>beginEnterCar(): Travelling<br/>
+*       (stays queued while the car is full)</td>
 *   <td><i>Impossible</i></td>
 *   <td><i>Impossible</i></td>
 *   <td><i>Impossible</i></td>
@@ -85,7 +62,6 @@ import org.json.JSONObject;
 *   <td>Set to Car</td>
 *   <td><i>Illegal?</i></td>
 *   <td><i>Impossible</i></td>
-*   <td><i>Impossible</i></td>
 *   <td>waitForDoorOpen(): DoorOpening</td>
 *   <td><i>Impossible</i></td>
 *   <td><i>Impossible</i></td>
@@ -97,7 +73,6 @@ import org.json.JSONObject;
 *   <td><i>Illegal?</i></td>
 *   <td><i>Impossible</i></td>
 *   <td><i>Impossible</i></td>
-*   <td><i>Impossible</i></td>
 *   <td>leaveCar(): LeavingCar</td>
 *   <td><i>Impossible</i></td>
 *  </tr>
@@ -109,7 +84,6 @@ import org.json.JSONObject;
 *   <td><i>Impossible</i></td>
 *   <td><i>Impossible</i></td>
 *   <td><i>Impossible</i></td>
-*   <td><i>Impossible</i></td>
 *   <td>Idle</td>
 *  </tr>
 *  <tr>
@@ -118,7 +92,6 @@ import org.json.JSONObject;
 *   <td>??</td>
 *   <td><i>Illegal</i></td>
 *   <td><i>Impossible</i></td>
-*   <td><i>Impossible</i>: Door is obstructed</td>
 *   <td><i>Impossible</i></td>
 *   <td><i>Impossible</i></td>
 *   <td><i>Impossible</i></td>
@@ -127,107 +100,9 @@ import org.json.JSONObject;
 * @author Neil McKellar and Chris Dailey
 */
 public final class Person
-  extends ModelElement
+  extends Occupant
+  implements Floor.Boarder, Car.Listener, CarEntrance.DoorWaitListener
 {
-  private final class WaitForDoorAvailableLeavingListener
-      implements CarEntrance.DoorWaitListener
-  {
-    private final CarEntrance entrance;
-
-    private WaitForDoorAvailableLeavingListener(CarEntrance entrance)
-    {
-      super();
-      this.entrance = entrance;
-    }
-
-    public void doorAvailable()
-    {
-      entrance.getDoorSensor().obstruct();
-      // TODO: Deal with the floor being at capacity.
-      percentMoved = 0;
-      eventQueue.addEvent(new LeavingCarEvent(eventQueue.getCurrentTime(), 0,
-        eventQueue.getCurrentTime() + 2000, 100, entrance));
-      leaveCar();
-    }
-  }
-
-  private final class PayAttentionToSensorListener
-      implements DoorSensor.Listener
-  {
-    private final boolean up;
-
-    private PayAttentionToSensorListener(boolean up)
-    {
-      super();
-      this.up = up;
-    }
-
-    public void sensorCleared() {}
-
-    public void sensorObstructed() {}
-
-    public void sensorUnobstructed()
-    {
-      tryToEnterCar(up);
-    }
-  }
-  private final class PayAttentionToDoorListener
-      implements Door.Listener
-  {
-    private final DoorSensor.Listener listener;
-    private final DoorSensor sensor;
-    private final boolean up;
-    private final Door door;
-    private final CarEntrance entrance;
-
-    private PayAttentionToDoorListener(DoorSensor.Listener listener,
-      DoorSensor sensor, boolean up, Door door, CarEntrance entrance)
-    {
-      super();
-      this.listener = listener;
-      this.sensor = sensor;
-      this.up = up;
-      this.door = door;
-      this.entrance = entrance;
-    }
-
-    public void doorOpened()
-    {
-      tryToEnterCar(up);
-    }
-
-    public void doorClosed()
-    {
-      // stop paying attention to this entrance
-      payAttentionEntrances.remove(entrance);
-      sensor.removeListener(listener);
-      sensorListenerMap.remove(listener);
-      door.removeListener(this);
-      doorListenerMap.remove(this);
-    }
-  }
-
-  private final class WaitToGetOffListener
-      implements Car.Listener
-  {
-    private final Car car;
-
-    private WaitToGetOffListener(Car car)
-    {
-      super();
-      this.car = car;
-    }
-
-    public void docked()
-    {
-      if (destination == car.getLocation())
-      {
-        car.removeListener(this);
-        waitForDoorOpen();
-      }
-    }
-  }
-
   private final class LeavingCarEvent
       extends TrackingUpdateEvent
   {
@@ -241,7 +116,7 @@ public final class Person
 
     public void updateTime()
     {
-      percentMoved = (int)currentValue(eventQueue.getCurrentTime());
+      percentMoved = (byte)currentValue(eventQueue.getCurrentTime());
     }
 
     public void perform()
@@ -277,7 +152,7 @@ public final class Person
 
     public void updateTime()
     {
-      percentMoved = (int)currentValue(eventQueue.getCurrentTime());
+      percentMoved = (byte)currentValue(eventQueue.getCurrentTime());
     }
 
     public void perform()
@@ -300,55 +175,23 @@ public final class Person
     }
   }
 
-  private final class WaitingArrivalListener
-      implements CarRequestPanel.ArrivalListener
-  {
-    private final boolean up;
-
-    private WaitingArrivalListener(boolean up)
-    {
-      super();
-      this.up = up;
-    }
+  private static final byte NOT_TIMING = 0;
+  private static final byte WAITING = 1;
+  private static final byte TRAVELLING = 2;
 
-    public void arrivedUp(CarEntrance entrance)
-    {
-      if (!up) return;
-      payAttentionToEntrance(entrance, up);
-      tryToEnterCar(up);
-    }
-
-    public void arrivedDown(CarEntrance entrance)
-    {
-      if (up) return;
-      payAttentionToEntrance(entrance, up);
-      tryToEnterCar(up);
-    }
-  }
-
-  private static int nextId = 0;
+  // Kept small: a simulation may hold millions of people. The Person is its
+  // own listener for the steps of a trip rather than allocating one per step.
   private Floor destination;
   private Location currentLocation;
-  private int percentMoved = -1;
-  
-  private Map<DoorSensor.Listener, DoorSensor> sensorListenerMap =
-    new HashMap<DoorSensor.Listener, DoorSensor>();
-  private Map<Door.Listener, Door> doorListenerMap =
-    new HashMap<Door.Listener, Door>();
-  private CarRequestPanel.ArrivalListener arrivalListener;
-
+  private byte percentMoved = -1;
+  private byte timing = NOT_TIMING;
+  private long timingStart;
   private long totalWaitingTime;
-  private long startWaitTime = -1;
   private long totalTravelTime;
-  private long startTravelTime = -1;
-  private List<CarEntrance> payAttentionEntrances =
-    new ArrayList<CarEntrance>();
-  private long identifier;  // primarily for debug purposes
   
-  Person(EventQueue eQ, Location startLocation, long id)
+  Person(EventQueue eQ, Location startLocation)
   {
     super(eQ);
-    identifier = nextId++;
     // TODO: Deal with the start location being at capacity.
     movePerson(startLocation);
   }
@@ -366,171 +209,77 @@ public final class Person
     boolean up = destinationFloorNumber > currentFloorNumber;
 
     beginWaiting();
-    startPayingAttention(up);
-    tryToEnterCar(up);
+    ((Floor)currentLocation).waitToBoard(this, up);
   }
 
-  private void startPayingAttention(final boolean up)
+  /**
+   * Called by the Floor when this person reaches the head of its boarding
+   * queue and an entrance is free.
+   */
+  public void board(CarEntrance entrance)
   {
-    Floor here = (Floor)currentLocation;
-    final CarRequestPanel callButton = here.getCallPanel();
-    arrivalListener = new WaitingArrivalListener(up);
-    callButton.addArrivalListener(arrivalListener);
-
-    for (CarEntrance thisEntrance : ((Floor)currentLocation).getCarEntrances())
-    {
-      if (thisEntrance.getDoor().getState() != Door.State.CLOSED &&
-          ((thisEntrance.isUp() && up) || (!up && thisEntrance.isDown())))
-      {
-        payAttentionToEntrance(thisEntrance, up);
-      }
-    }
+    entrance.getDoorSensor().obstruct();
+    long currentTime = eventQueue.getCurrentTime();
+    Event enteringCarEvent = new EnteringCarEvent(currentTime, 0.0f,
+      currentTime + 2000, 100.0f, entrance);
+    eventQueue.addEvent(enteringCarEvent);
   }
 
-  private void payAttentionToEntrance(CarEntrance entrance, final boolean up)
-  {
-    if (payAttentionEntrances.contains(entrance))
-      return;
-
-    final DoorSensor sensor = entrance.getDoorSensor();
-    final Door door = entrance.getDoor();
-    // pay attention to unobstructed
-    final DoorSensor.Listener sensorListener =
-      new PayAttentionToSensorListener(up);
-    sensor.addListener(sensorListener);
-    sensorListenerMap.put(sensorListener, sensor);
-    // pay attention to doorClosed
-    Door.Listener doorListener = new PayAttentionToDoorListener(sensorListener,
-      sensor, up, door, entrance);
-    door.addListener(doorListener, false);
-    doorListenerMap.put(doorListener, door);
-    payAttentionEntrances.add(entrance);
-  }
-  
-  private void stopPayingAttention()
+  /**
+   * Called by the car this person is travelling in whenever it docks.
+   */
+  public void docked()
   {
-    Floor here = (Floor)currentLocation;
-    final CarRequestPanel callButton = here.getCallPanel();
-    callButton.removeArrivalListener(arrivalListener);
-    arrivalListener = null;
-
-    for (DoorSensor.Listener listener : sensorListenerMap.keySet())
+    Car car = (Car)currentLocation;
+    if (destination == car.getLocation())
     {
-      DoorSensor sensor = sensorListenerMap.get(listener);
-      sensor.removeListener(listener);
+      car.removeListener(this);
+      waitForDoorOpen();
     }
-    sensorListenerMap.clear();
-
-    for (Door.Listener listener : doorListenerMap.keySet())
-    {
-      Door door = doorListenerMap.get(listener);
-      door.removeListener(listener);
-    }
-    doorListenerMap.clear();
-
-    payAttentionEntrances.clear();
   }
 
-  private void tryToEnterCar(boolean up)
-  {
-	if (!(currentLocation instanceof Floor))
-	{
-		return;
-	}
-    Floor here = (Floor)currentLocation;
-    final CarRequestPanel callButton = here.getCallPanel();
-    List<Door> fullCarsAt = new ArrayList<>();
-
-    for (CarEntrance entrance : here.getCarEntrances())
-    {
-      Door door = entrance.getDoor();
-      DoorSensor sensor = entrance.getDoorSensor();
-      Car car = (Car)door.getTo();
-      // Note that occasionally in real life people will accidentally not
-      // pay attention to the light and get on an elevator going the wrong
-      // direction.
-      // LATER: We may eventually want to simulate this.
-      boolean isCarGoingMyWay = (up && entrance.isUp()) ||
-        (!up && entrance.isDown());
-      // if door is open && sensor is !obstructed && not at capacity
-      boolean isEntranceAvailable = door.getState() != Door.State.CLOSED && 
-        isCarGoingMyWay && !car.isAtCapacity();
-      boolean isEntranceOccupied =
-        sensor.getState() == DoorSensor.State.OBSTRUCTED || 
-        entrance.arePeopleWaitingToGetOut();
-      if (isEntranceAvailable && !isEntranceOccupied)
-      {
-        stopPayingAttention();
-        beginEnterCar(entrance);
-        return;
-      }
-      
-      if (!isEntranceAvailable && car.isAtCapacity())
-      {
-    	door.addListener(new Door.Listener()
-		{
-    		Floor origin = here;
-			@Override
-			public void doorOpened() {}
-			
-			@Override
-			public void doorClosed()
-			{
-              if (origin == currentLocation)
-              {
-                startPayingAttention(up);
-                eventQueue.addEvent(new Simulator.CarRequestEvent(
-    	          eventQueue.getCurrentTime(),
-    	          Person.this,
-    	          origin, 
-    	          destination
-                ));
-              }
-              door.removeListener(this);
-			}
-		}, true);
-      }
-    }
-
-    if (up && !callButton.isUp())
-      callButton.pressUp();
-    if (!up && !callButton.isDown())
-      callButton.pressDown();
-  }
-  
-  private void beginEnterCar(final CarEntrance entrance)
+  /**
+   * Called by the destination's car entrance when it is this person's turn to
+   * get out.
+   */
+  public void doorAvailable()
   {
+    CarEntrance entrance = destination.getCarEntranceForCar(currentLocation);
     entrance.getDoorSensor().obstruct();
-    long currentTime = eventQueue.getCurrentTime();
-    Event enteringCarEvent = new EnteringCarEvent(currentTime, 0.0f,
-      currentTime + 2000, 100.0f, entrance);
-    eventQueue.addEvent(enteringCarEvent);
+    // TODO: Deal with the floor being at capacity.
+    percentMoved = 0;
+    eventQueue.addEvent(new LeavingCarEvent(eventQueue.getCurrentTime(), 0,
+      eventQueue.getCurrentTime() + 2000, 100, entrance));
+    leaveCar();
   }
 
   private void beginWaiting()
   {
-    if (startWaitTime == -1)
-      startWaitTime = eventQueue.getCurrentTime();
+    if (timing == WAITING)
+      return;
+    timing = WAITING;
+    timingStart = eventQueue.getCurrentTime();
   }
   private void endWaiting()
   {
-    if (startWaitTime == -1)
+    if (timing != WAITING)
       throw new IllegalStateException("Can't end waiting when not already waiting.");
-    totalWaitingTime += eventQueue.getCurrentTime() - startWaitTime;
-    startWaitTime = -1;
+    totalWaitingTime += eventQueue.getCurrentTime() - timingStart;
+    timing = NOT_TIMING;
   }
   private void beginTravel()
   {
-    if (startTravelTime != -1)
+    if (timing == TRAVELLING)
       throw new IllegalStateException("Can't begin travelling while already travelling");
-    startTravelTime = eventQueue.getCurrentTime();
+    timing = TRAVELLING;
+    timingStart = eventQueue.getCurrentTime();
   }
   private void endTravel()
   {
-    if (startTravelTime == -1)
+    if (timing != TRAVELLING)
       throw new IllegalStateException("Can't end travel when not already travelling.");
-    totalTravelTime += eventQueue.getCurrentTime() - startTravelTime;
-    startTravelTime = -1;
+    totalTravelTime += eventQueue.getCurrentTime() - timingStart;
+    timing = NOT_TIMING;
   }
 
   public long getTotalWaitingTime()
@@ -571,7 +320,7 @@ public final class Person
   private void enterCar(CarEntrance carEntrance)
   {
     final Door departureDoor = carEntrance.getDoor();
-    final Car car = (Car) departureDoor.getTo();
+    final Car car = departureDoor.getTo();
 
     movePerson(car);
 
@@ -579,7 +328,7 @@ public final class Person
     beginTravel();
     car.getFloorRequestPanel().requestFloor(destination);
     // setup for getting out of the car
-    car.addListener(new WaitToGetOffListener(car));
+    car.addListener(this);
   }
   
   /**
@@ -607,7 +356,7 @@ public final class Person
   private void waitForDoorOpen()
   {
     final CarEntrance entrance = destination.getCarEntranceForCar(currentLocation);
-    entrance.waitToEnterDoor(new WaitForDoorAvailableLeavingListener(entrance));
+    entrance.waitToEnterDoor(this);
   }
 
   public int getPercentMoved()
@@ -0,0 +1,59 @@
+package org.intranet.elevator.model.operate.controller;
+
+import org.intranet.elevator.model.Car;
+import org.intranet.elevator.model.Floor;
+import org.intranet.elevator.model.operate.Building;
+import org.intranet.sim.event.EventQueue;
+
+/**
+ * A controller whose decisions may take time to make, such as a planner that
+ * searches or one that asks a remote service. Wrapped in an
+ * {@link AsyncControllerAdapter}, the simulation keeps running while a
+ * decision is being made and never waits past its {@link Deadline}.
+ * <p>
+ * The methods are called on the simulation thread and must return quickly.
+ * The model may only be changed, or read while it is changing, on that
+ * thread, so work done elsewhere should be based on what the call read or on
+ * {@link Building#getSnapshot()}. Decisions are carried out by the adapter on
+ * the simulation thread.
+ */
+public interface AsyncController
+{
+  void initialize(EventQueue eQ, Building building);
+
+  default String getInitMessage()
+  {
+    return "loading...";
+  }
+
+  /**
+   * @return The car to send to the floor, or null to leave the request to a
+   *         later decision. The car is only sent if it has no destination by
+   *         the time the decision takes effect.
+   */
+  Decision<Car> requestCar(Floor floor, Direction d);
+
+  /**
+   * Called once when a car arrives at a floor. The decision is needed at once
+   * to set the direction light on the entrance, so only the wall-clock part
+   * of its deadline applies.
+   * @return Whether the car is going up after this arrival
+   */
+  Decision<Boolean> arrive(Car car);
+
+  /**
+   * Called when the doors of a car have closed. The car leaves without a
+   * destination if the decision is not made yet, and is sent on when it is,
+   * unless it has been sent elsewhere or docked at another floor by then.
+   * @return The floor to send the car to next, or null to leave it idle
+   */
+  Decision<Floor> nextDestination(Car car);
+
+  /**
+   * Called when the simulation is over or is started again. Decisions still
+   * pending have been cancelled.
+   */
+  default void close()
+  {
+  }
+}
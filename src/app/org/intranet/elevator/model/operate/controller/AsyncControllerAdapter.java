@@ -0,0 +1,322 @@
+package org.intranet.elevator.model.operate.controller;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.intranet.elevator.model.Car;
+import org.intranet.elevator.model.Floor;
+import org.intranet.elevator.model.operate.Building;
+import org.intranet.sim.event.Event;
+import org.intranet.sim.event.EventQueue;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import au.edu.rmit.agtgrp.elevatorsim.ui.ControllerDialogCreator;
+
+/**
+ * Runs an {@link AsyncController} as a {@link Controller}.
+ * <p>
+ * A decision made by the time it is asked for takes effect at once, exactly
+ * as with a synchronous controller. Otherwise the simulation goes on and the
+ * decision takes effect after the first event processed once it is made. If
+ * it is still not made at its simulated deadline, which is an event in the
+ * queue, the simulation waits for what is left of its wall-clock deadline and
+ * then cancels it and carries out the decision of the {@link FallbackPolicy}
+ * instead. Decisions that fail are replaced in the same way.
+ */
+public class AsyncControllerAdapter
+  implements Controller
+{
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+
+  private final String name;
+  private final AsyncController controller;
+  private final FallbackPolicy fallback;
+  private EventQueue eventQueue;
+  private Building building;
+  // decisions yet to take effect, in the order they were asked for
+  private final List<PendingDecision<?>> pending = new ArrayList<PendingDecision<?>>();
+
+  private int decisionsMade;
+  private int deadlinesMissed;
+  private int decisionsFailed;
+
+  public AsyncControllerAdapter(AsyncController controller, FallbackPolicy fallback)
+  {
+    this(controller.toString(), controller, fallback);
+  }
+
+  /**
+   * @param name The name of the controller, such as the one it is listed
+   *        under in the simulator parameters JSON file
+   */
+  public AsyncControllerAdapter(String name, AsyncController controller, FallbackPolicy fallback)
+  {
+    super();
+    this.name = name;
+    this.controller = controller;
+    this.fallback = fallback;
+  }
+
+  private final class PendingDecision<T>
+  {
+    private final Decision<T> decision;
+    private final long wallClockDeadline;
+    private final Consumer<T> effect;
+    private final Supplier<T> fallbackDecision;
+    private final String description;
+    private Event deadlineEvent;
+
+    private PendingDecision(Decision<T> decision, Consumer<T> effect, Supplier<T> fallbackDecision,
+      String description)
+    {
+      this.decision = decision;
+      wallClockDeadline = System.nanoTime() +
+        TimeUnit.MILLISECONDS.toNanos(decision.getDeadline().getWallClockMillis());
+      this.effect = effect;
+      this.fallbackDecision = fallbackDecision;
+      this.description = description;
+    }
+
+    private void takeEffect()
+    {
+      effect.accept(await(this));
+    }
+  }
+
+  private final class DeadlineEvent
+    extends Event
+  {
+    private final PendingDecision<?> decision;
+
+    private DeadlineEvent(long time, PendingDecision<?> decision)
+    {
+      super(time);
+      this.decision = decision;
+    }
+
+    public void perform()
+    {
+      // the decision may have been cancelled by close()
+      if (pending.remove(decision))
+        decision.takeEffect();
+    }
+
+    public String getName()
+    {
+      return "decisionDeadline";
+    }
+
+    public JSONObject getDescription()
+    {
+      JSONObject ret = new JSONObject();
+      ret.put("decision", decision.description);
+      return ret;
+    }
+  }
+
+  public void initialize(EventQueue eQ, Building building)
+  {
+    cancelPending();
+    eventQueue = eQ;
+    this.building = building;
+    decisionsMade = 0;
+    deadlinesMissed = 0;
+    decisionsFailed = 0;
+    eQ.addListener(new EventQueue.Listener()
+    {
+      public void eventAdded(Event e) {}
+      public void eventRemoved(Event e) {}
+      public void eventError(Exception ex) {}
+      public void simulationEnded() {}
+
+      public void eventProcessed(Event e)
+      {
+        applyMadeDecisions();
+      }
+    });
+    controller.initialize(eQ, building);
+  }
+
+  public String getInitMessage()
+  {
+    return controller.getInitMessage();
+  }
+
+  public void requestCar(final Floor newFloor, Direction d)
+  {
+    decide(controller.requestCar(newFloor, d), car ->
+      {
+        if (car != null && car.getDestination() == null)
+          car.setDestination(newFloor);
+      },
+      () -> fallback.requestCar(building, newFloor, d), "requestCar " + newFloor.getFloorNumber() + " " + d);
+  }
+
+  public boolean arrive(final Car car)
+  {
+    PendingDecision<Boolean> decision = new PendingDecision<Boolean>(controller.arrive(car), null,
+      () -> fallback.arrive(building, car), "arrive " + car.getId());
+    Boolean up = await(decision);
+    return up != null ? up : fallback.arrive(building, car);
+  }
+
+  public void setNextDestination(final Car car)
+  {
+    final Floor location = car.getLocation();
+    decide(controller.nextDestination(car), floor ->
+      {
+        // a late decision is stale once the car has been sent elsewhere or
+        // has docked at another floor, where it is asked again
+        if (floor != null && car.getDestination() == null &&
+            (car.getLocation() == null || car.getLocation() == location))
+          car.setDestination(floor);
+      },
+      () -> fallback.nextDestination(building, car), "nextDestination " + car.getId());
+  }
+
+  private <T> void decide(Decision<T> decision, Consumer<T> effect, Supplier<T> fallbackDecision,
+    String description)
+  {
+    PendingDecision<T> pendingDecision = new PendingDecision<T>(decision, effect, fallbackDecision, description);
+    long simulatedMillis = decision.getDeadline().getSimulatedMillis();
+    if (decision.getFuture().isDone() || simulatedMillis == 0)
+    {
+      pendingDecision.takeEffect();
+      return;
+    }
+    pendingDecision.deadlineEvent =
+      new DeadlineEvent(eventQueue.getCurrentTime() + simulatedMillis, pendingDecision);
+    pending.add(pendingDecision);
+    eventQueue.addEvent(pendingDecision.deadlineEvent);
+  }
+
+  /**
+   * Carries out, in order, the pending decisions that have been made.
+   */
+  private void applyMadeDecisions()
+  {
+    List<PendingDecision<?>> made = new ArrayList<PendingDecision<?>>();
+    for (PendingDecision<?> decision : pending)
+      if (decision.decision.getFuture().isDone())
+        made.add(decision);
+    for (PendingDecision<?> decision : made)
+    {
+      pending.remove(decision);
+      eventQueue.removeEvent(decision.deadlineEvent);
+      decision.takeEffect();
+    }
+  }
+
+  /**
+   * Waits for the decision until its wall-clock deadline.
+   * @return The decision, or the fallback decision if it was not made in
+   *         time or failed
+   */
+  private <T> T await(PendingDecision<T> pendingDecision)
+  {
+    CompletableFuture<T> future = pendingDecision.decision.getFuture();
+    long remaining = pendingDecision.wallClockDeadline - System.nanoTime();
+    if (!future.isDone() && remaining > 0)
+    {
+      try
+      {
+        future.get(remaining, TimeUnit.NANOSECONDS);
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+      }
+      catch (ExecutionException | CancellationException | TimeoutException e)
+      {
+        // dealt with below
+      }
+    }
+    // the decision may still be made while it is being cancelled
+    if (future.cancel(false))
+    {
+      deadlinesMissed++;
+      LOG.warn("{} missed its deadline of {}, using {}", pendingDecision.description,
+        pendingDecision.decision.getDeadline(), fallback);
+      return pendingDecision.fallbackDecision.get();
+    }
+    try
+    {
+      T value = future.join();
+      decisionsMade++;
+      return value;
+    }
+    catch (CompletionException | CancellationException e)
+    {
+      decisionsFailed++;
+      LOG.warn("{} failed, using {}: {}", pendingDecision.description, fallback, e.getMessage());
+      return pendingDecision.fallbackDecision.get();
+    }
+  }
+
+  private void cancelPending()
+  {
+    for (PendingDecision<?> decision : pending)
+      decision.decision.getFuture().cancel(false);
+    pending.clear();
+  }
+
+  /**
+   * @return Number of decisions made in time in this run
+   */
+  public int getDecisionsMade()
+  {
+    return decisionsMade;
+  }
+
+  /**
+   * @return Number of decisions replaced by the fallback policy in this run
+   *         because they were not made in time
+   */
+  public int getDeadlinesMissed()
+  {
+    return deadlinesMissed;
+  }
+
+  /**
+   * @return Number of decisions replaced by the fallback policy in this run
+   *         because they failed
+   */
+  public int getDecisionsFailed()
+  {
+    return decisionsFailed;
+  }
+
+  public void setControllerDialogCreator(ControllerDialogCreator cdc) {}
+
+  public void close()
+  {
+    cancelPending();
+    LOG.info("{}: {} decisions made in time, {} deadlines missed, {} failed", name, decisionsMade,
+      deadlinesMissed, decisionsFailed);
+    controller.close();
+  }
+
+  /**
+   * Whether a decision arrives before its deadline depends on the wall clock.
+   */
+  public boolean isDeterministic()
+  {
+    return false;
+  }
+
+  public String toString()
+  {
+    return name;
+  }
+}
@@ -31,4 +31,14 @@ public interface Controller
   public void setNextDestination(Car car);
   public void setControllerDialogCreator(ControllerDialogCreator cdc);
   public void close();
+  /**
+   * @return Whether a run with this controller always gives the same results
+   *         for the same parameters. Controllers whose decisions depend on
+   *         another thread, another process or the wall clock are not, so
+   *         their runs are never reused from a store of past results.
+   */
+  public default boolean isDeterministic()
+  {
+    return true;
+  }
 }
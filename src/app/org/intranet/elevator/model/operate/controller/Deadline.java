@@ -0,0 +1,65 @@
+package org.intranet.elevator.model.operate.controller;
+
+/**
+ * How long an {@link AsyncController} may take to make a decision. A
+ * decision not made by the deadline is replaced by the one of the
+ * {@link FallbackPolicy}.
+ * <p>
+ * The simulated part is measured in simulation time from the call. The
+ * simulation keeps running meanwhile, and the decision takes effect as soon
+ * as it is made. When the simulated deadline is reached the simulation waits
+ * for the decision until the wall-clock part, measured in real time from the
+ * call, has also run out. Decisions needed at once, such as the direction of
+ * a car that has just arrived, only get the wall-clock part.
+ */
+public final class Deadline
+{
+  private final long simulatedMillis;
+  private final long wallClockMillis;
+
+  private Deadline(long simulatedMillis, long wallClockMillis)
+  {
+    if (simulatedMillis < 0 || wallClockMillis < 0)
+      throw new IllegalArgumentException("Deadlines cannot be negative");
+    this.simulatedMillis = simulatedMillis;
+    this.wallClockMillis = wallClockMillis;
+  }
+
+  public static Deadline of(long simulatedMillis, long wallClockMillis)
+  {
+    return new Deadline(simulatedMillis, wallClockMillis);
+  }
+
+  /**
+   * @return A deadline after the given simulation time, without waiting for
+   *         the decision once it is reached
+   */
+  public static Deadline simulated(long millis)
+  {
+    return new Deadline(millis, 0);
+  }
+
+  /**
+   * @return A deadline after the given real time, blocking the simulation
+   *         until the decision is made or the time is up
+   */
+  public static Deadline wallClock(long millis)
+  {
+    return new Deadline(0, millis);
+  }
+
+  public long getSimulatedMillis()
+  {
+    return simulatedMillis;
+  }
+
+  public long getWallClockMillis()
+  {
+    return wallClockMillis;
+  }
+
+  public String toString()
+  {
+    return simulatedMillis + "ms simulated, " + wallClockMillis + "ms wall clock";
+  }
+}
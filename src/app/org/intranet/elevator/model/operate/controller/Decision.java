@@ -0,0 +1,46 @@
+package org.intranet.elevator.model.operate.controller;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A decision of an {@link AsyncController} that may still be in the making,
+ * along with the deadline for making it.
+ */
+public final class Decision<T>
+{
+  private final CompletableFuture<T> future;
+  private final Deadline deadline;
+
+  private Decision(CompletableFuture<T> future, Deadline deadline)
+  {
+    this.future = future;
+    this.deadline = deadline;
+  }
+
+  /**
+   * @param future Completed with the decision, possibly on another thread.
+   *        It is cancelled if the deadline is missed.
+   */
+  public static <T> Decision<T> of(CompletableFuture<T> future, Deadline deadline)
+  {
+    return new Decision<T>(future, deadline);
+  }
+
+  /**
+   * @return A decision made already, which takes effect at once
+   */
+  public static <T> Decision<T> now(T value)
+  {
+    return new Decision<T>(CompletableFuture.completedFuture(value), Deadline.of(0, 0));
+  }
+
+  public CompletableFuture<T> getFuture()
+  {
+    return future;
+  }
+
+  public Deadline getDeadline()
+  {
+    return deadline;
+  }
+}
@@ -0,0 +1,61 @@
+package org.intranet.elevator.model.operate.controller;
+
+import org.intranet.elevator.model.Car;
+import org.intranet.elevator.model.Floor;
+import org.intranet.elevator.model.operate.Building;
+
+/**
+ * Decisions made in place of those an {@link AsyncController} did not make by
+ * their deadline, or failed to make. Called on the simulation thread.
+ */
+public interface FallbackPolicy
+{
+  /**
+   * Sends the nearest idle car to a call, takes a car to the nearest floor
+   * requested inside it or called from, and keeps a car going the way its
+   * passengers want.
+   */
+  FallbackPolicy NEAREST = new NearestFallbackPolicy();
+
+  /**
+   * Leaves every car idle, so nothing happens until the controller decides
+   * again.
+   */
+  FallbackPolicy IDLE = new FallbackPolicy()
+  {
+    public Car requestCar(Building building, Floor floor, Direction d)
+    {
+      return null;
+    }
+
+    public boolean arrive(Building building, Car car)
+    {
+      return true;
+    }
+
+    public Floor nextDestination(Building building, Car car)
+    {
+      return null;
+    }
+
+    public String toString()
+    {
+      return "IDLE";
+    }
+  };
+
+  /**
+   * @return The car to send to the floor, or null
+   */
+  Car requestCar(Building building, Floor floor, Direction d);
+
+  /**
+   * @return Whether the car is going up after arriving
+   */
+  boolean arrive(Building building, Car car);
+
+  /**
+   * @return The floor to send the car to next, or null to leave it idle
+   */
+  Floor nextDestination(Building building, Car car);
+}
@@ -0,0 +1,85 @@
+package org.intranet.elevator.model.operate.controller;
+
+import java.util.List;
+
+import org.intranet.elevator.model.Car;
+import org.intranet.elevator.model.CarRequestPanel;
+import org.intranet.elevator.model.Floor;
+import org.intranet.elevator.model.operate.Building;
+
+/**
+ * See {@link FallbackPolicy#NEAREST}.
+ */
+class NearestFallbackPolicy
+  implements FallbackPolicy
+{
+  public Car requestCar(Building building, Floor floor, Direction d)
+  {
+    Car nearest = null;
+    for (Car car : building.getCars())
+    {
+      // only idle cars; a docked car is sent on when its doors close
+      if (car.getDestination() != null || car.getLocation() != null)
+        continue;
+      if (nearest == null || distance(car, floor) < distance(nearest, floor))
+        nearest = car;
+    }
+    return nearest;
+  }
+
+  public boolean arrive(Building building, Car car)
+  {
+    Floor location = car.getLocation();
+    boolean above = false;
+    boolean below = false;
+    for (Floor requested : car.getFloorRequestPanel().getRequestedFloors())
+    {
+      above |= requested.getHeight() > location.getHeight();
+      below |= requested.getHeight() < location.getHeight();
+    }
+    if (above != below)
+      return above;
+    CarRequestPanel callPanel = location.getCallPanel();
+    if (callPanel.isUp() != callPanel.isDown())
+      return callPanel.isUp();
+    List<Floor> floors = car.getFloorRequestPanel().getServicedFloors();
+    return location != floors.get(floors.size() - 1);
+  }
+
+  public Floor nextDestination(Building building, Car car)
+  {
+    Floor location = car.getLocation();
+    Floor nearest = nearest(car, car.getFloorRequestPanel().getRequestedFloors(), location);
+    if (nearest != null)
+      return nearest;
+    Floor nearestCall = null;
+    for (Floor floor : car.getFloorRequestPanel().getServicedFloors())
+    {
+      CarRequestPanel callPanel = floor.getCallPanel();
+      if (floor == location || !(callPanel.isUp() || callPanel.isDown()))
+        continue;
+      if (nearestCall == null || distance(car, floor) < distance(car, nearestCall))
+        nearestCall = floor;
+    }
+    return nearestCall;
+  }
+
+  private static Floor nearest(Car car, List<Floor> floors, Floor except)
+  {
+    Floor nearest = null;
+    for (Floor floor : floors)
+      if (floor != except && (nearest == null || distance(car, floor) < distance(car, nearest)))
+        nearest = floor;
+    return nearest;
+  }
+
+  private static float distance(Car car, Floor floor)
+  {
+    return Math.abs(car.getHeight() - floor.getHeight());
+  }
+
+  public String toString()
+  {
+    return "NEAREST";
+  }
+}
@@ -5,88 +5,296 @@
 package org.intranet.elevator.view;
 
 import java.awt.Color;
+import java.awt.Container;
+import java.awt.Dimension;
 import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.JComponent;
+import javax.swing.JViewport;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
 
-import org.intranet.elevator.model.Car;
-import org.intranet.elevator.model.CarEntrance;
-import org.intranet.elevator.model.Floor;
 import org.intranet.elevator.model.operate.Building;
-import org.intranet.elevator.model.operate.Person;
+import org.intranet.elevator.model.operate.BuildingSnapshot;
 
 /**
+ * Draws the latest snapshot published by the Building, so painting never
+ * waits on the simulation thread.
+ * <p>
+ * The view never squeezes floors below {@link #MIN_FLOOR_PIXELS}; a taller
+ * building grows the view, which is meant to be placed in a JScrollPane.
+ * Ctrl + mouse wheel zooms in and out. Only the floors and cars that
+ * intersect the clip are painted, and when a new snapshot is published only
+ * the bands of the view whose floors or cars changed are repainted.
+ * 
  * @author Neil McKellar and Chris Dailey
  *
  */
 public class BuildingView
   extends JComponent
+  implements Scrollable
 {
+  static final int MIN_FLOOR_PIXELS = 30;
+  // beyond this many people a floor or car shows a "+N" count instead
+  static final int CROWD_THRESHOLD = 20;
+  private static final float MAX_ZOOM = 8.0f;
+  private static final float ZOOM_STEP = 1.25f;
+
   private Building building;
+  private float zoom = 1.0f;
+  // last snapshot whose changes have been passed to repaint
+  private BuildingSnapshot shown;
+  private final AtomicBoolean repaintPending = new AtomicBoolean();
+  private final Building.SnapshotListener snapshotListener =
+    new Building.SnapshotListener()
+    {
+      public void snapshotPublished(BuildingSnapshot snapshot)
+      {
+        if (!repaintPending.getAndSet(true))
+          SwingUtilities.invokeLater(new Runnable()
+          {
+            public void run()
+            {
+              repaintPending.set(false);
+              repaintChanges();
+            }
+          });
+      }
+    };
   
   public BuildingView(Building building)
   {
     super();
     this.building = building;
+    addMouseWheelListener(new MouseWheelListener()
+    {
+      public void mouseWheelMoved(MouseWheelEvent e)
+      {
+        if (e.isControlDown())
+          zoomAt(e.getY(), (float)Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation()));
+        else if (getParent() != null)
+          // let the enclosing scroll pane scroll as usual
+          getParent().dispatchEvent(SwingUtilities.convertMouseEvent(
+            BuildingView.this, e, getParent()));
+      }
+    });
+  }
+
+  public void addNotify()
+  {
+    super.addNotify();
+    shown = null;
+    building.addSnapshotListener(snapshotListener);
+  }
+
+  public void removeNotify()
+  {
+    building.removeSnapshotListener(snapshotListener);
+    super.removeNotify();
+  }
+
+  public float getZoom()
+  {
+    return zoom;
+  }
+
+  /**
+   * @param zoom Magnification relative to the smallest readable size, from 1
+   *        to {@link #MAX_ZOOM}
+   */
+  public void setZoom(float zoom)
+  {
+    this.zoom = Math.max(1.0f, Math.min(MAX_ZOOM, zoom));
+    revalidate();
+    repaint();
+  }
+
+  /**
+   * Zooms by factor, keeping the building height under y in place on screen.
+   */
+  private void zoomAt(int y, float factor)
+  {
+    float oldHeight = getHeight();
+    setZoom(zoom * factor);
+    if (!(getParent() instanceof JViewport) || oldHeight == 0)
+      return;
+    JViewport viewport = (JViewport)getParent();
+    // lay out now so the new height is known before moving the viewport
+    viewport.validate();
+    Point position = viewport.getViewPosition();
+    int newY = (int)(y * getHeight() / oldHeight);
+    int maxY = Math.max(0, getHeight() - viewport.getExtentSize().height);
+    position.y = Math.max(0, Math.min(maxY, newY - (y - position.y)));
+    viewport.setViewPosition(position);
+  }
+
+  private int getViewportHeight()
+  {
+    Container parent = getParent();
+    if (parent instanceof JViewport)
+      return parent.getHeight();
+    return getHeight();
+  }
+
+  public Dimension getPreferredSize()
+  {
+    BuildingSnapshot snapshot = building.getSnapshot();
+    if (isPreferredSizeSet() || snapshot == null)
+      return super.getPreferredSize();
+    float fitted = getViewportHeight() / snapshot.getHeight();
+    float readable = MIN_FLOOR_PIXELS * snapshot.getNumFloors() / snapshot.getHeight();
+    int height = (int)Math.ceil(Math.max(fitted, readable) * zoom * snapshot.getHeight());
+    return new Dimension(super.getPreferredSize().width, height);
+  }
+
+  public Dimension getPreferredScrollableViewportSize()
+  {
+    return getPreferredSize();
+  }
+
+  public int getScrollableUnitIncrement(Rectangle visibleRect,
+    int orientation, int direction)
+  {
+    BuildingSnapshot snapshot = building.getSnapshot();
+    if (orientation == SwingConstants.HORIZONTAL || snapshot == null)
+      return 10;
+    // one floor at a time
+    float pixelConv = getHeight() / snapshot.getHeight();
+    return Math.max(1, (int)(snapshot.getHeight() / snapshot.getNumFloors() * pixelConv));
+  }
+
+  public int getScrollableBlockIncrement(Rectangle visibleRect,
+    int orientation, int direction)
+  {
+    return orientation == SwingConstants.VERTICAL ?
+      visibleRect.height : visibleRect.width;
+  }
+
+  public boolean getScrollableTracksViewportWidth()
+  {
+    return true;
+  }
+
+  public boolean getScrollableTracksViewportHeight()
+  {
+    // fill the viewport whenever the whole building fits in it
+    return getPreferredSize().height <= getViewportHeight();
+  }
+
+  /**
+   * Repaints the bands of the view holding floors and cars that differ
+   * between the last snapshot handled and the latest one.
+   */
+  private void repaintChanges()
+  {
+    BuildingSnapshot latest = building.getSnapshot();
+    BuildingSnapshot previous = shown;
+    shown = latest;
+    if (latest == null || latest == previous)
+      return;
+    if (previous == null || !latest.isSameShape(previous))
+    {
+      repaint();
+      return;
+    }
+
+    float pixelConv = getHeight() / latest.getHeight();
+    for (int floor = 0; floor < latest.getNumFloors(); floor++)
+    {
+      if (!latest.isFloorChanged(previous, floor))
+        continue;
+      int floorY = getHeight() - (int)(latest.getFloorHeight(floor) * pixelConv);
+      int ceilingY = getHeight() - (int)((latest.getFloorHeight(floor) +
+        latest.getFloorCeiling(floor)) * pixelConv);
+      repaint(0, ceilingY, getWidth(), floorY - ceilingY + 1);
+    }
+
+    // a car band also covers people walking between the car and the floor
+    int carDimension = (int)(calcMinFloorHeight(latest) * pixelConv);
+    for (int car = 0; car < latest.getNumCars(); car++)
+    {
+      if (!latest.isCarChanged(previous, car))
+        continue;
+      int oldFloorY = getHeight() - (int)(previous.getCarHeight(car) * pixelConv);
+      int newFloorY = getHeight() - (int)(latest.getCarHeight(car) * pixelConv);
+      int top = Math.min(oldFloorY, newFloorY) - carDimension;
+      int bottom = Math.max(oldFloorY, newFloorY);
+      repaint(0, top, getWidth(), bottom - top + 1);
+    }
   }
   
   public void paintComponent(Graphics g)
   {
-    synchronized (building)
-    {
-      float pixelConv = getHeight() / building.getHeight();
+    BuildingSnapshot snapshot = building.getSnapshot();
+    if (snapshot == null)
+      return;
 
-      float minFloorHeight = calcMinFloorHeight();
-      int personHeight = (int)(5.5 * pixelConv);
+    Rectangle clip = g.getClipBounds();
+    if (clip == null)
+      clip = new Rectangle(0, 0, getWidth(), getHeight());
 
-      for (Floor floor : building.getFloors())
-      {
-        // Draw lines for floor and ceiling and number floors
-        int shaftWidth = (int)(minFloorHeight * pixelConv);
-        drawFloor(g, floor, pixelConv, shaftWidth, personHeight);
-      }
-    
-      // Draw elevator cars
-      int carDimension = (int)(minFloorHeight * pixelConv);
-      drawCars(g, pixelConv, personHeight, carDimension, carDimension);
+    float pixelConv = getHeight() / snapshot.getHeight();
+
+    float minFloorHeight = calcMinFloorHeight(snapshot);
+    int personHeight = (int)(5.5 * pixelConv);
+
+    for (int floor = 0; floor < snapshot.getNumFloors(); floor++)
+    {
+      float floorHeight = snapshot.getFloorHeight(floor);
+      int floorY = getHeight() - (int)(floorHeight * pixelConv);
+      int ceilingY = getHeight() -
+        (int)((floorHeight + snapshot.getFloorCeiling(floor)) * pixelConv);
+      if (floorY < clip.y || ceilingY > clip.y + clip.height)
+        continue;
+      // Draw lines for floor and ceiling and number floors
+      int shaftWidth = (int)(minFloorHeight * pixelConv);
+      drawFloor(g, snapshot, floor, floorY, ceilingY, shaftWidth, personHeight);
     }
+    
+    // Draw elevator cars
+    int carDimension = (int)(minFloorHeight * pixelConv);
+    drawCars(g, snapshot, clip, pixelConv, personHeight, carDimension, carDimension);
   }
 
-  private float calcMinFloorHeight()
+  private float calcMinFloorHeight(BuildingSnapshot snapshot)
   {
-    float minFloorCeiling = building.getHeight();
-    for (Floor floor : building.getFloors())
+    float minFloorCeiling = snapshot.getHeight();
+    for (int floor = 0; floor < snapshot.getNumFloors(); floor++)
     {
-      if (floor.getCeiling() < minFloorCeiling)
-        minFloorCeiling = floor.getCeiling();
+      if (snapshot.getFloorCeiling(floor) < minFloorCeiling)
+        minFloorCeiling = snapshot.getFloorCeiling(floor);
     }
     return minFloorCeiling;
   }
 
-  private void drawFloor(Graphics g, Floor floor, float pixelConv,
-    int shaftWidthPixels, int personHeight)
+  private void drawFloor(Graphics g, BuildingSnapshot snapshot, int floor,
+    int floorY, int ceilingY, int shaftWidthPixels, int personHeight)
   {
     g.setColor(Color.gray);
-    int floorY = getHeight() - (int)(floor.getHeight() * pixelConv);
     g.drawLine(0, floorY, getWidth(), floorY);
-    int ceilingY = getHeight() - (int)(floor.getAbsoluteCeiling() * pixelConv);
     g.drawLine(0, ceilingY, getWidth(), ceilingY);
-    g.drawString(Integer.toString(floor.getFloorNumber()), 5, floorY - 4);
+    g.drawString(Integer.toString(snapshot.getFloorNumber(floor)), 5, floorY - 4);
     
     // Draw entrances
-    int entranceNum = drawEntrances(g, floor, ceilingY,
+    int entranceNum = drawEntrances(g, snapshot, floor, ceilingY,
       shaftWidthPixels, floorY - ceilingY);
     
     // Draw request buttons
-    drawRequestIndicators(g, floor, floorY, ceilingY, entranceNum);
+    drawRequestIndicators(g, snapshot, floor, floorY, ceilingY, entranceNum);
     
-    int entrancesXLocation = getWidth() - shaftWidthPixels * building.getNumCars();
-    drawFloorPersons(g, floor, personHeight, floorY, entrancesXLocation);
-    drawCarMovingPersons(g, floor, personHeight, floorY, entrancesXLocation);
+    int entrancesXLocation = getWidth() - shaftWidthPixels * snapshot.getNumCars();
+    drawFloorPersons(g, snapshot, floor, personHeight, floorY, entrancesXLocation);
+    drawCarMovingPersons(g, snapshot, floor, personHeight, floorY, entrancesXLocation);
   }
 
-  private void drawRequestIndicators(Graphics g, Floor floor, int floorY,
-    int ceilingY, int entranceNum)
+  private void drawRequestIndicators(Graphics g, BuildingSnapshot snapshot,
+    int floor, int floorY, int ceilingY, int entranceNum)
   {
     int floorHeight = floorY - ceilingY;
     int widthOfEntrances = floorHeight * entranceNum; // proportional
@@ -94,7 +302,7 @@ public class BuildingView
     int buttonHeight = floorHeight / 20;
     int buttonWidth = floorHeight / 10;
     
-    if (floor.getCallPanel().isUp())
+    if (snapshot.isCalledUp(floor))
       g.setColor(Color.yellow);
     else
       g.setColor(Color.gray);
@@ -102,7 +310,7 @@ public class BuildingView
                ceilingY + wallCenter,
                buttonWidth, buttonHeight);
     
-    if (floor.getCallPanel().isDown())
+    if (snapshot.isCalledDown(floor))
       g.setColor(Color.yellow);
     else
       g.setColor(Color.gray);
@@ -111,86 +319,108 @@ public class BuildingView
                buttonWidth, buttonHeight);
   }
 
-  private void drawFloorPersons(Graphics g, Floor floor, int personHeight,
-    int floorY, int entrancesXLocation)
+  private void drawFloorPersons(Graphics g, BuildingSnapshot snapshot,
+    int floor, int personHeight, int floorY, int entrancesXLocation)
   {
-    int personNumber = 0;
     PersonView personView = new PersonView();
-    for (Person person : floor.getOccupants())
+    int personWidth = personHeight / 2;
+    // leave room for the call buttons in front of the entrances
+    int room = entrancesXLocation - personWidth - 20;
+    int capacity = Math.min(CROWD_THRESHOLD, room / Math.max(1, personWidth));
+    boolean crowded = snapshot.getNumFloorOccupants(floor) > capacity;
+    // when crowded the last slot holds the count of people not drawn
+    int slots = crowded ? Math.max(0, capacity - 1) : capacity;
+    int drawn = 0;
+    for (int personNumber = 0;
+         personNumber < snapshot.getNumDrawnFloorOccupants(floor);
+         personNumber++)
     {
-      boolean isMoving = person.getPercentMoved() != -1;
-      int floorXPosition = 20 + personNumber * personHeight / 2;
+      int percentMoved = snapshot.getFloorOccupantPercentMoved(floor, personNumber);
+      boolean isMoving = percentMoved != -1;
+      if (!isMoving && personNumber >= slots)
+        continue;
+      int floorXPosition = 20 + Math.min(personNumber, slots) * personWidth;
       int distanceToElevator = entrancesXLocation - floorXPosition;
-      int distanceMoved = (int)(distanceToElevator * person.getPercentMoved() / 100.0);
+      int distanceMoved = (int)(distanceToElevator * percentMoved / 100.0);
       int personX = isMoving ? floorXPosition + distanceMoved : floorXPosition;
-      int personWidth = personHeight / 2;
       int personY = floorY - personHeight;
-      personView.initialize(person, personWidth, personHeight);
+      personView.initialize(snapshot.getFloorOccupantDestination(floor, personNumber),
+        personWidth, personHeight);
       Graphics g2 = g.create(personX, personY, personWidth, personHeight);
       personView.paint(g2);
-      personNumber++;
+      drawn++;
     }
+    if (crowded)
+      drawCrowdCount(g, snapshot.getNumFloorOccupants(floor) - drawn,
+        20 + slots * personWidth, floorY - 2);
+  }
+
+  static void drawCrowdCount(Graphics g, int count, int x, int baselineY)
+  {
+    g.setColor(Color.gray);
+    g.drawString("+" + count, x, baselineY);
   }
 
-  private void drawCarMovingPersons(Graphics g, Floor floor, int personHeight,
-      int floorY, int elevatorLocation)
+  private void drawCarMovingPersons(Graphics g, BuildingSnapshot snapshot,
+      int floor, int personHeight, int floorY, int elevatorLocation)
     {
       PersonView personView = new PersonView();
-      for (Car car : building.getCars())
+      for (int car = 0; car < snapshot.getNumCars(); car++)
       {
-        if (car.getHeight() != floor.getHeight())
+        if (snapshot.getCarHeight(car) != snapshot.getFloorHeight(floor))
           continue;
-        for (Person person : car.getOccupants())
+        for (int person = 0; person < snapshot.getNumDrawnCarOccupants(car); person++)
         {
-          boolean isMoving = person.getPercentMoved() != -1;
+          int percentMoved = snapshot.getCarOccupantPercentMoved(car, person);
+          boolean isMoving = percentMoved != -1;
           if (!isMoving)
             continue;
           int floorXPosition = 20;
           int distanceToElevator = elevatorLocation - floorXPosition;
-          int distanceMoved = (int)(distanceToElevator * (100 - person.getPercentMoved()) / 100.0);
+          int distanceMoved = (int)(distanceToElevator * (100 - percentMoved) / 100.0);
           int personX = floorXPosition + distanceMoved;
           int personWidth = personHeight / 2;
           int personY = floorY - personHeight;
-          personView.initialize(person, personWidth, personHeight);
+          personView.initialize(snapshot.getCarOccupantDestination(car, person),
+            personWidth, personHeight);
           Graphics g2 = g.create(personX, personY, personWidth, personHeight);
           personView.paint(g2);
         }
       }
     }
 
-  private int drawEntrances(Graphics g, Floor floor, int ceY, int ceW, int ceH)
+  private int drawEntrances(Graphics g, BuildingSnapshot snapshot, int floor,
+    int ceY, int ceW, int ceH)
   {
     EntranceView entranceView = new EntranceView();
-    int entranceNum = 0;
-    int allEntrancesWidth = building.getNumCars() * ceW;
-    for (CarEntrance carEntrance : floor.getCarEntrances())
+    int allEntrancesWidth = snapshot.getNumCars() * ceW;
+    for (int entranceNum = 0; entranceNum < snapshot.getNumCars(); entranceNum++)
     {
-      entranceView.initialize(carEntrance, ceW, ceH);
+      entranceView.initialize(snapshot, floor, entranceNum, ceW, ceH);
       int ceX = getWidth() - allEntrancesWidth + (entranceNum * ceW);
       Graphics g2 = g.create(ceX, ceY, ceW, ceH);
       entranceView.paint(g2);
-      entranceNum++;
     }
-    return entranceNum;
+    return snapshot.getNumCars();
   }
 
-  private void drawCars(Graphics g, float pixelConv, int personHeight,
-    int carHeight, int carWidth)
+  private void drawCars(Graphics g, BuildingSnapshot snapshot, Rectangle clip,
+    float pixelConv, int personHeight, int carHeight, int carWidth)
   {
-    int carNumber = 0;
     CarView carView = new CarView();
-    int allCarsWidth = building.getNumCars() * carWidth;
-    for (Car car : building.getCars())
+    int allCarsWidth = snapshot.getNumCars() * carWidth;
+    for (int carNumber = 0; carNumber < snapshot.getNumCars(); carNumber++)
     {
-      int floorY = getHeight() - (int)(car.getHeight() * pixelConv);
+      int floorY = getHeight() - (int)(snapshot.getCarHeight(carNumber) * pixelConv);
     
       int x = getWidth() - allCarsWidth + (carNumber * carWidth);
       int y = floorY - carHeight;
+      if (!clip.intersects(x, y, carWidth, carHeight))
+        continue;
     
-      carView.initialize(car, carWidth, carHeight, personHeight);
+      carView.initialize(snapshot, carNumber, carWidth, carHeight, personHeight);
       Graphics carG = g.create(x, y, carWidth, carHeight);
       carView.paint(carG);
-      carNumber++;
     }
   }
 }
\ No newline at end of file
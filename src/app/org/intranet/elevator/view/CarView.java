@@ -9,9 +9,7 @@ import java.awt.Graphics;
 
 import javax.swing.JComponent;
 
-import org.intranet.elevator.model.Car;
-import org.intranet.elevator.model.Floor;
-import org.intranet.elevator.model.operate.Person;
+import org.intranet.elevator.model.operate.BuildingSnapshot;
 
 /**
 * @author Neil McKellar and Chris Dailey
@@ -19,7 +17,8 @@ import org.intranet.elevator.model.operate.Person;
 public class CarView
   extends JComponent
 {
-  private Car car;
+  private BuildingSnapshot snapshot;
+  private int car;
   private int personHeight;
 
   CarView()
@@ -27,8 +26,10 @@ public class CarView
     super();
   }
 
-  void initialize(Car car, int width, int height, int personHeight)
+  void initialize(BuildingSnapshot snapshot, int car, int width, int height,
+    int personHeight)
   {
+    this.snapshot = snapshot;
     this.car = car;
     this.personHeight = personHeight;
     setSize(width, height);
@@ -45,15 +46,15 @@ public class CarView
       getWidth() - margin2, getHeight() - margin2);
 
     // Draw floor requests
-    int requestNumber = 0;
-    for (Floor floor : car.getFloorRequestPanel().getRequestedFloors())
+    for (int requestNumber = 0; requestNumber < snapshot.getNumRequests(car);
+         requestNumber++)
     {
-      String floorNumber = Integer.toString(floor.getFloorNumber());
+      String floorNumber =
+        Integer.toString(snapshot.getRequestedFloorNumber(car, requestNumber));
       int numberWidth = g.getFontMetrics().stringWidth(floorNumber);
       int numberX = getWidth() - numberWidth - 2;
       int numberY =
           getHeight() - requestNumber * (g.getFontMetrics().getHeight()) - 2;
-      requestNumber++;
       g.setColor(Color.lightGray);
       g.fillRect(numberX,numberY-g.getFontMetrics().getHeight(),
                  numberWidth,g.getFontMetrics().getHeight());
@@ -61,19 +62,34 @@ public class CarView
       g.drawString(floorNumber,numberX,numberY); 
     }
 
+    // people walking in or out are drawn on the floor, not in the car
+    int standing = snapshot.getNumCarOccupants(car);
+    for (int person = 0; person < snapshot.getNumDrawnCarOccupants(car); person++)
+      if (snapshot.getCarOccupantPercentMoved(car, person) != -1)
+        standing--;
+    int personWidth = personHeight / 2;
+    int capacity = Math.min(BuildingView.CROWD_THRESHOLD,
+      (getWidth() - 8) / Math.max(1, personWidth));
+    boolean crowded = standing > capacity;
+    int slots = crowded ? Math.max(0, capacity - 1) : capacity;
+
     int personNumber = 0;
     PersonView personView = new PersonView();
-    for (Person person : car.getOccupants())
+    for (int person = 0; person < snapshot.getNumDrawnCarOccupants(car) &&
+         personNumber < slots; person++)
     {
-      if (person.getPercentMoved() != -1)
+      if (snapshot.getCarOccupantPercentMoved(car, person) != -1)
         continue;
-      int personX = 4 + personNumber * personHeight / 2;
-      int personWidth = personHeight / 2;
+      int personX = 4 + personNumber * personWidth;
       int personY = getHeight() - margin - personHeight;
-      personView.initialize(person, personWidth, personHeight);
+      personView.initialize(snapshot.getCarOccupantDestination(car, person),
+        personWidth, personHeight);
       Graphics g2 = g.create(personX, personY, personWidth, personHeight);
       personView.paint(g2);
       personNumber++;
     }
+    if (crowded)
+      BuildingView.drawCrowdCount(g, standing - personNumber,
+        4 + slots * personWidth, getHeight() - margin - 2);
   }
 }
\ No newline at end of file
@@ -9,7 +9,7 @@ import java.awt.Graphics;
 
 import javax.swing.JComponent;
 
-import org.intranet.elevator.model.CarEntrance;
+import org.intranet.elevator.model.operate.BuildingSnapshot;
 
 /**
 * @author Neil McKellar and Chris Dailey
@@ -17,10 +17,14 @@ import org.intranet.elevator.model.CarEntrance;
 public class EntranceView
   extends JComponent
 {
-  private CarEntrance entrance;
-  void initialize(CarEntrance entrance, int width, int height)
+  private BuildingSnapshot snapshot;
+  private int floor;
+  private int car;
+  void initialize(BuildingSnapshot snapshot, int floor, int car, int width, int height)
   {
-    this.entrance = entrance;
+    this.snapshot = snapshot;
+    this.floor = floor;
+    this.car = car;
     setSize(width, height);
     setOpaque(false);
   }
@@ -36,7 +40,7 @@ public class EntranceView
     int marginY = (int)(getHeight()*0.10);
     int entranceWidth = getWidth() - (marginX * 2);
     int entranceHeight = getHeight() - (marginY * 2);
-    int pctClosed = entrance.getDoor().getPercentClosed();
+    int pctClosed = snapshot.getDoorPercentClosed(floor, car);
     int doorWidth = entranceWidth * pctClosed / 200; 
     
     // Draw door entrance border
@@ -50,12 +54,12 @@ public class EntranceView
                doorWidth, entranceHeight);
     
     // Up indicator next to elevator door
-    if (entrance.isUp()) g.setColor(Color.green);
+    if (snapshot.isEntranceUp(floor, car)) g.setColor(Color.green);
     else g.setColor(Color.gray);          
     g.fillRect(0, 0, marginX, marginY/2);
 
     // Down indicator next to elevator door
-    if (entrance.isDown()) g.setColor(Color.green);
+    if (snapshot.isEntranceDown(floor, car)) g.setColor(Color.green);
     else g.setColor(Color.gray);          
     g.fillRect(0, marginY/2, marginX, marginY/2);
 
@@ -9,24 +9,22 @@ import java.awt.Graphics;
 
 import javax.swing.JComponent;
 
-import org.intranet.elevator.model.Floor;
-import org.intranet.elevator.model.operate.Person;
-
 /**
  * @author Neil McKellar and Chris Dailey
  *
  */
 class PersonView extends JComponent
 {
-  private Person person;
+  // floor number, 0 if the person has no destination
+  private int destination;
 
   public PersonView()
   {
     super();
   }
-  void initialize(Person person, int width, int height)
+  void initialize(int destination, int width, int height)
   {
-    this.person = person;
+    this.destination = destination;
     setSize(width, height);
     setOpaque(false);
   }
@@ -51,10 +49,9 @@ class PersonView extends JComponent
     int headX = getWidth()/2 - getHeight()/6;
     g.fillOval(headX, getHeight() - getHeight(), getHeight()/3, getHeight()/3);
     // draw destination
-    Floor destination = person.getDestination();
-    if (destination != null)
+    if (destination != 0)
     {
-      int floorNumber = destination.getFloorNumber();
+      int floorNumber = destination;
       int numberWidth = g.getFontMetrics().stringWidth(
         Integer.toString(floorNumber));
       int numberHeight = g.getFontMetrics().getHeight();
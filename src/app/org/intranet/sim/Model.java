@@ -7,6 +7,7 @@ package org.intranet.sim;
 import java.util.List;
 
 import org.intranet.sim.event.EventQueue;
+import org.intranet.statistics.LiveTable;
 import org.intranet.statistics.Table;
 
 /**
@@ -28,4 +29,21 @@ public abstract class Model extends ModelElement
    * @return a list of Tables
    */
   public abstract List<Table> getStatistics();
+
+  /**
+   * @return The same statistics as {@link #getStatistics()}, kept up to date
+   *         as the model runs, for a display to follow while the simulation
+   *         runs. Always the same tables for the same model.
+   */
+  public abstract List<LiveTable> getLiveStatistics();
+
+  /**
+   * Called by the Simulator, while it holds the model, after the model has
+   * been initialized and after each time the model changes. Models that are
+   * drawn while the simulation runs can take an immutable snapshot here for
+   * the view to paint from.
+   */
+  public void publishSnapshot()
+  {
+  }
 }
\ No newline at end of file
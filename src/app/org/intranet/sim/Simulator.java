@@ -4,18 +4,28 @@
  */
 package org.intranet.sim;
 
+import au.edu.rmit.agtgrp.elevatorsim.Agent;
 import au.edu.rmit.agtgrp.elevatorsim.ElsimSettings;
+import au.edu.rmit.agtgrp.elevatorsim.InProcessController;
 import au.edu.rmit.agtgrp.elevatorsim.NetworkWrapperController;
 import au.edu.rmit.agtgrp.elevatorsim.SimulatorParams;
+import au.edu.rmit.agtgrp.elevatorsim.utils.ClassLoader;
 import org.intranet.elevator.model.Floor;
 import org.intranet.elevator.model.operate.Person;
+import org.intranet.elevator.model.operate.controller.AsyncController;
+import org.intranet.elevator.model.operate.controller.AsyncControllerAdapter;
 import org.intranet.elevator.model.operate.controller.Controller;
+import org.intranet.elevator.model.operate.controller.FallbackPolicy;
 import org.intranet.elevator.model.operate.controller.MetaController;
 import org.intranet.elevator.model.operate.controller.SimpleController;
 import org.intranet.sim.clock.Clock;
 import org.intranet.sim.clock.ClockFactory;
 import org.intranet.sim.event.Event;
+import org.intranet.sim.event.EventFingerprint;
 import org.intranet.sim.event.EventQueue;
+import org.intranet.sim.event.EventStore;
+import org.intranet.sim.event.SkipListEventStore;
+import org.intranet.sim.event.TimingWheelEventStore;
 import org.intranet.ui.ChoiceParameter;
 import org.intranet.ui.LongParameter;
 import org.intranet.ui.SingleValueParameter;
@@ -23,9 +33,13 @@ import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Neil McKellar and Chris Dailey
@@ -40,6 +54,11 @@ public abstract class Simulator {
     private              List<SimulatorListener>     listeners = new ArrayList<SimulatorListener>();
     private              boolean                     ended     = false;
     private static final Logger                      LOG       = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+    // controllers that are always offered, or never if old controllers are disabled
+    private static final List<String>                BUNDLED_CONTROLLERS = Arrays.asList(
+            NetworkWrapperController.class.getName(),
+            MetaController.class.getName(),
+            SimpleController.class.getName());
 
     protected List<SingleValueParameter<?>> parameters = new ArrayList<SingleValueParameter<?>>();
     protected LongParameter                 seedParameter;
@@ -52,11 +71,16 @@ public abstract class Simulator {
                 return time;
             synchronized (getModel()) {
                 synchronized (eventQueue) {
+                    // a controller may hold time back until its client catches up
+                    long holdTime = eventQueue.getHoldTime();
+                    if (time > holdTime)
+                        time = Math.max(holdTime, eventQueue.getCurrentTime());
                     if (eventQueue.processEventsUpTo(time)) {
+                        getModel().publishSnapshot();
                         for (SimulatorListener l : listeners)
                             l.modelUpdate(time);
                     }
-                    if (eventQueue.getEventList().size() == 0 && !eventQueue.isWaitingForEvents()) {
+                    if (eventQueue.isEmpty() && !eventQueue.isWaitingForEvents()) {
                         if (clock.isRunning())
                             clock.pause();
                         // This is a critical section.  The simulator uses this condition
@@ -74,6 +98,16 @@ public abstract class Simulator {
                 return time;
             }
         }
+
+        public long getNextChangeTime(long time) {
+            synchronized (eventQueue) {
+                // a client may add events at any moment while we wait for it
+                if ((eventQueue.isWaitingForEvents() && !eventQueue.isRunningAheadWhileWaiting())
+                        || eventQueue.hasIncrementalUpdateEvents())
+                    return time;
+                return Math.max(time, Math.min(eventQueue.getNextEventTime(), eventQueue.getHoldTime()));
+            }
+        }
     };
 
     public interface SimulatorListener {
@@ -144,19 +178,53 @@ public abstract class Simulator {
         // Stop the clock, we're starting over
         if (clock != null)
             clock.dispose();
+        dispose();
 
         clockFactory = cf;
-        eventQueue = new EventQueue();
+        // the queue is kept so the model may reuse the elements built on it
+        if (eventQueue == null)
+            eventQueue = new EventQueue(createEventStore());
+        else
+            eventQueue.reset();
+        if (ElsimSettings.get().getFingerprint())
+            eventQueue.setFingerprint(new EventFingerprint());
         clock = clockFactory.createClock(cc);
         initializeModel();
+        getModel().publishSnapshot();
         initialized = true;
         ended = false;
     }
 
+    private static EventStore createEventStore() {
+        String store = ElsimSettings.get().getEventStore();
+        if (store.equals(ElsimSettings.EVENT_STORE_TIMING_WHEEL))
+            return new TimingWheelEventStore();
+        if (!store.equals(ElsimSettings.EVENT_STORE_SKIP_LIST))
+            LOG.error("Unknown event store '{}', using {}", store, ElsimSettings.EVENT_STORE_SKIP_LIST);
+        return new SkipListEventStore();
+    }
+
     public final boolean isInitialized() {
         return initialized;
     }
 
+    /**
+     * Releases whatever the model of the last run still holds, such as open
+     * files, once the run is over or abandoned. The statistics stay valid and
+     * the simulator may be initialized again.
+     */
+    public void dispose() {
+    }
+
+    /**
+     * @return Files a run reads besides its parameters, such as a trace, so
+     * results kept for the same parameters can be told apart when the files
+     * change
+     */
+    public List<File> getInputFiles() {
+        return Collections.emptyList();
+    }
+
     protected abstract void initialiseParameters();
 
     protected abstract void initializeModel();
@@ -190,6 +258,10 @@ public abstract class Simulator {
             controllers.add(new SimpleController());
         }
 
+        if (SimulatorParams.instance().isValid()) {
+            addControllersFromParams(controllers);
+        }
+
         controllerParameter = new ChoiceParameter<Controller>("Controller", controllers, controllers.get(0));
         if (SimulatorParams.instance().isValid()) {
             try {
@@ -200,4 +272,37 @@ public abstract class Simulator {
         }
         parameters.add(controllerParameter);
     }
+
+    /**
+     * Adds the controllers listed in the JSON file other than the bundled ones.
+     * Each class is a {@link Controller}, whose toString must be the name it is
+     * listed under, an {@link Agent} run in-process or an {@link AsyncController}
+     * that falls back on {@link FallbackPolicy#NEAREST}.
+     */
+    private static void addControllersFromParams(List<Controller> controllers) {
+        for (Map.Entry<String, String> entry : SimulatorParams.instance().getControllerClasses().entrySet()) {
+            if (BUNDLED_CONTROLLERS.contains(entry.getValue())) {
+                continue;
+            }
+            try {
+                controllers.add(createController(entry.getKey(), entry.getValue()));
+            } catch (IllegalStateException | IllegalArgumentException e) {
+                LOG.error("Cannot load controller {} from JSON file: {}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    private static Controller createController(String name, String className) {
+        Object instance = ClassLoader.instantiate(className, Object.class);
+        if (instance instanceof Controller) {
+            return (Controller) instance;
+        }
+        if (instance instanceof Agent) {
+            return new InProcessController(name, (Agent) instance);
+        }
+        if (instance instanceof AsyncController) {
+            return new AsyncControllerAdapter(name, (AsyncController) instance, FallbackPolicy.NEAREST);
+        }
+        throw new IllegalArgumentException(className + " is not a Controller, Agent or AsyncController");
+    }
 }
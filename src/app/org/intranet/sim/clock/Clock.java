@@ -29,6 +29,17 @@ public abstract class Clock
   public interface FeedbackListener
   {
     long timeUpdate(long time);
+
+    /**
+     * @param time The current simulation time
+     * @return The earliest simulation time after time at which anything in
+     *         the simulation may change, or time itself if something may
+     *         change at any moment
+     */
+    default long getNextChangeTime(long time)
+    {
+      return time;
+    }
   }
 
   public Clock(FeedbackListener c)
@@ -71,6 +82,14 @@ public abstract class Clock
       l.timeUpdate(simulationTime);
   }
   
+  /**
+   * @see FeedbackListener#getNextChangeTime(long)
+   */
+  protected final long getNextChangeTime()
+  {
+    return feedbackListener.getNextChangeTime(simulationTime);
+  }
+  
   public abstract void dispose();
   public abstract void start();
   public abstract void pause();
@@ -0,0 +1,51 @@
+package org.intranet.sim.clock;
+
+/**
+ * Runs the simulation as fast as possible: starting the clock processes every
+ * event up to the end time before returning, on the caller's thread.
+ */
+public class InstantClock
+  extends Clock
+{
+  public static class InstantClockFactory
+    implements ClockFactory
+  {
+    private final long endTime;
+
+    public InstantClockFactory(long endTime)
+    {
+      super();
+      this.endTime = endTime;
+    }
+
+    public Clock createClock(FeedbackListener cl)
+    {
+      return new InstantClock(cl, endTime);
+    }
+  }
+
+  private final long endTime;
+
+  public InstantClock(FeedbackListener c, long endTime)
+  {
+    super(c);
+    this.endTime = endTime;
+  }
+
+  public void dispose()
+  {
+  }
+
+  public void pause()
+  {
+    setRunningState(false);
+  }
+
+  public void start()
+  {
+    if (isRunning())
+      throw new IllegalStateException("Can't start while already running");
+    setRunningState(true);
+    setSimulationTime(endTime);
+  }
+}
@@ -4,6 +4,8 @@
  */
 package org.intranet.sim.clock;
 
+import java.util.concurrent.locks.LockSupport;
+
 /**
  * @author Neil McKellar and Chris Dailey
  *
@@ -20,10 +22,21 @@ public class RealTimeClock
     }
   }
 
+  /**
+   * Frames per second at which simulation time is advanced and shown.
+   */
+  public static final int FRAME_RATE = 60;
+  private static final long FRAME_NANOS = 1000000000L / FRAME_RATE;
+  /**
+   * Most real time a single frame may make up for. After a longer stall the
+   * lost time is dropped instead of being simulated in one leap.
+   */
+  private static final long MAX_CATCH_UP_NANOS = 250000000L;
+
   private AnimationLoop animationLoop;
   private Thread animationThread;
-  private int accelFactor;
-  private double realTime2SimTime = Math.pow(2, accelFactor);
+  private volatile int accelFactor;
+  private volatile double realTime2SimTime = Math.pow(2, accelFactor);
 
   public RealTimeClock(FeedbackListener c)
   {
@@ -71,39 +84,45 @@ public class RealTimeClock
     return accelFactor;
   }
 
+  /**
+   * Advances simulation time once per frame by the real time that passed
+   * since the previous frame, scaled by the time conversion. When nothing
+   * changes gradually until the next event, simulation time skips straight
+   * to that event instead of animating a model that stands still.
+   */
   class AnimationLoop implements Runnable
   {
-    private boolean running = true;
+    private volatile boolean running = true;
     public void run()
     {
-      // The primary concept here is that the ideal real-time intervals
-      // are always the same.  The code increments the real-time values to
-      // ensure that this is true.
-      // The secondary concept is that the simulation time is always in
-      // direct proportion to the ideal real-time intervals.
-      final long realTimeIncrement = 100; 
-      long targetRealTime = System.currentTimeMillis();
-      long simulationTime = getSimulationTime();
+      // Fractions of a millisecond are carried from frame to frame so slow
+      // time conversions do not lose time.
+      double simulationTime = getSimulationTime();
+      long lastFrame = System.nanoTime();
+      long nextFrame = lastFrame;
       while (running)
       {
-        setSimulationTime(simulationTime);
-        targetRealTime += realTimeIncrement;
-
-        long sleepTime = targetRealTime - System.currentTimeMillis();
-        if (sleepTime > 0) sleep(sleepTime);
+        setSimulationTime((long)simulationTime);
+        // the simulation may have held time back
+        if (getSimulationTime() < (long)simulationTime)
+          simulationTime = getSimulationTime();
 
-        simulationTime += (long)(realTimeIncrement * realTime2SimTime);
-      }
-      setSimulationTime(simulationTime);
-    }
+        nextFrame += FRAME_NANOS;
+        long now = System.nanoTime();
+        if (nextFrame > now)
+          LockSupport.parkNanos(nextFrame - now);
+        else if (now - nextFrame > MAX_CATCH_UP_NANOS)
+          nextFrame = now;
 
-    private void sleep(long sleepTime)
-    {
-      try {
-        Thread.sleep(sleepTime);
-      } catch (InterruptedException ie) {
-        // Ignore it and let the loop go around again
+        now = System.nanoTime();
+        long elapsed = Math.min(now - lastFrame, MAX_CATCH_UP_NANOS);
+        lastFrame = now;
+        simulationTime += elapsed / 1000000.0 * realTime2SimTime;
+        long nextChange = getNextChangeTime();
+        if (nextChange > simulationTime)
+          simulationTime = nextChange;
       }
+      setSimulationTime((long)simulationTime);
     }
 
     public void stop()
@@ -52,6 +52,17 @@ public abstract class Event implements Transmittable
   {
     return time;
   }
+
+  /**
+   * Moves the event to a new time, ordered after every event created so far
+   * that occurs at the same time. Only called by the EventQueue while the
+   * event is out of its queue.
+   */
+  void reschedule(long newTime)
+  {
+    time = newTime;
+    id = getNextId();
+  }
   
   public abstract void perform();
   
@@ -0,0 +1,100 @@
+package org.intranet.sim.event;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Rolling 64-bit FNV-1a hash of every event an {@link EventQueue} processes:
+ * its time, name and description. Two runs with the same fingerprint
+ * processed the same events in the same order, so a change to the engine
+ * that keeps the fingerprints of a set of runs has not changed their
+ * behaviour, including who boards which car.
+ * <p>
+ * Descriptions are hashed with the keys of every object in sorted order, so
+ * the fingerprint does not depend on the iteration order of JSONObject.
+ * Event ids are left out, as they depend on how many events were created
+ * before the run started.
+ */
+public final class EventFingerprint {
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME        = 0x100000001b3L;
+
+    private long hash = OFFSET_BASIS;
+    private long eventCount;
+
+    void add(Event event) {
+        addLong(event.getTime());
+        addString(event.getName());
+        addValue(event.getDescription());
+        eventCount++;
+    }
+
+    private void addByte(int b) {
+        hash ^= b & 0xff;
+        hash *= PRIME;
+    }
+
+    private void addLong(long value) {
+        for (int shift = 56; shift >= 0; shift -= 8)
+            addByte((int) (value >>> shift));
+    }
+
+    private void addString(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            addByte(c >>> 8);
+            addByte(c);
+        }
+        // terminates the string, so "ab" + "c" differs from "a" + "bc"
+        addByte(0);
+        addByte(0);
+    }
+
+    private void addValue(Object value) {
+        if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            List<String> keys = new ArrayList<String>(object.keySet());
+            Collections.sort(keys);
+            addByte('{');
+            for (String key : keys) {
+                addString(key);
+                addValue(object.get(key));
+            }
+            addByte('}');
+        } else if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            addByte('[');
+            for (int i = 0; i < array.length(); i++)
+                addValue(array.get(i));
+            addByte(']');
+        } else if (value == null || value == JSONObject.NULL) {
+            addByte('n');
+        } else {
+            addByte('v');
+            addString(value.toString());
+        }
+    }
+
+    public long getValue() {
+        return hash;
+    }
+
+    /**
+     * @return Number of events folded into the fingerprint
+     */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * @return The fingerprint as 16 hexadecimal digits
+     */
+    @Override
+    public String toString() {
+        return String.format("%016x", hash);
+    }
+}
@@ -8,9 +8,11 @@ import org.slf4j.LoggerFactory;
 
 import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.SortedSet;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Predicate;
 
 /**
  * @author Neil McKellar and Chris Dailey
@@ -24,8 +26,14 @@ public final class EventQueue {
     private long lastEventProcessTime;
 
     private boolean waitingForEvents = false;
+    // whether the simulation skips ahead to the next event while waiting
+    private boolean runAheadWhileWaiting = false;
+    // the simulation does not advance past this time
+    private long holdTime = Long.MAX_VALUE;
 
-    private SortedSet<Event> eventSet =
+    private final EventStore eventSet;
+    // the pending IncrementalUpdateEvents, which are updated whenever time advances
+    private final SortedSet<Event> incrementalEvents =
             new ConcurrentSkipListSet<Event>(new Event.EventTimeComparator());
 
     public interface Listener {
@@ -38,41 +46,186 @@ public final class EventQueue {
         void eventProcessed(Event e);
 
         void simulationEnded();
+
+        /**
+         * Called once for all events added by {@link #addAll}.
+         */
+        default void eventsAdded(List<Event> events) {
+            for (Event event : events)
+                eventAdded(event);
+        }
+
+        /**
+         * Called once for all events removed by {@link #removeIf}.
+         */
+        default void eventsRemoved(List<Event> events) {
+            for (Event event : events)
+                eventRemoved(event);
+        }
+
+        /**
+         * Called at the end of every {@link #processEventsUpTo}, after
+         * eventProcessed was called for every event it processed.
+         */
+        default void eventsProcessedUpTo(long time) {
+        }
+
+        /**
+         * Called when a pending event is moved by {@link #reschedule}.
+         */
+        default void eventRescheduled(Event e, long oldTime) {
+            eventRemoved(e);
+            eventAdded(e);
+        }
     }
 
     private List<Listener> listeners = new ArrayList<Listener>();
+    private EventFingerprint fingerprint;
+
+    public EventQueue() {
+        this(new SkipListEventStore());
+    }
+
+    /**
+     * @param store Empty store to keep the pending events in
+     */
+    public EventQueue(EventStore store) {
+        eventSet = store;
+    }
 
     public synchronized void addEvent(Event event) {
-//System.out.println("EventQueue event at currentTime=" + currentTime +
-// " for time="+event.getTime()+ ", class="+event.getClass().getName());
-        if (event.getTime() < lastTime) {
+        checkTime(event.getTime());
+        if (!eventSet.add(event))
+            throw new IllegalArgumentException("Cannot re-add an Event to the queue!");
+        if (event instanceof IncrementalUpdateEvent)
+            incrementalEvents.add(event);
+
+        for (Listener listener : listeners)
+            listener.eventAdded(event);
+    }
+
+    /**
+     * Adds all of the events, or none of them if any is invalid.
+     *
+     * @throws IllegalArgumentException if an event is already queued or
+     *         occurs before the current time
+     */
+    public synchronized void addAll(Collection<? extends Event> events) {
+        List<Event> added = new ArrayList<Event>(events);
+        for (Event event : added) {
+            checkTime(event.getTime());
+            if (eventSet.contains(event))
+                throw new IllegalArgumentException("Cannot re-add an Event to the queue!");
+        }
+        for (Event event : added) {
+            eventSet.add(event);
+            if (event instanceof IncrementalUpdateEvent)
+                incrementalEvents.add(event);
+        }
+
+        for (Listener listener : listeners)
+            listener.eventsAdded(added);
+    }
+
+    private void checkTime(long time) {
+        if (time < lastTime) {
             throw new IllegalArgumentException(
                     "Event occurs *before* the last time we processed: " +
-                            event.getTime() + " < " + lastTime);
+                            time + " < " + lastTime);
         }
-        if ((currentTime != -1) && (event.getTime() < currentTime)) {
+        if ((currentTime != -1) && (time < currentTime)) {
             throw new IllegalArgumentException(
                     "Event occurs *before* the current time: " +
-                            event.getTime() + " < " + currentTime);
+                            time + " < " + currentTime);
         }
-        if (eventSet.contains(event))
-            throw new IllegalArgumentException("Cannot re-add an Event to the queue!");
-        eventSet.add(event);
-
-        for (Listener listener : listeners)
-            listener.eventAdded(event);
     }
 
     public synchronized void removeEvent(Event event) {
-        if (!eventSet.contains(event))
+        if (!eventSet.remove(event))
             throw new IllegalArgumentException("Cannot remove an Event that is not in the queue!");
-        eventSet.remove(event);
+        if (event instanceof IncrementalUpdateEvent)
+            incrementalEvents.remove(event);
         for (Listener listener : listeners)
             listener.eventRemoved(event);
     }
 
+    /**
+     * Removes every pending event that matches the filter.
+     *
+     * @return True if any event was removed
+     */
+    public synchronized boolean removeIf(Predicate<? super Event> filter) {
+        List<Event> removed = new ArrayList<Event>();
+        for (Event event : eventSet.first(Integer.MAX_VALUE)) {
+            if (filter.test(event)) {
+                eventSet.remove(event);
+                if (event instanceof IncrementalUpdateEvent)
+                    incrementalEvents.remove(event);
+                removed.add(event);
+            }
+        }
+        if (removed.isEmpty())
+            return false;
+
+        for (Listener listener : listeners)
+            listener.eventsRemoved(removed);
+        return true;
+    }
+
+    /**
+     * Moves a pending event to another time. Among events at the new time it
+     * is ordered as if it had just been added.
+     *
+     * @throws IllegalArgumentException if the event is not queued or the new
+     *         time is before the current time
+     */
+    public synchronized void reschedule(Event event, long newTime) {
+        checkTime(newTime);
+        if (!eventSet.remove(event))
+            throw new IllegalArgumentException("Cannot reschedule an Event that is not in the queue!");
+        boolean incremental = incrementalEvents.remove(event);
+        long oldTime = event.getTime();
+        event.reschedule(newTime);
+        eventSet.add(event);
+        if (incremental)
+            incrementalEvents.add(event);
+
+        for (Listener listener : listeners)
+            listener.eventRescheduled(event, oldTime);
+    }
+
+    /**
+     * @return True if no events are pending
+     */
+    public synchronized boolean isEmpty() {
+        return eventSet.isEmpty();
+    }
+
     public synchronized List<Event> getEventList() {
-        return new ArrayList<Event>(eventSet);
+        return eventSet.first(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param max Maximum number of events to return
+     * @return A copy of the first (earliest) pending events, in order
+     */
+    public synchronized List<Event> getFirstEvents(int max) {
+        return eventSet.first(max);
+    }
+
+    /**
+     * @return Time of the earliest pending event, or -1 if there is none
+     */
+    public synchronized long getNextEventTime() {
+        return eventSet.isEmpty() ? -1 : eventSet.first().getTime();
+    }
+
+    /**
+     * @return True if a pending event changes the model gradually until it
+     *         is performed
+     */
+    public synchronized boolean hasIncrementalUpdateEvents() {
+        return !incrementalEvents.isEmpty();
     }
 
     /**
@@ -91,10 +244,10 @@ public final class EventQueue {
 
         int numEventsProcessed = 0;
         do {
-            if (eventSet.size() == 0) break;  // can't process events if there aren't any
+            if (eventSet.isEmpty()) break;  // can't process events if there aren't any
             Event currentEvent = eventSet.first();
             LOG.debug("Processing event[{}]", currentEvent.getId());
-            // Since eventSet is ordered, and we're only interested in processing events
+            // Since events are ordered, and we're only interested in processing events
             // up to 'time', if we find an event after 'time' then we stop processing
             // the Set.
             if (currentEvent.getTime() > time) break;
@@ -102,6 +255,7 @@ public final class EventQueue {
             removeEvent(currentEvent);
             long oldCurrentTime = currentTime;
             currentTime = currentEvent.getTime();
+            eventSet.advanceTo(currentTime);
             try {
                 // If the time has progressed, we must update the TrackingUpdateEvents
                 // so further calculations in Event.perform() are based on up-to-date
@@ -111,6 +265,8 @@ public final class EventQueue {
 
                 lastEventProcessTime = currentTime;
                 currentEvent.perform();
+                if (fingerprint != null)
+                    fingerprint.add(currentEvent);
                 for (Listener listener : listeners) {
                     listener.eventProcessed(currentEvent);
                 }
@@ -122,9 +278,13 @@ public final class EventQueue {
                     l.eventError(e);
             }
         } while (true);
+        for (Listener listener : listeners) {
+            listener.eventsProcessedUpTo(time);
+        }
         currentTime = time;
+        eventSet.advanceTo(currentTime);
         numEventsProcessed += updateEventProgress();
-        lastTime = eventSet.size() == 0 ? lastEventProcessTime : time;
+        lastTime = eventSet.isEmpty() ? lastEventProcessTime : time;
 
         return (numEventsProcessed != 0);
     }
@@ -132,20 +292,36 @@ public final class EventQueue {
     private synchronized int updateEventProgress() {
         int numEventsProcessed = 0;
         // Update any events that have incremental progress between states
-        for (Event evt : eventSet) {
-            if (evt instanceof IncrementalUpdateEvent) {
-                IncrementalUpdateEvent updateEvent = (IncrementalUpdateEvent) evt;
-                try {
-                    updateEvent.updateTime();
-                    numEventsProcessed++;
-                } catch (Exception ex) {
-                    ex.printStackTrace();
-                }
+        for (Event evt : incrementalEvents) {
+            IncrementalUpdateEvent updateEvent = (IncrementalUpdateEvent) evt;
+            try {
+                updateEvent.updateTime();
+                numEventsProcessed++;
+            } catch (Exception ex) {
+                ex.printStackTrace();
             }
         }
         return numEventsProcessed;
     }
 
+    /**
+     * Returns the queue to the state of a new queue so it can be used for
+     * another run of the same model. Pending events, all listeners and the
+     * fingerprint are dropped without notification.
+     */
+    public synchronized void reset() {
+        eventSet.clear();
+        incrementalEvents.clear();
+        listeners.clear();
+        fingerprint = null;
+        currentTime = -1;
+        lastTime = -1;
+        lastEventProcessTime = 0;
+        waitingForEvents = false;
+        runAheadWhileWaiting = false;
+        holdTime = Long.MAX_VALUE;
+    }
+
     public synchronized void addListener(Listener listener) {
         listeners.add(listener);
     }
@@ -162,7 +338,25 @@ public final class EventQueue {
         return lastEventProcessTime;
     }
 
+    /**
+     * Starts folding every event processed from now on into the fingerprint.
+     * The fingerprint is dropped by {@link #reset()}.
+     */
+    public synchronized void setFingerprint(EventFingerprint fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * @return The fingerprint of the events processed, or null if the queue
+     *         is not fingerprinting them
+     */
+    public synchronized EventFingerprint getFingerprint() {
+        return fingerprint;
+    }
+
     public synchronized void end() {
+        if (fingerprint != null)
+            LOG.info("Event fingerprint {} over {} events", fingerprint, fingerprint.getEventCount());
         for (Listener l : listeners) {
             l.simulationEnded();
         }
@@ -179,4 +373,31 @@ public final class EventQueue {
     public synchronized boolean isWaitingForEvents() {
         return this.waitingForEvents;
     }
+
+    /**
+     * @param runAhead True to let the simulation skip ahead to the next
+     *                 event even while waiting for events
+     */
+    public synchronized void setRunAheadWhileWaiting(boolean runAhead) {
+        this.runAheadWhileWaiting = runAhead;
+    }
+
+    public synchronized boolean isRunningAheadWhileWaiting() {
+        return runAheadWhileWaiting;
+    }
+
+    /**
+     * Stops simulation time from advancing past the given time, until it
+     * is set again. Events already added may still be processed up to it.
+     *
+     * @param time The latest time to process events up to, Long.MAX_VALUE
+     *             to let the simulation run freely
+     */
+    public synchronized void setHoldTime(long time) {
+        this.holdTime = time;
+    }
+
+    public synchronized long getHoldTime() {
+        return holdTime;
+    }
 }
@@ -0,0 +1,47 @@
+package org.intranet.sim.event;
+
+import java.util.List;
+
+/**
+ * The pending events of an {@link EventQueue}, ordered by time and then by
+ * id as {@link Event.EventTimeComparator} does. Events are identified by
+ * time and id. A store is only used by its queue while the queue holds its
+ * own lock.
+ */
+public interface EventStore {
+    /**
+     * @return False if the event is already stored
+     */
+    boolean add(Event event);
+
+    /**
+     * @return False if the event is not stored
+     */
+    boolean remove(Event event);
+
+    boolean contains(Event event);
+
+    /**
+     * @return The earliest event, or null if the store is empty
+     */
+    Event first();
+
+    /**
+     * @param max Maximum number of events to return
+     * @return A copy of the earliest events, in order
+     */
+    List<Event> first(int max);
+
+    int size();
+
+    boolean isEmpty();
+
+    void clear();
+
+    /**
+     * Tells the store that no event earlier than time is pending, and none
+     * will be added unless the queue goes back in time.
+     */
+    default void advanceTo(long time) {
+    }
+}
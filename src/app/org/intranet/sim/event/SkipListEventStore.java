@@ -0,0 +1,53 @@
+package org.intranet.sim.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Keeps events in a skip list. Every operation costs O(log n) comparisons,
+ * except size() which counts the events.
+ */
+public final class SkipListEventStore implements EventStore {
+    private final NavigableSet<Event> events =
+            new ConcurrentSkipListSet<Event>(new Event.EventTimeComparator());
+
+    public boolean add(Event event) {
+        return events.add(event);
+    }
+
+    public boolean remove(Event event) {
+        return events.remove(event);
+    }
+
+    public boolean contains(Event event) {
+        return events.contains(event);
+    }
+
+    public Event first() {
+        return events.isEmpty() ? null : events.first();
+    }
+
+    public List<Event> first(int max) {
+        List<Event> first = new ArrayList<Event>(Math.min(max, events.size()));
+        for (Event event : events) {
+            if (first.size() == max)
+                break;
+            first.add(event);
+        }
+        return first;
+    }
+
+    public int size() {
+        return events.size();
+    }
+
+    public boolean isEmpty() {
+        return events.isEmpty();
+    }
+
+    public void clear() {
+        events.clear();
+    }
+}
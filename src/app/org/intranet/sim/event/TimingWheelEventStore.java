@@ -0,0 +1,204 @@
+package org.intranet.sim.event;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Keeps the events of the next {@link #SLOTS} milliseconds in a wheel with
+ * one slot per millisecond, and later events in an ordered overflow set.
+ * <p>
+ * Event times cluster heavily: percepts occur at the current time and door
+ * and boarding events a fixed number of seconds later, so most events land
+ * in a slot that already has events of the same time. Within a slot events
+ * are kept in order of id, and new events have the highest id so far, so
+ * adding one is usually an append. A bitmap of the occupied slots finds the
+ * earliest event without visiting empty slots. As the queue advances, events
+ * move from the overflow set to the wheel once they are within its range.
+ */
+public final class TimingWheelEventStore implements EventStore {
+    public static final int SLOTS = 1 << 13;
+    private static final int MASK = SLOTS - 1;
+
+    private final List<Event>[] wheel    = newWheel();
+    private final long[]        occupied = new long[SLOTS / Long.SIZE];
+    private final TreeSet<Event> overflow = new TreeSet<Event>(new Event.EventTimeComparator());
+    // the wheel holds the events from base up to base + SLOTS (exclusive)
+    private long base;
+    private int  wheelSize;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static List<Event>[] newWheel() {
+        return new List[SLOTS];
+    }
+
+    public boolean add(Event event) {
+        long time = event.getTime();
+        if (time < base)
+            rebase(time);
+        if (time - base >= SLOTS)
+            return overflow.add(event);
+        return insert(event);
+    }
+
+    private boolean insert(Event event) {
+        int slot = (int) (event.getTime() & MASK);
+        List<Event> bucket = wheel[slot];
+        if (bucket == null)
+            bucket = wheel[slot] = new ArrayList<Event>(4);
+        int index = indexOf(bucket, event.getId());
+        if (index >= 0)
+            return false;
+        bucket.add(-index - 1, event);
+        occupied[slot >>> 6] |= 1L << slot;
+        wheelSize++;
+        return true;
+    }
+
+    /**
+     * @return Index of the event with the id, or (-(insertion point) - 1)
+     */
+    private static int indexOf(List<Event> bucket, long id) {
+        int size = bucket.size();
+        // new events have the highest id so far
+        if (size == 0 || bucket.get(size - 1).getId() < id)
+            return -size - 1;
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midId = bucket.get(mid).getId();
+            if (midId < id)
+                low = mid + 1;
+            else if (midId > id)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -low - 1;
+    }
+
+    public boolean remove(Event event) {
+        long time = event.getTime();
+        if (time < base)
+            return false;
+        if (time - base >= SLOTS)
+            return overflow.remove(event);
+        int slot = (int) (time & MASK);
+        List<Event> bucket = wheel[slot];
+        if (bucket == null)
+            return false;
+        int index = indexOf(bucket, event.getId());
+        if (index < 0)
+            return false;
+        bucket.remove(index);
+        if (bucket.isEmpty())
+            occupied[slot >>> 6] &= ~(1L << slot);
+        wheelSize--;
+        return true;
+    }
+
+    public boolean contains(Event event) {
+        long time = event.getTime();
+        if (time < base)
+            return false;
+        if (time - base >= SLOTS)
+            return overflow.contains(event);
+        List<Event> bucket = wheel[(int) (time & MASK)];
+        return bucket != null && indexOf(bucket, event.getId()) >= 0;
+    }
+
+    public Event first() {
+        if (wheelSize > 0)
+            return wheel[firstOccupiedSlot()].get(0);
+        return overflow.isEmpty() ? null : overflow.first();
+    }
+
+    /**
+     * Slots are in time order going round the wheel from the slot of base.
+     *
+     * @return The first occupied slot, or -1 if the wheel is empty
+     */
+    private int firstOccupiedSlot() {
+        int start = (int) (base & MASK);
+        int word = start >>> 6;
+        long bits = occupied[word] & (-1L << start);
+        // the start word is visited again at the end for the slots before start
+        for (int i = 0; i <= occupied.length; i++) {
+            if (bits != 0)
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            word = (word + 1) % occupied.length;
+            bits = occupied[word];
+        }
+        return -1;
+    }
+
+    public List<Event> first(int max) {
+        List<Event> first = new ArrayList<Event>(Math.min(max, size()));
+        int start = (int) (base & MASK);
+        int unseen = wheelSize;
+        for (int i = 0; unseen > 0 && first.size() < max; i++) {
+            List<Event> bucket = wheel[(start + i) & MASK];
+            if (bucket == null)
+                continue;
+            unseen -= bucket.size();
+            for (int j = 0; j < bucket.size() && first.size() < max; j++)
+                first.add(bucket.get(j));
+        }
+        for (Event event : overflow) {
+            if (first.size() == max)
+                break;
+            first.add(event);
+        }
+        return first;
+    }
+
+    public int size() {
+        return wheelSize + overflow.size();
+    }
+
+    public boolean isEmpty() {
+        return wheelSize == 0 && overflow.isEmpty();
+    }
+
+    public void clear() {
+        for (List<Event> bucket : wheel)
+            if (bucket != null)
+                bucket.clear();
+        Arrays.fill(occupied, 0);
+        overflow.clear();
+        base = 0;
+        wheelSize = 0;
+    }
+
+    public void advanceTo(long time) {
+        Event first = first();
+        if (first != null && first.getTime() < time)
+            time = first.getTime();
+        if (time <= base)
+            return;
+        // the slots of the times left behind are empty, and are reused for
+        // the times the wheel now reaches
+        base = time;
+        while (!overflow.isEmpty() && overflow.first().getTime() - base < SLOTS)
+            insert(overflow.pollFirst());
+    }
+
+    /**
+     * Moves the wheel back to start at time. Events that are then out of its
+     * range go to the overflow set.
+     */
+    private void rebase(long time) {
+        base = time;
+        for (int slot = 0; slot < SLOTS && wheelSize > 0; slot++) {
+            List<Event> bucket = wheel[slot];
+            if (bucket == null || bucket.isEmpty() || bucket.get(0).getTime() - base < SLOTS)
+                continue;
+            overflow.addAll(bucket);
+            wheelSize -= bucket.size();
+            bucket.clear();
+            occupied[slot >>> 6] &= ~(1L << slot);
+        }
+    }
+}
@@ -28,6 +28,17 @@ public abstract class TrackingUpdateEvent
     distance = end - begin;
   }
   
+  /**
+   * Starts tracking again from the given value towards a new end value. The
+   * event must be rescheduled to the time the end value is reached.
+   */
+  protected final void track(long beginTime, float begin, float end)
+  {
+    this.beginTime = beginTime;
+    beginValue = begin;
+    distance = end - begin;
+  }
+
   private float percentDone(long time)
   {
     return (float)(time - beginTime) / (getTime() - beginTime);
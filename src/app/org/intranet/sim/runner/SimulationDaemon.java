@@ -0,0 +1,142 @@
+package org.intranet.sim.runner;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Long-lived headless server that runs {@link SimulationJob}s on a pool of
+ * worker threads, so JVM startup and JIT warm-up are paid once for many runs.
+ * <p>
+ * Jobs are read one JSON object per line, from stdin or from connections to a
+ * local port. For every job one JSON result line is written back as soon as
+ * the job finishes, so results may come back in a different order than the
+ * jobs were sent; match them up by {@code id}. A job that fails produces
+ * {@code {"id": ..., "status": "error", "message": ...}}.
+ */
+public class SimulationDaemon {
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+
+    private final ExecutorService workers;
+
+    public SimulationDaemon(int numWorkers) {
+        workers = Executors.newFixedThreadPool(numWorkers, runnable -> {
+            Thread worker = new Thread(runnable, "simulation-worker");
+            worker.setDaemon(true);
+            return worker;
+        });
+        LOG.info("Simulation daemon started with {} workers", numWorkers);
+    }
+
+    /**
+     * Runs every job read from in, writing results to out. Returns once the
+     * input has ended and every job read from it has finished.
+     */
+    public void serve(InputStream in, OutputStream out) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        List<Future<?>> pending = new ArrayList<>();
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty())
+                continue;
+            String defaultId = Long.toString(lineNumber);
+            SimulationJob job;
+            try {
+                job = new SimulationJob(new JSONObject(line), defaultId);
+            } catch (JSONException e) {
+                write(writer, error(defaultId, "Invalid job: " + e.getMessage()));
+                continue;
+            }
+            pending.add(workers.submit(() -> write(writer, run(job))));
+        }
+        for (Future<?> future : pending) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                LOG.error("Could not write result: {}", e.getCause().getMessage());
+            }
+        }
+    }
+
+    /**
+     * Accepts connections on the loopback interface forever, serving each
+     * connection on its own thread. All connections share the worker pool.
+     */
+    public void listen(int port) throws IOException {
+        try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            LOG.info("Simulation daemon listening on port {}", server.getLocalPort());
+            while (true) {
+                Socket socket = server.accept();
+                new Thread(() -> {
+                    try (Socket connection = socket) {
+                        serve(connection.getInputStream(), connection.getOutputStream());
+                    } catch (IOException e) {
+                        LOG.error("Connection from {} failed: {}", socket.getRemoteSocketAddress(), e.getMessage());
+                    }
+                }, "simulation-connection").start();
+            }
+        }
+    }
+
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    private static JSONObject run(SimulationJob job) {
+        try {
+            return job.run();
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Job {} failed: {}", job.getId(), e.getMessage());
+            return error(job.getId(), e.getMessage());
+        } catch (Error e) {
+            // e.g. a controller ran out of memory; nothing run in this JVM can be trusted now
+            LOG.error("Job {} failed, stopping the daemon: {}", job.getId(), e);
+            Runtime.getRuntime().halt(1);
+            throw e;
+        }
+    }
+
+    private static JSONObject error(String id, String message) {
+        JSONObject result = new JSONObject();
+        result.put("id", id);
+        result.put("status", "error");
+        result.put("message", String.valueOf(message));
+        return result;
+    }
+
+    private static void write(PrintWriter writer, JSONObject result) {
+        synchronized (writer) {
+            writer.println(result.toString());
+            writer.flush();
+            if (writer.checkError())
+                throw new UncheckedIOException(new IOException("Cannot write result " + result.getString("id")));
+        }
+    }
+}
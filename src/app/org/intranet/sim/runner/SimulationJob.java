@@ -0,0 +1,255 @@
+package org.intranet.sim.runner;
+
+import au.edu.rmit.agtgrp.elevatorsim.StatsFile;
+import au.edu.rmit.agtgrp.elevatorsim.utils.ClassLoader;
+import org.intranet.sim.Simulator;
+import org.intranet.sim.clock.InstantClock;
+import org.intranet.sim.event.Event;
+import org.intranet.sim.event.EventFingerprint;
+import org.intranet.sim.event.EventQueue;
+import org.intranet.statistics.Column;
+import org.intranet.statistics.ColumnSummary;
+import org.intranet.statistics.StatisticsSummary;
+import org.intranet.statistics.Table;
+import org.intranet.ui.SingleValueParameter;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One headless simulation run, described by a JSON object:
+ * <pre>
+ * {"id": "run-1",
+ *  "simulator": "org.intranet.elevator.RandomElevatorSimulator",
+ *  "params": {"Number of People": 300},
+ *  "seed": 42,
+ *  "controller": "Default MetaController",
+ *  "output": "stats.csv"}
+ * </pre>
+ * Only {@code simulator} is required. Parameters are named by their
+ * description, as shown in the GUI. {@code seed} sets the "Random seed"
+ * parameter. When {@code output} is given a row is appended to that CSV file
+ * in the same format as the {@code -f} option. The simulation runs as fast as
+ * possible until it ends or {@code endTime} (ms of simulated time) is reached.
+ * When {@code fingerprint} is true, or the {@code fingerprint} setting is on,
+ * the result holds the {@link EventFingerprint} of the run and the number of
+ * events it covers.
+ * <p>
+ * Besides the average of every statistics column, the result holds a
+ * {@code summary} of every column, from which {@link #summaryFromJson}
+ * recreates the run's {@link StatisticsSummary}.
+ * <p>
+ * Each thread keeps the simulator of the last job for every simulator class
+ * and reuses it for the next job of that class, with its parameters set back
+ * to their defaults first. Jobs in a building of the same shape then reuse
+ * the floors, cars and doors of the previous run instead of building them
+ * again.
+ */
+public class SimulationJob {
+    public static final long   DEFAULT_END_TIME = 99000000;
+    public static final String SEED_PARAMETER   = "Random seed";
+
+    private static final ThreadLocal<Map<String, PooledSimulator>> POOL = ThreadLocal.withInitial(HashMap::new);
+
+    private final String     id;
+    private final String     simulatorClass;
+    private final JSONObject params;
+    private final Long       seed;
+    private final String     controller;
+    private final File       output;
+    private final long       endTime;
+    private final boolean    fingerprint;
+
+    /**
+     * @param json job description
+     * @param defaultId id to use if the description has none
+     * @throws org.json.JSONException if a field has the wrong type or simulator is missing
+     */
+    public SimulationJob(JSONObject json, String defaultId) {
+        id = json.optString("id", defaultId);
+        simulatorClass = json.getString("simulator");
+        params = json.has("params") ? json.getJSONObject("params") : new JSONObject();
+        seed = json.has("seed") ? json.getLong("seed") : null;
+        controller = json.has("controller") ? json.getString("controller") : null;
+        output = json.has("output") ? new File(json.getString("output")) : null;
+        endTime = json.optLong("endTime", DEFAULT_END_TIME);
+        fingerprint = json.optBoolean("fingerprint", false);
+    }
+
+    /**
+     * A simulator kept between jobs along with the values its parameters had
+     * when it was created.
+     */
+    private static final class PooledSimulator {
+        private final Simulator    simulator;
+        private final List<Object> defaults = new ArrayList<>();
+
+        private PooledSimulator(Simulator simulator) {
+            this.simulator = simulator;
+            for (SingleValueParameter<?> parameter : simulator.getParameters())
+                defaults.add(parameter.getValue());
+        }
+
+        @SuppressWarnings("unchecked")
+        private Simulator restoreDefaults() {
+            List<SingleValueParameter<?>> parameters = simulator.getParameters();
+            for (int i = 0; i < parameters.size(); i++)
+                ((SingleValueParameter<Object>) parameters.get(i)).setValue(defaults.get(i));
+            return simulator;
+        }
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Runs the simulation to the end on the calling thread.
+     *
+     * @return result row with the average of every statistics column
+     * @throws IllegalArgumentException if the job names an unknown parameter or value
+     * @throws IllegalStateException    if the simulation fails
+     */
+    public JSONObject run() throws IOException {
+        long start = System.nanoTime();
+        Map<String, PooledSimulator> pool = POOL.get();
+        PooledSimulator pooled = pool.remove(simulatorClass);
+        Simulator simulator = pooled == null ?
+                ClassLoader.instantiate(simulatorClass, Simulator.class) : pooled.restoreDefaults();
+        if (pooled == null)
+            pooled = new PooledSimulator(simulator);
+        for (String key : params.keySet())
+            getParameter(simulator, key).setValueFromString(String.valueOf(params.get(key)));
+        if (seed != null)
+            getParameter(simulator, SEED_PARAMETER).setValueFromString(seed.toString());
+        if (controller != null)
+            getParameter(simulator, "Controller").setValueFromString(controller);
+
+        Exception[] error = new Exception[1];
+        try {
+            simulator.initialize(new InstantClock.InstantClockFactory(endTime));
+            if (fingerprint && simulator.getEventQueue().getFingerprint() == null)
+                simulator.getEventQueue().setFingerprint(new EventFingerprint());
+            simulator.getEventQueue().addListener(new EventQueue.Listener() {
+                public void eventAdded(Event e) {}
+                public void eventRemoved(Event e) {}
+                public void eventProcessed(Event e) {}
+                public void simulationEnded() {}
+
+                public void eventError(Exception ex) {
+                    if (error[0] == null)
+                        error[0] = ex;
+                }
+            });
+            simulator.getClock().start();
+        } finally {
+            simulator.getController().close();
+            simulator.dispose();
+        }
+        if (error[0] != null)
+            throw new IllegalStateException("Simulation failed: " + error[0], error[0]);
+        // only simulators that ran cleanly are reused
+        pool.put(simulatorClass, pooled);
+
+        List<Table> statistics = simulator.getModel().getStatistics();
+        long runSeed = getSeed(simulator);
+        EventFingerprint runFingerprint = simulator.getEventQueue().getFingerprint();
+        if (output != null) {
+            // jobs of one daemon may share an output file
+            synchronized (SimulationJob.class) {
+                StatsFile.append(output, id, runSeed, 0, runFingerprint, statistics);
+            }
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("id", id);
+        result.put("status", "ok");
+        result.put("simulator", simulatorClass);
+        result.put("seed", runSeed);
+        result.put("completed", !simulator.getClock().isRunning());
+        result.put("simulationTime", simulator.getClock().getSimulationTime());
+        result.put("elapsedMillis", (System.nanoTime() - start) / 1000000);
+        if (runFingerprint != null) {
+            result.put("fingerprint", runFingerprint.toString());
+            result.put("events", runFingerprint.getEventCount());
+        }
+        JSONObject tables = new JSONObject();
+        for (Table table : statistics) {
+            JSONObject averages = new JSONObject();
+            for (int i = 0; i < table.getColumnCount(); i++) {
+                Column column = table.getColumn(i);
+                averages.put(column.getHeading(), valueOrNull(column.getValueCount(), column.getAverage()));
+            }
+            tables.put(table.getName(), averages);
+        }
+        result.put("statistics", tables);
+        result.put("summary", toJson(StatisticsSummary.summarize(statistics)));
+        return result;
+    }
+
+    /**
+     * @return One object per column, with everything needed to recreate the
+     * summary. The average, min and max of a column without values, such as
+     * one of a run where nobody was delivered, are null
+     */
+    static JSONArray toJson(StatisticsSummary summary) {
+        JSONArray columns = new JSONArray();
+        for (ColumnSummary column : summary.getColumns()) {
+            JSONObject json = new JSONObject();
+            json.put("table", column.getTableName());
+            json.put("heading", column.getHeading());
+            json.put("count", column.getCount());
+            json.put("total", column.getTotal());
+            json.put("sumOfSquares", column.getSumOfSquares());
+            json.put("average", valueOrNull(column.getCount(), column.getAverage()));
+            json.put("min", valueOrNull(column.getCount(), column.getMin()));
+            json.put("max", valueOrNull(column.getCount(), column.getMax()));
+            columns.put(json);
+        }
+        return columns;
+    }
+
+    static StatisticsSummary summaryFromJson(JSONArray columns) {
+        List<ColumnSummary> summaries = new ArrayList<>(columns.length());
+        for (int i = 0; i < columns.length(); i++) {
+            JSONObject json = columns.getJSONObject(i);
+            summaries.add(ColumnSummary.of(json.getString("table"), json.getString("heading"),
+                    json.getInt("count"), json.getDouble("total"), json.getDouble("sumOfSquares"),
+                    valueFromJson(json, "average"), valueFromJson(json, "min"), valueFromJson(json, "max")));
+        }
+        return StatisticsSummary.of(summaries);
+    }
+
+    /**
+     * @return The value, or null for a column without values, whose average
+     * is NaN, which JSON cannot hold
+     */
+    private static Object valueOrNull(int count, Number value) {
+        return count == 0 ? JSONObject.NULL : value;
+    }
+
+    /**
+     * @return The value, or NaN for null, as an empty column's average is
+     */
+    private static Number valueFromJson(JSONObject json, String key) {
+        return json.isNull(key) ? Float.valueOf(Float.NaN) : (Number) json.get(key);
+    }
+
+    private static SingleValueParameter<?> getParameter(Simulator simulator, String description) {
+        SingleValueParameter<?> parameter = simulator.getParameter(description);
+        if (parameter == null)
+            throw new IllegalArgumentException(simulator.getDescription() + " has no parameter '" + description + "'");
+        return parameter;
+    }
+
+    private static long getSeed(Simulator simulator) {
+        SingleValueParameter<?> parameter = simulator.getParameter(SEED_PARAMETER);
+        return parameter == null ? 0 : ((Number) parameter.getValue()).longValue();
+    }
+}
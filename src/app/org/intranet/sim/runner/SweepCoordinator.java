@@ -0,0 +1,254 @@
+package org.intranet.sim.runner;
+
+import org.intranet.statistics.StatisticsSummary;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the cells of a sweep in separate worker JVMs, each a
+ * {@link SimulationDaemon} running one job at a time. A controller that
+ * crashes or exhausts its worker's JVM only loses the cell it was running:
+ * the worker is replaced and the cell is given to the next free worker, up to
+ * {@link #MAX_ATTEMPTS} times. A worker that takes longer than the cell
+ * timeout, such as one whose controller hangs, is killed and replaced the same
+ * way.
+ */
+public class SweepCoordinator {
+    public static final int    MAX_ATTEMPTS = 3;
+    public static final String WORKER_LOG   = "sweep-workers.log";
+
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+
+    /**
+     * Called for each cell, on a worker thread, one call at a time.
+     */
+    public interface Listener {
+        void cellCompleted(int cell, StatisticsSummary summary);
+
+        void cellFailed(int cell, String message);
+    }
+
+    private final int          numWorkers;
+    private final List<String> workerCommand;
+    private final long         cellTimeoutMillis;
+    private volatile boolean   cancelled;
+    private final List<Worker> workers = new ArrayList<>();
+
+    /**
+     * @param numWorkers        number of worker JVMs to run at once
+     * @param workerCommand     command starting a worker, see {@link #workerCommand}
+     * @param cellTimeoutMillis time a worker may take to run one cell before it
+     *                          is killed, 0 for no limit
+     */
+    public SweepCoordinator(int numWorkers, List<String> workerCommand, long cellTimeoutMillis) {
+        this.numWorkers = numWorkers;
+        this.workerCommand = workerCommand;
+        this.cellTimeoutMillis = cellTimeoutMillis;
+    }
+
+    /**
+     * @param mainClass  class whose main method starts the application in
+     *                   daemon mode when given {@code -d}
+     * @param launchArgs options this application was started with that the
+     *                   workers need too, such as a JSON parameter file
+     * @return command starting a worker JVM with the same java and class path
+     * as this one
+     */
+    public static List<String> workerCommand(String mainClass, List<String> launchArgs) {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<String> command = new ArrayList<>(Arrays.asList(java, "-cp", System.getProperty("java.class.path"),
+                mainClass));
+        command.addAll(launchArgs);
+        command.addAll(Arrays.asList("-d", "-w", "1"));
+        return command;
+    }
+
+    /**
+     * Runs every cell, returning once each has completed or failed, or the
+     * sweep is cancelled.
+     *
+     * @param simulatorClass class of the simulator to run
+     * @param cells          parameter values of each cell, by parameter description
+     */
+    public void run(String simulatorClass, List<Map<String, String>> cells, Listener listener)
+            throws InterruptedException {
+        ConcurrentLinkedQueue<Integer> pending = new ConcurrentLinkedQueue<>();
+        for (int cell = 0; cell < cells.size(); cell++)
+            pending.add(cell);
+        int[] attempts = new int[cells.size()];
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sweep-cell-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < Math.min(numWorkers, cells.size()); i++) {
+            Worker worker = new Worker(timer);
+            synchronized (workers) {
+                workers.add(worker);
+            }
+            Thread thread = new Thread(() -> worker.runCells(simulatorClass, cells, pending, attempts, listener),
+                    "sweep-worker-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+        try {
+            for (Thread thread : threads)
+                thread.join();
+        } finally {
+            timer.shutdownNow();
+            synchronized (workers) {
+                for (Worker worker : workers)
+                    worker.stop();
+                workers.clear();
+            }
+        }
+    }
+
+    /**
+     * Stops handing out cells and kills the workers; cells being run are lost.
+     */
+    public void cancel() {
+        cancelled = true;
+        synchronized (workers) {
+            for (Worker worker : workers)
+                worker.stop();
+        }
+    }
+
+    private class Worker {
+        private final ScheduledExecutorService timer;
+        private Process                        process;
+        private PrintWriter                    jobs;
+        private BufferedReader                 results;
+        private volatile boolean               timedOut;
+
+        Worker(ScheduledExecutorService timer) {
+            this.timer = timer;
+        }
+
+        void runCells(String simulatorClass, List<Map<String, String>> cells,
+                      ConcurrentLinkedQueue<Integer> pending, int[] attempts, Listener listener) {
+            Integer cell;
+            while (!cancelled && (cell = pending.poll()) != null) {
+                JSONObject job = new JSONObject();
+                job.put("id", cell.toString());
+                job.put("simulator", simulatorClass);
+                job.put("params", new JSONObject(cells.get(cell)));
+
+                JSONObject result;
+                try {
+                    result = runJob(job);
+                } catch (IOException | JSONException e) {
+                    stop();
+                    if (cancelled)
+                        return;
+                    int attempt;
+                    synchronized (attempts) {
+                        attempt = ++attempts[cell];
+                    }
+                    LOG.warn("Lost worker running cell {} (attempt {}): {}", cell, attempt, e.getMessage());
+                    if (attempt < MAX_ATTEMPTS) {
+                        pending.add(cell);
+                    } else {
+                        synchronized (listener) {
+                            listener.cellFailed(cell, "Worker died or timed out " + attempt
+                                    + " times running this cell, see " + WORKER_LOG);
+                        }
+                    }
+                    continue;
+                }
+
+                synchronized (listener) {
+                    if (cancelled)
+                        return;
+                    if ("ok".equals(result.optString("status")))
+                        listener.cellCompleted(cell, SimulationJob.summaryFromJson(result.getJSONArray("summary")));
+                    else
+                        listener.cellFailed(cell, result.optString("message"));
+                }
+            }
+            stop();
+        }
+
+        private JSONObject runJob(JSONObject job) throws IOException {
+            if (process == null)
+                start();
+            jobs.println(job.toString());
+            if (jobs.checkError())
+                throw new IOException("Cannot send job to worker");
+            String line;
+            timedOut = false;
+            Process running = process;
+            ScheduledFuture<?> timeout = cellTimeoutMillis > 0
+                    ? timer.schedule(() -> timeOut(running), cellTimeoutMillis, TimeUnit.MILLISECONDS)
+                    : null;
+            try {
+                line = results.readLine();
+            } catch (IOException e) {
+                if (timedOut)
+                    throw timeoutException();
+                throw e;
+            } finally {
+                if (timeout != null)
+                    timeout.cancel(false);
+            }
+            if (line == null)
+                throw timedOut ? timeoutException() : new IOException("Worker exited");
+            return new JSONObject(line);
+        }
+
+        /**
+         * Kills the worker if it is still running the cell it timed out on,
+         * which ends the wait for its result.
+         */
+        private synchronized void timeOut(Process running) {
+            if (process != running)
+                return;
+            timedOut = true;
+            stop();
+        }
+
+        private IOException timeoutException() {
+            return new IOException("Worker timed out after " + cellTimeoutMillis + " ms");
+        }
+
+        private synchronized void start() throws IOException {
+            if (cancelled)
+                throw new IOException("Sweep cancelled");
+            ProcessBuilder builder = new ProcessBuilder(workerCommand);
+            builder.redirectError(ProcessBuilder.Redirect.appendTo(new File(WORKER_LOG)));
+            process = builder.start();
+            jobs = new PrintWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8), true);
+            results = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        synchronized void stop() {
+            if (process == null)
+                return;
+            process.destroyForcibly();
+            process = null;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package org.intranet.sim.runner;
+
+import org.intranet.sim.Simulator;
+import org.intranet.statistics.ColumnSummary;
+import org.intranet.statistics.StatisticsSummary;
+import org.intranet.ui.SingleValueParameter;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of the {@link StatisticsSummary} of simulation runs, keyed by
+ * a hash of everything that determines a run's result: the application
+ * version, the code on the class path, the simulator class, the value of
+ * every parameter, including the seed and the controller, and the content of
+ * the files the simulator reads, such as a trace. Any change to the
+ * simulator, the model or a controller changes the code, so runs of an older
+ * build are never reused. Each run is appended and flushed as soon as it
+ * is stored, so a sweep that is interrupted and started again only runs the
+ * cells that are missing, and a sweep that is repeated runs nothing.
+ * <p>
+ * The store is a single append-only file, {@code summaries.dat}. After a
+ * header it holds two kinds of records: a column name record ('N', table
+ * name, heading), which gives the next column index, and a run record ('R',
+ * key, number of columns, then per column its index, count, total, sum of
+ * squares, average, min and max). Column names are written once, so a run
+ * costs about 50 bytes per statistics column. A record cut short by a crash
+ * is dropped when the store is next opened.
+ */
+public class SweepStore implements Closeable {
+    public static final String FILENAME = "summaries.dat";
+
+    private static final byte[] MAGIC        = {'E', 'L', 'S', 'S'};
+    private static final int    VERSION      = 1;
+    private static final int    KEY_SIZE     = 32;
+    private static final byte   NAME_RECORD  = 'N';
+    private static final byte   RUN_RECORD   = 'R';
+
+    private final List<String[]>                 columnNames   = new ArrayList<>();
+    private final Map<String, Integer>           columnIndices = new HashMap<>();
+    private final Map<String, StatisticsSummary> runs          = new HashMap<>();
+    private final DataOutputStream               out;
+    private final String                         codeHash;
+
+    /**
+     * Opens the store in the directory, creating both if needed.
+     *
+     * @throws IOException if the store cannot be read or is not a sweep store
+     */
+    public SweepStore(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create directory " + directory);
+        File file = new File(directory, FILENAME);
+        long validLength = file.exists() ? load(file) : 0;
+        if (validLength < file.length()) {
+            // drop the record a crash cut short, so new records follow the last good one
+            try (RandomAccessFile truncate = new RandomAccessFile(file, "rw")) {
+                truncate.setLength(validLength);
+            }
+        }
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        if (validLength == 0) {
+            out.write(MAGIC);
+            out.writeInt(VERSION);
+            out.flush();
+        }
+        codeHash = hashClassPath();
+    }
+
+    /**
+     * @param version   version of the application, so results of older
+     *                  versions are not reused
+     * @param simulator simulator with its parameters set for the run
+     * @return hex SHA-256 key of the run
+     * @throws IOException if one of the simulator's input files cannot be read
+     */
+    public String key(String version, Simulator simulator) throws IOException {
+        // sorted, so the key does not depend on the order parameters are listed in
+        Map<String, String> values = new TreeMap<>();
+        for (SingleValueParameter<?> p : simulator.getParameters())
+            values.put(p.getDescription(), String.valueOf(p.getValue()));
+        StringBuilder content = new StringBuilder();
+        content.append(version).append('\n');
+        content.append(codeHash).append('\n');
+        content.append(simulator.getClass().getName()).append('\n');
+        for (Map.Entry<String, String> value : values.entrySet())
+            content.append(value.getKey()).append('=').append(value.getValue()).append('\n');
+        MessageDigest digest = sha256();
+        digest.update(content.toString().getBytes(StandardCharsets.UTF_8));
+        for (File input : simulator.getInputFiles())
+            hashFile(digest, input.getPath(), input.toPath());
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Hashes the name and content of every file on the class path, in the
+     * directories and jars the simulators and controllers are loaded from.
+     *
+     * @return hex SHA-256 hash of the code
+     */
+    private static String hashClassPath() throws IOException {
+        MessageDigest digest = sha256();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            Path root = Paths.get(entry);
+            if (Files.isRegularFile(root)) {
+                hashFile(digest, entry, root);
+            } else if (Files.isDirectory(root)) {
+                List<Path> files;
+                try (Stream<Path> walk = Files.walk(root)) {
+                    files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+                }
+                for (Path file : files)
+                    hashFile(digest, root.relativize(file).toString(), file);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static void hashFile(MessageDigest digest, String name, Path file) throws IOException {
+        digest.update(name.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(sha256().digest(Files.readAllBytes(file)));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform must provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return The stored summary of the run, or null if it has not been run
+     */
+    public synchronized StatisticsSummary get(String key) {
+        return runs.get(key);
+    }
+
+    public synchronized int size() {
+        return runs.size();
+    }
+
+    /**
+     * Stores the summary of a run and flushes it to disk.
+     */
+    public synchronized void put(String key, StatisticsSummary summary) throws IOException {
+        if (runs.containsKey(key))
+            return;
+        List<ColumnSummary> columns = summary.getColumns();
+        int[] indices = new int[columns.size()];
+        for (int i = 0; i < indices.length; i++)
+            indices[i] = columnIndex(columns.get(i));
+        out.writeByte(RUN_RECORD);
+        out.write(fromHex(key));
+        out.writeShort(columns.size());
+        for (int i = 0; i < indices.length; i++) {
+            ColumnSummary column = columns.get(i);
+            out.writeShort(indices[i]);
+            out.writeInt(column.getCount());
+            out.writeDouble(column.getTotal());
+            out.writeDouble(column.getSumOfSquares());
+            out.writeDouble(column.getAverage().doubleValue());
+            out.writeDouble(column.getMin().doubleValue());
+            out.writeDouble(column.getMax().doubleValue());
+        }
+        out.flush();
+        runs.put(key, summary);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    private int columnIndex(ColumnSummary column) throws IOException {
+        String name = column.getTableName() + '\n' + column.getHeading();
+        Integer index = columnIndices.get(name);
+        if (index != null)
+            return index;
+        out.writeByte(NAME_RECORD);
+        out.writeUTF(column.getTableName());
+        out.writeUTF(column.getHeading());
+        return addColumnName(column.getTableName(), column.getHeading());
+    }
+
+    private int addColumnName(String tableName, String heading) {
+        int index = columnNames.size();
+        columnNames.add(new String[]{tableName, heading});
+        columnIndices.put(tableName + '\n' + heading, index);
+        return index;
+    }
+
+    /**
+     * Reads every complete record of the file.
+     *
+     * @return Length of the file up to the end of the last complete record
+     */
+    private long load(File file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        long validLength = 0;
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC))
+                throw new IOException("Not a sweep store: " + file);
+            int version = in.readInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported sweep store version " + version + " in " + file);
+            validLength = bytes.length - in.available();
+            while (in.available() > 0) {
+                byte type = in.readByte();
+                if (type == NAME_RECORD) {
+                    addColumnName(in.readUTF(), in.readUTF());
+                } else if (type == RUN_RECORD) {
+                    readRun(in);
+                } else {
+                    throw new IOException("Corrupt sweep store " + file + " at byte " + validLength);
+                }
+                validLength = bytes.length - in.available();
+            }
+        } catch (EOFException e) {
+            // the last record was cut short
+        }
+        return validLength;
+    }
+
+    private void readRun(DataInputStream in) throws IOException {
+        byte[] key = new byte[KEY_SIZE];
+        in.readFully(key);
+        int numColumns = in.readUnsignedShort();
+        List<ColumnSummary> columns = new ArrayList<>(numColumns);
+        for (int i = 0; i < numColumns; i++) {
+            String[] name = columnNames.get(in.readUnsignedShort());
+            columns.add(ColumnSummary.of(name[0], name[1], in.readInt(), in.readDouble(),
+                    in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble()));
+        }
+        runs.put(toHex(key), StatisticsSummary.of(columns));
+    }
+
+    private static byte[] fromHex(String hex) {
+        byte[] bytes = new byte[KEY_SIZE];
+        for (int i = 0; i < KEY_SIZE; i++)
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        return bytes;
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+            hex.append(String.format("%02x", b));
+        return hex.toString();
+    }
+}
@@ -7,12 +7,15 @@ package org.intranet.sim.ui.multiple;
 import java.awt.BorderLayout;
 import java.awt.Frame;
 import java.awt.Window;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.Box;
 import javax.swing.BoxLayout;
@@ -22,15 +25,21 @@ import javax.swing.JPanel;
 import javax.swing.SwingUtilities;
 import javax.swing.WindowConstants;
 
+import au.edu.rmit.agtgrp.elevatorsim.ElsimSettings;
+import au.edu.rmit.agtgrp.elevatorsim.LaunchOptions;
+
 import org.intranet.sim.SimulationApplication;
 import org.intranet.sim.Simulator;
-import org.intranet.sim.clock.Clock;
 import org.intranet.sim.clock.ClockFactory;
+import org.intranet.sim.clock.InstantClock;
 import org.intranet.sim.clock.RealTimeClock;
 import org.intranet.sim.event.Event;
 import org.intranet.sim.event.EventQueue;
+import org.intranet.sim.runner.SweepCoordinator;
+import org.intranet.sim.runner.SweepStore;
 import org.intranet.sim.ui.realtime.SimulationArea;
-import org.intranet.statistics.Column;
+import org.intranet.statistics.ColumnSummary;
+import org.intranet.statistics.StatisticsSummary;
 import org.intranet.statistics.Table;
 import org.intranet.ui.ChoiceParameter;
 import org.intranet.ui.ExceptionDialog;
@@ -55,7 +64,8 @@ public class MultipleSimulationArea extends JComponent
   private ResultsSelection centerPanel;
   private ResultsTable bottomPanel;
   private List<MultipleValueParameter<?>> multiValueParams;
-  private Map<List<SingleValueParameter<?>>, List<Table>> results;
+  // only a summary of each run is kept, so large sweeps fit in memory
+  private Map<List<SingleValueParameter<?>>, StatisticsSummary> results;
   private Box topBox = new Box(BoxLayout.Y_AXIS); 
   private JFrame parent;
 
@@ -156,31 +166,7 @@ public class MultipleSimulationArea extends JComponent
   {
     // TODO : reconsider how to determine the endtime in a multiple simulation
     final long endTime = 99000000;
-    ClockFactory clockFactory = new ClockFactory()
-    {
-      public Clock createClock(final Clock.FeedbackListener cl)
-      {
-        return new Clock(cl)
-        {
-          public void dispose()
-          {
-          }
-
-          public void pause()
-          {
-            setRunningState(false);
-          }
-
-          public void start()
-          {
-            if (isRunning())
-              throw new IllegalStateException("Can't start while already running");
-            setRunningState(true);
-            setSimulationTime(endTime);
-          }
-        };
-      }
-    };
+    ClockFactory clockFactory = new InstantClock.InstantClockFactory(endTime);
     //    initialize the sim
     try
     {
@@ -206,7 +192,9 @@ public class MultipleSimulationArea extends JComponent
     });
     //    run the sim
     sim.getClock().start();
-    return sim.getModel().getStatistics();
+    List<Table> statistics = sim.getModel().getStatistics();
+    sim.dispose();
+    return statistics;
   }
 
   protected List<List<SingleValueParameter<?>>> createParameterSet(
@@ -299,18 +287,14 @@ public class MultipleSimulationArea extends JComponent
     // Only fill the statistics variable with the headers of one set of tables,
     // otherwise the list will contain duplicates of each statistics variable
     // from each of the set of table results
-    List<Table> tables = results.values().iterator().next();
-    for (Table t : tables)
+    StatisticsSummary summary = results.values().iterator().next();
+    for (ColumnSummary c : summary.getColumns())
     {
-      String tableName = t.getName();
-      for (int colNum = 0; colNum < t.getColumnCount(); colNum++)
-      {
-        Column c = t.getColumn(colNum);
-        String name = c.getHeading();
-        statisticsVariables.add(new StatisticVariable(tableName, "Avg", name));
-        statisticsVariables.add(new StatisticVariable(tableName, "Min", name));
-        statisticsVariables.add(new StatisticVariable(tableName, "Max", name));
-      }
+      String tableName = c.getTableName();
+      String name = c.getHeading();
+      statisticsVariables.add(new StatisticVariable(tableName, "Avg", name));
+      statisticsVariables.add(new StatisticVariable(tableName, "Min", name));
+      statisticsVariables.add(new StatisticVariable(tableName, "Max", name));
     }
     return statisticsVariables;
   }
@@ -329,7 +313,10 @@ public class MultipleSimulationArea extends JComponent
     }
     repaint();
     foundError = false;
-    results = new HashMap<List<SingleValueParameter<?>>, List<Table>>();
+    results = new HashMap<List<SingleValueParameter<?>>, StatisticsSummary>();
+    String spillDirectory = ElsimSettings.get().getSweepSpillDirectory();
+    final ResultsSpill spill = spillDirectory.isEmpty() ? null :
+      new ResultsSpill(new File(spillDirectory));
     Frame windowAncestor =
       (Frame)SwingUtilities.getWindowAncestor(MultipleSimulationArea.this);
     final ProgressDialog pd =
@@ -342,15 +329,20 @@ public class MultipleSimulationArea extends JComponent
         int i = 1;
         List<List<SingleValueParameter<?>>> parameterSetList =
           createParameterSet(multiValueParams);
-        for (List<SingleValueParameter<?>> params : parameterSetList)
+        SweepStore store = openStore();
+        int numWorkers = ElsimSettings.get().getSweepWorkers();
+        if (numWorkers > 0 && !foundError)
+          runCellsInWorkers(parameterSetList, store, numWorkers, pd);
+        else for (List<SingleValueParameter<?>> params : parameterSetList)
         {
-          updateSimulationParameters(sim, params);
-          List<Table> statistics = startSimulation(params);
+          if (foundError) break;
+          StatisticsSummary summary = runCell(i, params, store, spill);
           if (pd.isCancelled()) foundError = true;
           if (foundError) break;
-          results.put(params, statistics);
+          results.put(params, summary);
           pd.progress(i++, parameterSetList.size());
         }
+        closeStore(store);
         
         if (foundError)
           results = null;  // Allow garbage collection
@@ -364,6 +356,174 @@ public class MultipleSimulationArea extends JComponent
     pd.setVisible(true);
   }
 
+  /**
+   * @return The store of past runs, or null if it is disabled or cannot be
+   *         opened
+   */
+  private SweepStore openStore()
+  {
+    String storeDirectory = ElsimSettings.get().getSweepStoreDirectory();
+    if (storeDirectory.isEmpty())
+      return null;
+    try
+    {
+      return new SweepStore(new File(storeDirectory));
+    }
+    catch (IOException e)
+    {
+      errorDialog(new ArrayList<SingleValueParameter<?>>(), e);
+      return null;
+    }
+  }
+
+  private void closeStore(SweepStore store)
+  {
+    if (store == null)
+      return;
+    try
+    {
+      store.close();
+    }
+    catch (IOException e)
+    {
+      if (!foundError)
+        errorDialog(new ArrayList<SingleValueParameter<?>>(), e);
+    }
+  }
+
+  /**
+   * @return The key of the run the simulator's parameters are set to, or
+   *         null if the run is not to be stored
+   */
+  private String getStoreKey(SweepStore store)
+  {
+    // runs whose results depend on timing are not reused
+    if (store == null || !sim.getController().isDeterministic())
+      return null;
+    try
+    {
+      return store.key(simApp.getVersion(), sim);
+    }
+    catch (IOException e)
+    {
+      // the run itself reports the file it cannot read
+      return null;
+    }
+  }
+
+  /**
+   * Runs the cells of the sweep that are not in the store in separate
+   * worker JVMs, so a crashing controller cannot take the sweep down.
+   */
+  private void runCellsInWorkers(
+    List<List<SingleValueParameter<?>>> parameterSetList,
+    final SweepStore store, int numWorkers, final ProgressDialog pd)
+  {
+    final int total = parameterSetList.size();
+    final int[] done = { 0 };
+    final List<List<SingleValueParameter<?>>> toRun =
+      new ArrayList<List<SingleValueParameter<?>>>();
+    final List<String> keys = new ArrayList<String>();
+    List<Map<String, String>> cells = new ArrayList<Map<String, String>>();
+    for (List<SingleValueParameter<?>> params : parameterSetList)
+    {
+      updateSimulationParameters(sim, params);
+      String key = getStoreKey(store);
+      StatisticsSummary summary = key == null ? null : store.get(key);
+      if (summary != null)
+      {
+        results.put(params, summary);
+        pd.progress(++done[0], total);
+        continue;
+      }
+      Map<String, String> cell = new HashMap<String, String>();
+      for (SingleValueParameter<?> p : params)
+        cell.put(p.getDescription(), p.getValue().toString());
+      toRun.add(params);
+      keys.add(key);
+      cells.add(cell);
+    }
+
+    final SweepCoordinator coordinator = new SweepCoordinator(numWorkers,
+      SweepCoordinator.workerCommand(simApp.getClass().getName(),
+        LaunchOptions.get().getWorkerArgs()),
+      TimeUnit.SECONDS.toMillis(ElsimSettings.get().getSweepCellTimeout()));
+    try
+    {
+      coordinator.run(sim.getClass().getName(), cells,
+        new SweepCoordinator.Listener()
+      {
+        public void cellCompleted(int cell, StatisticsSummary summary)
+        {
+          if (pd.isCancelled() || foundError)
+          {
+            foundError = true;
+            coordinator.cancel();
+            return;
+          }
+          try
+          {
+            if (keys.get(cell) != null)
+              store.put(keys.get(cell), summary);
+          }
+          catch (IOException e)
+          {
+            errorDialog(toRun.get(cell), e);
+            coordinator.cancel();
+            return;
+          }
+          results.put(toRun.get(cell), summary);
+          pd.progress(++done[0], total);
+        }
+
+        public void cellFailed(int cell, String message)
+        {
+          if (!foundError)
+            errorDialog(toRun.get(cell), new RuntimeException(message));
+          coordinator.cancel();
+        }
+      });
+    }
+    catch (InterruptedException e)
+    {
+      foundError = true;
+      coordinator.cancel();
+    }
+  }
+
+  /**
+   * Runs one cell of the sweep, unless the store already has its result.
+   * @return The summary of the cell's statistics, or null after an error
+   */
+  private StatisticsSummary runCell(int run, List<SingleValueParameter<?>> params,
+    SweepStore store, ResultsSpill spill)
+  {
+    updateSimulationParameters(sim, params);
+    String key = getStoreKey(store);
+    StatisticsSummary summary = key == null ? null : store.get(key);
+    if (summary != null)
+      return summary;
+
+    List<Table> statistics = startSimulation(params);
+    if (statistics == null || foundError)
+      return null;
+    try
+    {
+      if (spill != null)
+        spill.write(run, params, statistics);
+      // the full tables are dropped with the next run's model
+      summary = StatisticsSummary.summarize(statistics);
+      if (key != null)
+        store.put(key, summary);
+    }
+    catch (IOException e)
+    {
+      errorDialog(params, e);
+      return null;
+    }
+    return summary;
+  }
+
   private void runRealTimeSimulation(List<SingleValueParameter<?>> params)
   {
     Simulator newSim = sim.duplicate();
@@ -8,8 +8,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
-import org.intranet.statistics.Column;
-import org.intranet.statistics.Table;
+import org.intranet.statistics.ColumnSummary;
+import org.intranet.statistics.StatisticsSummary;
 import org.intranet.ui.MultipleValueParameter;
 import org.intranet.ui.SingleValueParameter;
 
@@ -25,7 +25,7 @@ public class ResultsGrid
   List<List<List<SingleValueParameter<?>>>> parameterLists;
   List<List<AverageNumber>> statisticLists;
 
-  ResultsGrid(Map<List<SingleValueParameter<?>>, List<Table>> results,
+  ResultsGrid(Map<List<SingleValueParameter<?>>, StatisticsSummary> results,
     MultipleValueParameter<?> primaryVar,
     MultipleValueParameter<?> secondaryVar,
     MultipleValueParameter<?> averageVar,
@@ -63,11 +63,11 @@ public class ResultsGrid
     // variables we are interested in (based on primary and secondary selections).
     // Get column "names" (actually variable values) and row names (to do later)
     // along the way.
-    for (Map.Entry<List<SingleValueParameter<?>>, List<Table>> entry :
+    for (Map.Entry<List<SingleValueParameter<?>>, StatisticsSummary> entry :
       results.entrySet())
     {
       List<SingleValueParameter<?>> params = entry.getKey();
-      List<Table> statistics = entry.getValue();
+      StatisticsSummary statistics = entry.getValue();
 
       if (!variablesMatch(params))
         continue;
@@ -85,29 +85,21 @@ public class ResultsGrid
     }
   }
 
-  private Number getStatistic(List<Table> statistics,
+  private Number getStatistic(StatisticsSummary statistics,
     StatisticVariable statisticsSelection)
   {
     // find the statistic that was requested from the statistics chooser
-    for (Table table : statistics)
+    ColumnSummary column = statistics.getColumn(
+      statisticsSelection.getTableName(), statisticsSelection.getStatisticName());
+    if (column != null)
     {
-      if (statisticsSelection.getTableName().equals(table.getName()))
-      {
-        for (int colNum = 0; colNum < table.getColumnCount(); colNum++)
-        {
-          Column column = table.getColumn(colNum);
-          if (column.getHeading().equals(statisticsSelection.getStatisticName()))
-          {
-            // TODO: factor out explicit case analysis to classes
-            if ("Avg".equals(statisticsSelection.getFunctionName()))
-              return column.getAverage();
-            else if ("Min".equals(statisticsSelection.getFunctionName()))
-              return column.getMin();
-            else if ("Max".equals(statisticsSelection.getFunctionName()))
-              return column.getMax();
-          }
-        }
-      }
+      // TODO: factor out explicit case analysis to classes
+      if ("Avg".equals(statisticsSelection.getFunctionName()))
+        return column.getAverage();
+      else if ("Min".equals(statisticsSelection.getFunctionName()))
+        return column.getMin();
+      else if ("Max".equals(statisticsSelection.getFunctionName()))
+        return column.getMax();
     }
     throw new IllegalArgumentException("Couldn't find value for statistic " +
         statisticsSelection.getFunctionName());
@@ -0,0 +1,62 @@
+package org.intranet.sim.ui.multiple;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.intranet.statistics.Table;
+import org.intranet.ui.SingleValueParameter;
+
+/**
+ * Writes the full statistics tables of each run of a sweep to its own CSV
+ * file, so they can be looked at after the sweep without keeping them in
+ * memory. Each file starts with one "# parameter: value" line per parameter,
+ * followed by every table as a heading row and one row per table row.
+ */
+class ResultsSpill
+{
+  private final File directory;
+
+  ResultsSpill(File directory)
+  {
+    super();
+    this.directory = directory;
+  }
+
+  /**
+   * @return The file the run's tables were written to
+   */
+  File write(int run, List<SingleValueParameter<?>> params, List<Table> tables)
+    throws IOException
+  {
+    if (!directory.isDirectory() && !directory.mkdirs())
+      throw new IOException("Cannot create directory " + directory);
+    File file = new File(directory, "run-" + run + ".csv");
+    try (Writer out = new BufferedWriter(new OutputStreamWriter(
+      new FileOutputStream(file), StandardCharsets.UTF_8)))
+    {
+      for (SingleValueParameter<?> p : params)
+        out.write("# " + p.getDescription() + ": " + p.getValue() + "\n");
+      for (Table table : tables)
+      {
+        out.write(table.getName());
+        for (int colNum = 0; colNum < table.getColumnCount(); colNum++)
+          out.write("," + table.getColumn(colNum).getHeading());
+        out.write("\n");
+        for (int row = 0; row < table.getRowCount(); row++)
+        {
+          out.write(table.getRowName(row));
+          for (int colNum = 0; colNum < table.getColumnCount(); colNum++)
+            out.write("," + table.getColumn(colNum).getValue(row));
+          out.write("\n");
+        }
+      }
+    }
+    return file;
+  }
+}
@@ -4,23 +4,34 @@
  */
 package org.intranet.sim.ui.realtime;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.AbstractListModel;
 import javax.swing.JList;
 import javax.swing.JScrollPane;
-import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 import org.intranet.sim.event.Event;
 import org.intranet.sim.event.EventQueue;
 
 /**
+ * Shows the next pending events of the simulation. Changes to the queue only
+ * mark the display as stale; it catches up at most once per frame on the
+ * event dispatch thread, however fast the simulation runs.
+ * 
  * @author Neil McKellar and Chris Dailey
  *
  */
 public class EventQueueDisplay
   extends JScrollPane
 {
+  // Number of upcoming events listed
+  private static final int WINDOW_SIZE = 200;
+  private static final int FRAME_MILLIS = 1000 / 30;
+
   private JList eventJList = new JList();
   private EventListModel eventListModel = new EventListModel();
 
@@ -36,46 +47,55 @@ public class EventQueueDisplay
     eventListModel.setEventQueue(eQ);
   }
 
+  /**
+   * Stops following the queue and refreshing the list.
+   */
+  public void dispose()
+  {
+    eventListModel.setEventQueue(null);
+  }
+
   private static class EventListModel
     extends AbstractListModel
     implements EventQueue.Listener
   {
-    private EventQueue eventQueue;
-    private List<Event> list;
+    private final Comparator<Event> order = new Event.EventTimeComparator();
+    private final AtomicBoolean stale = new AtomicBoolean();
+    // set when events of the list may have changed order
+    private final AtomicBoolean rebuild = new AtomicBoolean();
+    // set once the simulation has ended, after which the queue stays as it is
+    private final AtomicBoolean ended = new AtomicBoolean();
+    private volatile EventQueue eventQueue;
+    // only touched on the event dispatch thread
+    private List<Event> list = new ArrayList<Event>();
+    private Timer refreshTimer;
     
     public EventListModel()
     {
       super();
     }
     
+    /**
+     * @param eQ The queue to show, or null to stop showing one
+     */
     public void setEventQueue(EventQueue eQ)
     {
       if (eventQueue != null)
+        eventQueue.removeListener(this);
+      if (refreshTimer != null)
       {
-        list = eventQueue.getEventList();
-        final int oldSize = list.size() - 1;
-        if (oldSize >= 0)
-        {
-          SwingUtilities.invokeLater(new Runnable()
-          {
-            public void run()
-            {
-              fireIntervalRemoved(EventListModel.this, 0, oldSize);
-            }
-          });
-        }
+        refreshTimer.stop();
+        refreshTimer = null;
       }
       eventQueue = eQ;
+      if (eventQueue == null)
+        return;
       eventQueue.addListener(this);
-      list = eventQueue.getEventList();
-      final int newSize = list.size() - 1;
-      SwingUtilities.invokeLater(new Runnable()
-      {
-        public void run()
-        {
-          fireIntervalAdded(EventListModel.this, 0, newSize);
-        }
-      });
+      ended.set(false);
+      rebuild.set(true);
+      stale.set(true);
+      refreshTimer = new Timer(FRAME_MILLIS, e -> refresh());
+      refreshTimer.start();
     }
 
     public Object getElementAt(int index)
@@ -86,44 +106,110 @@ public class EventQueueDisplay
 
     public int getSize()
     {
-      if (list == null)
-        return 0;
-      int size = list.size();
-      return size;
+      return list.size();
     }
 
     public void eventAdded(Event e)
     {
-      SwingUtilities.invokeLater(new Runnable()
-      {
-        public void run()
-        {
-          synchronized (EventListModel.this)
-          {
-            list = eventQueue.getEventList();
-            fireContentsChanged(EventListModel.this, 0, list.size());
-          }
-        }
-      });
+      stale.set(true);
     }
 
     public void eventRemoved(Event e)
     {
-      SwingUtilities.invokeLater(new Runnable()
+      stale.set(true);
+    }
+
+    /**
+     * The event is moved in place, which would leave the list out of order.
+     */
+    @Override
+    public void eventRescheduled(Event e, long oldTime)
+    {
+      rebuild.set(true);
+      stale.set(true);
+    }
+
+    public void eventError(Exception ex) {}
+    public void eventProcessed(Event e) {}
+
+    public void simulationEnded()
+    {
+      // stale first, so the refresh that stops the timer sees the last change
+      stale.set(true);
+      ended.set(true);
+    }
+
+    /**
+     * Brings the list up to date with the first events of the queue. Both
+     * lists are in queue order, so walking them together finds the runs of
+     * events that left and joined the window, and only those are notified.
+     */
+    private void refresh()
+    {
+      // the last refresh once the simulation has ended
+      if (ended.get() && refreshTimer != null)
+      {
+        refreshTimer.stop();
+        refreshTimer = null;
+      }
+      if (!stale.getAndSet(false))
+        return;
+      List<Event> latest = eventQueue.getFirstEvents(WINDOW_SIZE);
+      if (rebuild.getAndSet(false))
+      {
+        replaceAll(latest);
+        return;
+      }
+      int index = 0;
+      int next = 0;
+      while (index < list.size() || next < latest.size())
       {
-        public void run()
+        int removed = 0;
+        while (index + removed < list.size() &&
+            (next == latest.size() ||
+             order.compare(list.get(index + removed), latest.get(next)) < 0))
+          removed++;
+        if (removed > 0)
         {
-          synchronized (EventListModel.this)
-          {
-            list = eventQueue.getEventList();
-            fireContentsChanged(EventListModel.this, 0, list.size());
-          }
+          list.subList(index, index + removed).clear();
+          fireIntervalRemoved(this, index, index + removed - 1);
         }
-      });
+
+        int added = 0;
+        while (next + added < latest.size() &&
+            (index == list.size() ||
+             order.compare(latest.get(next + added), list.get(index)) < 0))
+          added++;
+        if (added > 0)
+        {
+          list.addAll(index, latest.subList(next, next + added));
+          fireIntervalAdded(this, index, index + added - 1);
+          index += added;
+          next += added;
+        }
+
+        // the same event is in both lists
+        if (removed == 0 && added == 0)
+        {
+          index++;
+          next++;
+        }
+      }
     }
 
-    public void eventError(Exception ex) {}
-    public void eventProcessed(Event e) {}
-    public void simulationEnded() {}
+    private void replaceAll(List<Event> latest)
+    {
+      if (!list.isEmpty())
+      {
+        int removed = list.size();
+        list.clear();
+        fireIntervalRemoved(this, 0, removed - 1);
+      }
+      if (!latest.isEmpty())
+      {
+        list.addAll(latest);
+        fireIntervalAdded(this, 0, list.size() - 1);
+      }
+    }
   }
-}
+}
\ No newline at end of file
@@ -8,7 +8,6 @@ import au.edu.rmit.agtgrp.elevatorsim.LaunchOptions;
 import au.edu.rmit.agtgrp.elevatorsim.ui.ControllerDialogCreator;
 import au.edu.rmit.agtgrp.elevatorsim.ui.ControllerDialogCreatorImpl;
 import org.intranet.elevator.model.operate.controller.Controller;
-import org.intranet.sim.Model;
 import org.intranet.sim.SimulationApplication;
 import org.intranet.sim.Simulator;
 import org.intranet.sim.Simulator.SimulatorListener;
@@ -55,8 +54,8 @@ public class SimulationArea
 
         sim.addListener(new SimulatorListener() {
             public void modelUpdate(long time) {
-                // TODO : The model should be responsible for telling the view when it updates
-                bView.repaint();
+                // The building view repaints itself from the snapshots the model publishes.
+                statistics.modelUpdated();
             }
         });
 
@@ -166,20 +165,10 @@ public class SimulationArea
         startButton.setText(running ? "Pause" : "Go, Dude!");
     }
 
-    public void paint(Graphics g) {
-        Model model = sim.getModel();
-        if (model == null) {
-            super.paint(g);
-        } else
-            synchronized (model) {
-                super.paint(g);
-            }
-    }
-
     private void reconfigureSimulation(final SimulationApplication simApp) {
         startButton.setEnabled(true);
         bView = simApp.createView(sim.getModel());
-        rightSplitPane.setLeftComponent(bView);
+        rightSplitPane.setLeftComponent(bView instanceof Scrollable ? new JScrollPane(bView) : bView);
 
         final Clock clock = sim.getClock();
         clock.addListener(new Clock.Listener() {
@@ -211,5 +200,7 @@ public class SimulationArea
         if (clock.isRunning())
             clock.pause();
         sim.getController().close();
+        sim.dispose();
+        eventQueueDisplay.dispose();
     }
 }
@@ -8,6 +8,9 @@ import java.awt.Color;
 import java.awt.Component;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.BoxLayout;
 import javax.swing.JComponent;
@@ -20,9 +23,11 @@ import javax.swing.SwingUtilities;
 import javax.swing.table.AbstractTableModel;
 import javax.swing.table.DefaultTableCellRenderer;
 
+import au.edu.rmit.agtgrp.elevatorsim.ElsimSettings;
 import org.intranet.sim.Model;
 import org.intranet.statistics.Column;
-import org.intranet.statistics.Table;
+import org.intranet.statistics.LiveColumn;
+import org.intranet.statistics.LiveTable;
 
 /**
  * @author Neil McKellar and Chris Dailey
@@ -36,11 +41,11 @@ public final class Statistics
 
   private final class StatisticsTableCellRenderer extends DefaultTableCellRenderer
   {
-    private final Table t;
-    private StatisticsTableCellRenderer(Table t)
+    private final StatisticsTableModel tm;
+    private StatisticsTableCellRenderer(StatisticsTableModel tm)
     {
       super();
-      this.t = t;
+      this.tm = tm;
     }
     public Component getTableCellRendererComponent(JTable table,
                       Object value, boolean isSelected, boolean hasFocus,
@@ -51,7 +56,7 @@ public final class Statistics
       jl.setBackground(Color.white);
       if (column > 0)
       {
-        Column c = t.getColumn(column - 1);
+        Column c = tm.getColumn(column - 1);
         // Avoid setting color on Total, Min, Max, or Average
         if (row < c.getValueCount())
         {
@@ -67,29 +72,115 @@ public final class Statistics
     }
   }
 
+  /**
+   * Stays attached to its JTable for the whole simulation, with its own copy
+   * of the values of a {@link LiveTable}. Each update only brings in the rows
+   * added or changed, and only those are reported as changed.
+   */
   private final class StatisticsTableModel
     extends AbstractTableModel
   {
-    private final Table t;
+    private final LiveTable liveTable;
+    private final List<String> rowNames = new ArrayList<String>();
+    private final LiveColumn[] columns;
+    // the first update takes every row
+    private volatile boolean shown;
     String[] tmma = { "Total", "Min", "Max", "Avg" };
-    private StatisticsTableModel(Table t)
+    private StatisticsTableModel(LiveTable liveTable)
     {
-      // TODO : detect when the table changes (e.g. Real-time statistics updates)
       super();
-      this.t = t;
+      this.liveTable = liveTable;
+      columns = new LiveColumn[liveTable.getColumnCount()];
+      for (int i = 0; i < columns.length; i++)
+        columns[i] = new LiveColumn(liveTable.getHeading(i));
+    }
+    Column getColumn(int i)
+    {
+      return columns[i];
+    }
+    /**
+     * Must be called while holding the model.
+     */
+    LiveTable.Update takeUpdate()
+    {
+      LiveTable.Update update = liveTable.takeUpdate(!shown);
+      shown = true;
+      return update;
+    }
+    void apply(LiveTable.Update update)
+    {
+      int oldRows = rowNames.size();
+      int newRows = update.getRowCount();
+      Number[] oldMin = new Number[columns.length];
+      Number[] oldMax = new Number[columns.length];
+      for (int i = 0; i < columns.length; i++)
+      {
+        oldMin[i] = columns[i].getMin();
+        oldMax[i] = columns[i].getMax();
+        columns[i].setValueCount(newRows);
+      }
+      while (rowNames.size() > newRows)
+        rowNames.remove(rowNames.size() - 1);
+      while (rowNames.size() < newRows)
+        rowNames.add(null);
+      for (int changed = 0; changed < update.getChangedCount(); changed++)
+      {
+        int row = update.getRow(changed);
+        rowNames.set(row, update.getRowName(changed));
+        for (int i = 0; i < columns.length; i++)
+          columns[i].setValue(row, update.getValue(changed, i));
+      }
+      boolean extremesChanged = false;
+      for (int i = 0; i < columns.length; i++)
+      {
+        columns[i].update();
+        if (!Objects.equals(oldMin[i], columns[i].getMin()) ||
+            !Objects.equals(oldMax[i], columns[i].getMax()))
+          extremesChanged = true;
+      }
+
+      int common = Math.min(oldRows, newRows);
+      if (newRows < oldRows)
+        fireTableRowsDeleted(newRows, oldRows - 1);
+      if (extremesChanged && common > 0)
+      {
+        // the highlight of any row may have changed
+        fireTableRowsUpdated(0, common - 1);
+      }
+      else
+      {
+        int changed = 0;
+        while (changed < update.getChangedCount() && update.getRow(changed) < common)
+        {
+          int first = update.getRow(changed);
+          int last = first;
+          changed++;
+          while (changed < update.getChangedCount() && update.getRow(changed) == last + 1 &&
+              last + 1 < common)
+          {
+            last++;
+            changed++;
+          }
+          fireTableRowsUpdated(first, last);
+        }
+      }
+      if (newRows > oldRows)
+        fireTableRowsInserted(oldRows, newRows - 1);
+      // Total, Min, Max and Avg
+      fireTableRowsUpdated(newRows, newRows + tmma.length - 1);
     }
     public Object getValueAt(int row, int col)
     {
       if (col == 0)
       {
-        if (row < t.getRowCount())
-          return t.getRowName(row);
-        return tmma[row - t.getRowCount()];
+        if (row < rowNames.size())
+          return rowNames.get(row);
+        return tmma[row - rowNames.size()];
       }
-      Column c = t.getColumn(col - 1);
-      if (row < t.getRowCount())
+      Column c = columns[col - 1];
+      if (row < rowNames.size())
         return c.getValue(row);
-      int over = row - t.getRowCount();
+      int over = row - rowNames.size();
       if (over == 0)
         return c.getTotal();
       if (over == 1)
@@ -100,19 +191,26 @@ public final class Statistics
         return c.getAverage();
       return null;
     }
-    public int getColumnCount() { return 1 + t.getColumnCount(); }
-    public int getRowCount() { return t.getRowCount() + 4; }
+    public int getColumnCount() { return 1 + columns.length; }
+    public int getRowCount() { return rowNames.size() + 4; }
     public String getColumnName(int i)
     {
       if (i == 0) return "Object";
-      Column c = t.getColumn(i - 1);
-      return c.getHeading();
+      return columns[i - 1].getHeading();
     }
   }
 
-  private Model model;
+  private volatile Model model;
   private JTabbedPane jtp;
-  private List<JTable> jtables = new ArrayList<JTable>();
+  private volatile List<StatisticsTableModel> tableModels =
+    new ArrayList<StatisticsTableModel>();
+  // set while updates are on their way to the event dispatch thread, so
+  // refreshes queue up at most one Runnable; changes made meanwhile stay
+  // marked in the live tables until the next update
+  private final AtomicBoolean updating = new AtomicBoolean();
+  private final AtomicBoolean requested = new AtomicBoolean();
+  private long refreshIntervalNanos;
+  private long lastRefresh;
 
   public Statistics()
   {
@@ -120,24 +218,78 @@ public final class Statistics
     setLayout(new BoxLayout(this, BoxLayout.X_AXIS));
     jtp = new JTabbedPane();
     add(jtp);
+    setRefreshInterval(ElsimSettings.get().getStatisticsRefreshInterval());
     setModel(null);
   }
 
+  /**
+   * @param millis Minimum time between refreshes while the simulation runs,
+   *               0 to only refresh when it is paused
+   */
+  void setRefreshInterval(long millis)
+  {
+    refreshIntervalNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+  }
+
+  /**
+   * Called on the event dispatch thread to show the statistics of a model.
+   */
   void setModel(Model mdl)
   {
+    while (jtp.getTabCount() > 0)
+      jtp.removeTabAt(0);
+    List<StatisticsTableModel> models = new ArrayList<StatisticsTableModel>();
+    if (mdl != null)
+    {
+      for (LiveTable t : mdl.getLiveStatistics())
+      {
+        StatisticsTableModel tm = new StatisticsTableModel(t);
+        models.add(tm);
+        JTable jt = new JTable(tm);
+        jt.setDefaultRenderer(Object.class, new StatisticsTableCellRenderer(tm));
+        JScrollPane jsp = new JScrollPane(jt,
+          ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED,
+          ScrollPaneConstants.HORIZONTAL_SCROLLBAR_AS_NEEDED);
+        jtp.addTab(t.getName(), jsp);
+      }
+    }
+    tableModels = models;
     model = mdl;
     updateStatistics();
   }
 
+  /**
+   * Called from the simulation thread, which holds the model, each time the
+   * model changes. Refreshes the statistics if the refresh interval has
+   * passed since the last refresh.
+   */
+  void modelUpdated()
+  {
+    if (model == null || refreshIntervalNanos <= 0)
+      return;
+    long now = System.nanoTime();
+    if (now - lastRefresh < refreshIntervalNanos)
+      return;
+    lastRefresh = now;
+    updateStatistics();
+  }
+
   void updateStatistics()
   {
-    if (model == null)
-    {
-      while (jtp.getTabCount() > 0)
-        jtp.removeTabAt(0);
+    Model mdl = model;
+    if (mdl == null)
       return;
+    requested.set(true);
+    if (!updating.compareAndSet(false, true))
+      return;
+    requested.set(false);
+    final List<StatisticsTableModel> models = tableModels;
+    final List<LiveTable.Update> updates = new ArrayList<LiveTable.Update>();
+    synchronized (mdl)
+    {
+      for (StatisticsTableModel tm : models)
+        updates.add(tm.takeUpdate());
     }
-    final List<Table> tables = model.getStatistics();
     // updateStatistics is called from the simulation runner thread, and
     // as a result it needs to update the user interface.  The user interface
     // update must happen within the AWT event queue, so we will invoke it
@@ -146,38 +298,13 @@ public final class Statistics
     {
       public void run()
       {
-        if (jtp.getTabCount() == tables.size())
-        {
-          int tblNum = 0;
-          for (Table t : tables)
-          {
-            // TODO : if table is different, create a new statistics table model, else no change
-            JTable jt = jtables.get(tblNum);
-            jt.setModel(new StatisticsTableModel(t));
-            jt.setDefaultRenderer(Object.class,
-              new StatisticsTableCellRenderer(t));
-            tblNum++;
-          }
-        }
-        else
-        {
-          while (jtp.getTabCount() > 0)
-            jtp.removeTabAt(0);
-          int tblNum = 0;
-          jtables.clear();
-          for (Table t : tables)
-          {
-            JTable jt = new JTable(new StatisticsTableModel(t));
-            jtables.add(jt);
-            jt.setDefaultRenderer(Object.class, new StatisticsTableCellRenderer(t));
-            JScrollPane jsp = new JScrollPane(jt,
-              ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED,
-              ScrollPaneConstants.HORIZONTAL_SCROLLBAR_AS_NEEDED);
-            jtp.addTab(t.getName(), jsp);
-            tblNum++;
-          }
-        }
+        for (int tblNum = 0; tblNum < models.size(); tblNum++)
+          models.get(tblNum).apply(updates.get(tblNum));
+        updating.set(false);
+        // a refresh asked for while this one was on its way
+        if (requested.get())
+          updateStatistics();
       }
     });
   }
-}
\ No newline at end of file
+}
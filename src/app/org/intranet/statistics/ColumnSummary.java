@@ -0,0 +1,77 @@
+package org.intranet.statistics;
+
+/**
+ * The aggregate values of one statistics column, kept after the column's
+ * individual values have been dropped.
+ */
+public final class ColumnSummary
+{
+  private final String tableName;
+  private final String heading;
+  private final int count;
+  private final double total;
+  private final double sumOfSquares;
+  private final Number average;
+  private final Number min;
+  private final Number max;
+
+  private ColumnSummary(String tableName, String heading, int count,
+    double total, double sumOfSquares, Number average, Number min, Number max)
+  {
+    super();
+    this.tableName = tableName;
+    this.heading = heading;
+    this.count = count;
+    this.total = total;
+    this.sumOfSquares = sumOfSquares;
+    this.average = average;
+    this.min = min;
+    this.max = max;
+  }
+
+  /**
+   * Keeps the average, min and max exactly as the column reports them.
+   */
+  public static ColumnSummary summarize(String tableName, Column column)
+  {
+    double sumOfSquares = 0.0;
+    for (int i = 0; i < column.getValueCount(); i++)
+    {
+      double value = column.getValue(i).doubleValue();
+      sumOfSquares += value * value;
+    }
+    return new ColumnSummary(tableName, column.getHeading(),
+      column.getValueCount(), column.getTotal().doubleValue(), sumOfSquares,
+      column.getAverage(), column.getMin(), column.getMax());
+  }
+
+  /**
+   * Recreates a summary from its parts, as returned by the getters.
+   */
+  public static ColumnSummary of(String tableName, String heading, int count,
+    double total, double sumOfSquares, Number average, Number min, Number max)
+  {
+    return new ColumnSummary(tableName, heading, count, total, sumOfSquares,
+      average, min, max);
+  }
+
+  public String getTableName() { return tableName; }
+  public String getHeading() { return heading; }
+  public int getCount() { return count; }
+  public double getTotal() { return total; }
+  public double getSumOfSquares() { return sumOfSquares; }
+  public Number getAverage() { return average; }
+  public Number getMin() { return min; }
+  public Number getMax() { return max; }
+
+  /**
+   * @return Population variance of the values, 0 if there are none
+   */
+  public double getVariance()
+  {
+    if (count == 0)
+      return 0.0;
+    double mean = total / count;
+    return Math.max(0.0, sumOfSquares / count - mean * mean);
+  }
+}
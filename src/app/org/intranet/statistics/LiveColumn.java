@@ -0,0 +1,151 @@
+package org.intranet.statistics;
+
+import java.util.Arrays;
+
+/**
+ * A column whose values are set one row at a time, as a display receives
+ * the changes of a {@link LiveTable}. The total and the minimum and maximum
+ * are kept up to date as values are set rather than recalculated from every
+ * row. The values are Integers, Longs or Floats, whichever the first value
+ * set is, and the total and average are of the same types as those of an
+ * {@link IntColumn}, {@link LongColumn} or {@link FloatColumn}.
+ */
+public class LiveColumn
+  implements Column
+{
+  private final String heading;
+  private double[] values = new double[0];
+  private int count;
+  private Class<?> type;
+  private long wholeTotal;
+  // fractional values are added up in row order, as a FloatColumn does
+  private double total;
+  private boolean totalStale;
+  private int minIndex = -1;
+  private int maxIndex = -1;
+  private boolean extremesStale;
+
+  public LiveColumn(String heading)
+  {
+    super();
+    this.heading = heading;
+  }
+
+  /**
+   * Adds rows with a value of 0, or removes the last rows.
+   */
+  public void setValueCount(int newCount)
+  {
+    if (newCount > values.length)
+      values = Arrays.copyOf(values, Math.max(newCount, 2 * values.length));
+    if (newCount < count)
+    {
+      for (int i = newCount; i < count; i++)
+        wholeTotal -= (long)values[i];
+      extremesStale = true;
+    }
+    else if (newCount > count && count > 0)
+    {
+      // the new rows are 0 until they are set
+      if (values[minIndex] > 0)
+        minIndex = count;
+      if (values[maxIndex] < 0)
+        maxIndex = count;
+    }
+    Arrays.fill(values, Math.min(count, newCount), values.length, 0);
+    if (count == 0 && newCount > 0)
+    {
+      minIndex = 0;
+      maxIndex = 0;
+    }
+    count = newCount;
+    totalStale = true;
+  }
+
+  public void setValue(int row, Number value)
+  {
+    if (type == null)
+      type = value.getClass();
+    double old = values[row];
+    double now = value.doubleValue();
+    values[row] = now;
+    wholeTotal += (long)now - (long)old;
+    totalStale = true;
+    if (row == minIndex && now > old || row == maxIndex && now < old)
+      extremesStale = true;
+    if (now < values[minIndex])
+      minIndex = row;
+    if (now > values[maxIndex])
+      maxIndex = row;
+  }
+
+  /**
+   * Brings the total, minimum and maximum up to date with the values set.
+   * Must be called after setting values and before reading the column.
+   */
+  public void update()
+  {
+    if (totalStale && !isWhole())
+    {
+      total = 0.0;
+      for (int i = 0; i < count; i++)
+        total += (float)values[i];
+    }
+    totalStale = false;
+    if (extremesStale && count > 0)
+    {
+      minIndex = 0;
+      maxIndex = 0;
+      for (int i = 1; i < count; i++)
+      {
+        if (values[i] < values[minIndex])
+          minIndex = i;
+        if (values[i] > values[maxIndex])
+          maxIndex = i;
+      }
+    }
+    extremesStale = false;
+  }
+
+  private boolean isWhole()
+  {
+    return type == Integer.class || type == Long.class;
+  }
+
+  private Number box(double value)
+  {
+    if (type == Integer.class)
+      return Integer.valueOf((int)value);
+    if (type == Long.class)
+      return Long.valueOf((long)value);
+    return Float.valueOf((float)value);
+  }
+
+  public String getHeading() { return heading; }
+  public Number getTotal()
+  {
+    if (isWhole())
+      return Long.valueOf(wholeTotal);
+    return Double.valueOf(total);
+  }
+  public Number getAverage()
+  {
+    if (isWhole())
+      return Float.valueOf((1.0F * wholeTotal) / count);
+    return Float.valueOf((float)(total / count));
+  }
+  public Number getMin() { return count == 0 ? null : box(values[minIndex]); }
+  public Number getMax() { return count == 0 ? null : box(values[maxIndex]); }
+  public int getValueCount() { return count; }
+  public Number getValue(int x) { return box(values[x]); }
+  public int getMinIndex() { return minIndex; }
+  public int getMaxIndex() { return maxIndex; }
+  public boolean isMin(int index)
+  {
+    return values[index] == values[minIndex];
+  }
+  public boolean isMax(int index)
+  {
+    return values[index] == values[maxIndex];
+  }
+}
@@ -0,0 +1,149 @@
+package org.intranet.statistics;
+
+import java.util.BitSet;
+
+/**
+ * Statistics that a model keeps up to date as it runs, so that a display can
+ * follow them without the model building every {@link Table} again. The
+ * model marks a row changed whenever one of its values may have changed, and
+ * the display takes the rows added or changed since it last looked.
+ */
+public abstract class LiveTable
+{
+  private final String name;
+  private final String[] headings;
+  private final BitSet changed = new BitSet();
+  private int rowsTaken;
+
+  protected LiveTable(String name, String... headings)
+  {
+    super();
+    this.name = name;
+    this.headings = headings.clone();
+  }
+
+  public final String getName()
+  {
+    return name;
+  }
+
+  public final int getColumnCount()
+  {
+    return headings.length;
+  }
+
+  public final String getHeading(int column)
+  {
+    return headings[column];
+  }
+
+  public abstract int getRowCount();
+
+  public abstract String getRowName(int row);
+
+  /**
+   * @return An Integer or Long for whole values, a Float otherwise
+   */
+  public abstract Number getValue(int row, int column);
+
+  /**
+   * Marks a row changed, to be taken with the next update.
+   */
+  protected final void rowChanged(int row)
+  {
+    changed.set(row);
+  }
+
+  /**
+   * Called before the changed rows are taken, for tables that look for
+   * changes themselves rather than being told of them.
+   */
+  protected void findChanges()
+  {
+  }
+
+  /**
+   * Takes the rows added or changed since the last update. Must be called
+   * while holding the model.
+   *
+   * @param all True to take every row, for a display that has none yet
+   */
+  public final Update takeUpdate(boolean all)
+  {
+    findChanges();
+    int rowCount = getRowCount();
+    if (all)
+      changed.set(0, rowCount);
+    else if (rowsTaken < rowCount)
+      changed.set(rowsTaken, rowCount);
+    if (changed.length() > rowCount)
+      changed.clear(rowCount, changed.length());
+    rowsTaken = rowCount;
+
+    int[] rows = new int[changed.cardinality()];
+    String[] rowNames = new String[rows.length];
+    Number[][] values = new Number[rows.length][headings.length];
+    int i = 0;
+    for (int row = changed.nextSetBit(0); row >= 0; row = changed.nextSetBit(row + 1))
+    {
+      rows[i] = row;
+      rowNames[i] = getRowName(row);
+      for (int column = 0; column < headings.length; column++)
+        values[i][column] = getValue(row, column);
+      i++;
+    }
+    changed.clear();
+    return new Update(rowCount, rows, rowNames, values);
+  }
+
+  /**
+   * The rows of a table added or changed since the previous update, in
+   * order, with their names and values at the time of the update.
+   */
+  public static final class Update
+  {
+    private final int rowCount;
+    private final int[] rows;
+    private final String[] rowNames;
+    private final Number[][] values;
+
+    private Update(int rowCount, int[] rows, String[] rowNames, Number[][] values)
+    {
+      this.rowCount = rowCount;
+      this.rows = rows;
+      this.rowNames = rowNames;
+      this.values = values;
+    }
+
+    /**
+     * @return Number of rows of the whole table
+     */
+    public int getRowCount()
+    {
+      return rowCount;
+    }
+
+    /**
+     * @return Number of rows added or changed
+     */
+    public int getChangedCount()
+    {
+      return rows.length;
+    }
+
+    public int getRow(int i)
+    {
+      return rows[i];
+    }
+
+    public String getRowName(int i)
+    {
+      return rowNames[i];
+    }
+
+    public Number getValue(int i, int column)
+    {
+      return values[i][column];
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package org.intranet.statistics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Summaries of every column of a run's statistics tables, in table and column
+ * order. This is a small fraction of the size of the tables themselves, which
+ * hold a row per person and per car.
+ */
+public final class StatisticsSummary
+{
+  private final List<ColumnSummary> columns;
+
+  private StatisticsSummary(List<ColumnSummary> columns)
+  {
+    super();
+    this.columns = Collections.unmodifiableList(columns);
+  }
+
+  public static StatisticsSummary summarize(List<Table> tables)
+  {
+    List<ColumnSummary> columns = new ArrayList<ColumnSummary>();
+    for (Table table : tables)
+      for (int colNum = 0; colNum < table.getColumnCount(); colNum++)
+        columns.add(ColumnSummary.summarize(table.getName(),
+          table.getColumn(colNum)));
+    return new StatisticsSummary(columns);
+  }
+
+  public static StatisticsSummary of(List<ColumnSummary> columns)
+  {
+    return new StatisticsSummary(new ArrayList<ColumnSummary>(columns));
+  }
+
+  public List<ColumnSummary> getColumns()
+  {
+    return columns;
+  }
+
+  /**
+   * @return The summary of the named column, or null if there is none
+   */
+  public ColumnSummary getColumn(String tableName, String heading)
+  {
+    for (ColumnSummary column : columns)
+      if (column.getTableName().equals(tableName) &&
+          column.getHeading().equals(heading))
+        return column;
+    return null;
+  }
+}
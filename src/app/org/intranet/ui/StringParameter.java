@@ -0,0 +1,57 @@
+package org.intranet.ui;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Free-text parameter, such as a file name. A string has no natural range, so
+ * stepping through values only ever yields the base and, if different, the
+ * max value.
+ */
+public class StringParameter
+  extends SingleValueParameter<String>
+{
+  String value;
+
+  public StringParameter(String desc, String defaultValue)
+  {
+    super(desc);
+    value = defaultValue;
+  }
+
+  public String getStringValue()
+  {
+    return value;
+  }
+
+  public void setValue(String param)
+  {
+    value = param;
+  }
+
+  public String getValue()
+  {
+    return value;
+  }
+
+  public List<String> getValues(String min, String max, String inc)
+  {
+    List<String> stringValues = new ArrayList<String>(2);
+    stringValues.add(min);
+    if (!min.equals(max))
+      stringValues.add(max);
+    return stringValues;
+  }
+
+  @Override
+  public String getValueFromString(String value)
+  {
+    return value;
+  }
+
+  @Override
+  public void setValueFromString(String param)
+  {
+    value = param;
+  }
+}